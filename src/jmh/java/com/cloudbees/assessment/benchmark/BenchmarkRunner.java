@@ -0,0 +1,40 @@
+package com.cloudbees.assessment.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Runs the benchmarks once per thread count of {@code benchmark.threads} and writes a JSON result file per count
+ * to {@code benchmark.resultDir}, so results of two commits can be compared file by file.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String include = System.getProperty("benchmark.include", ".*Benchmark.*");
+        Path resultDir = Path.of(System.getProperty("benchmark.resultDir", "target/jmh"));
+        createDirectories(resultDir);
+        for (String threadCount : System.getProperty("benchmark.threads", "1").split(",")) {
+            int threads = Integer.parseInt(threadCount.trim());
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(resultDir.resolve("result-" + threads + "-threads.json").toString())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    private static void createDirectories(Path dir) throws IOException {
+        Files.createDirectories(dir);
+    }
+}
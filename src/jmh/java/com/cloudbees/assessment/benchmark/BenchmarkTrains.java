@@ -0,0 +1,64 @@
+package com.cloudbees.assessment.benchmark;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.layout.TrainLayout;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Train layouts and requests shared by the benchmarks.
+ */
+final class BenchmarkTrains {
+
+    static final String TRAIN_ID = "BENCH";
+
+    private static final AtomicLong PASSENGERS = new AtomicLong();
+
+    private BenchmarkTrains() {
+    }
+
+    /**
+     * One coach per 100 seats, each split evenly between the two sections. Every thread keeps a booked seat and a
+     * spare one, so the train has at least two seats per thread.
+     */
+    static TrainLayout layout(int requestedSeatCount, int threads) {
+        int seatCount = Math.max(requestedSeatCount, 2 * threads);
+        TrainLayout.Builder builder = TrainLayout.builder(TRAIN_ID);
+        for (int first = 0, coach = 1; first < seatCount; first += 100, coach++) {
+            int seats = Math.min(100, seatCount - first);
+            builder.coach("C" + coach).section(Section.SECTION_A, (seats + 1) / 2);
+            if (seats > 1) {
+                builder.section(Section.SECTION_B, seats / 2);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Properties of a one seat train, replaced with {@link #layout(int, int)} once the registry is created.
+     */
+    static SeatingProperties properties() {
+        SeatingProperties.SectionSeats seats = new SeatingProperties.SectionSeats();
+        seats.setSection(Section.SECTION_A);
+        seats.setSeats(1);
+        SeatingProperties.Coach coach = new SeatingProperties.Coach();
+        coach.setId("C1");
+        coach.setSections(List.of(seats));
+        SeatingProperties.Train train = new SeatingProperties.Train();
+        train.setId(TRAIN_ID);
+        train.setCoaches(List.of(coach));
+        SeatingProperties properties = new SeatingProperties();
+        properties.setDefaultTrainId(TRAIN_ID);
+        properties.setTrains(List.of(train));
+        return properties;
+    }
+
+    static ReceiptSubmitRequest newPassenger() {
+        long passenger = PASSENGERS.incrementAndGet();
+        return new ReceiptSubmitRequest(null, null, "bench", "passenger", "passenger" + passenger + "@bench.com",
+                null, TRAIN_ID);
+    }
+}
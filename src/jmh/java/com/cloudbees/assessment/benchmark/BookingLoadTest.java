@@ -0,0 +1,121 @@
+package com.cloudbees.assessment.benchmark;
+
+import com.cloudbees.assessment.AssessmentApplication;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed loop HTTP load test of the REST controllers, run once on Tomcat's platform thread pool and once with the
+ * {@code virtual-threads} profile, printing the throughput of both.
+ * <p>
+ * Every client is a virtual thread that books a seat, reads its receipt and removes the user, over and over. Run
+ * it with {@code mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cloudbees.assessment.benchmark.BookingLoadTest}, tuned with {@code load.clients} (default
+ * 5000), {@code load.warmupSeconds} (default 5) and {@code load.durationSeconds} (default 30). The client keeps one
+ * connection per client open, so raise the open file limit first.
+ */
+public final class BookingLoadTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private BookingLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = Integer.getInteger("load.clients", 5000);
+        Duration warmup = Duration.ofSeconds(Long.getLong("load.warmupSeconds", 5));
+        Duration duration = Duration.ofSeconds(Long.getLong("load.durationSeconds", 30));
+
+        double platform = run(false, clients, warmup, duration);
+        double virtual = run(true, clients, warmup, duration);
+        System.out.printf("%d clients: platform threads %.1f bookings/s, virtual threads %.1f bookings/s (x%.2f)%n",
+                clients, platform, virtual, virtual / platform);
+    }
+
+    private static double run(boolean virtualThreads, int clients, Duration warmup, Duration duration)
+            throws Exception {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(AssessmentApplication.class)
+                .properties("server.port=0",
+                        // Same connection limits in both modes, so only the request threads differ
+                        "server.tomcat.max-connections=" + (clients + 1000),
+                        "server.tomcat.accept-count=" + clients,
+                        "spring.datasource.url=jdbc:h2:mem:load_" + virtualThreads,
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.format_sql=false",
+                        "logging.level.root=WARN");
+        if (virtualThreads) {
+            builder.profiles("virtual-threads");
+        }
+        try (ConfigurableApplicationContext context = builder.run()) {
+            context.getBean(TrainInventoryRegistry.class).register(BenchmarkTrains.layout(clients, 1));
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                    + "/api/receipt";
+
+            LongAdder bookings = new LongAdder();
+            LongAdder failures = new LongAdder();
+            long warmupEnd = System.nanoTime() + warmup.toNanos();
+            long end = warmupEnd + duration.toNanos();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+                 HttpClient client = HttpClient.newBuilder().executor(executor).build()) {
+                List<Future<?>> running = new ArrayList<>(clients);
+                for (int i = 0; i < clients; i++) {
+                    running.add(executor.submit(() -> {
+                        while (System.nanoTime() < end) {
+                            boolean measured = System.nanoTime() >= warmupEnd;
+                            boolean booked = bookReadAndRemove(client, baseUrl);
+                            if (measured) {
+                                (booked ? bookings : failures).increment();
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : running) {
+                    future.get();
+                }
+            }
+            double throughput = bookings.sum() / (double) duration.toSeconds();
+            System.out.printf("%s threads: %d bookings, %d failures, %.1f bookings/s%n",
+                    virtualThreads ? "virtual" : "platform", bookings.sum(), failures.sum(), throughput);
+            return throughput;
+        }
+    }
+
+    private static boolean bookReadAndRemove(HttpClient client, String baseUrl) {
+        try {
+            String receipt = MAPPER.writeValueAsString(BenchmarkTrains.newPassenger());
+            HttpResponse<String> booked = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/submit"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(receipt))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            if (booked.statusCode() != 200) {
+                return false;
+            }
+            long userId = MAPPER.readTree(booked.body()).path("user").path("id").asLong();
+            HttpResponse<String> read = client.send(HttpRequest.newBuilder(
+                    URI.create(baseUrl + "?userId=" + userId)).GET().build(), HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> removed = client.send(HttpRequest.newBuilder(
+                    URI.create(baseUrl + "/" + userId)).DELETE().build(), HttpResponse.BodyHandlers.ofString());
+            return read.statusCode() == 200 && removed.statusCode() == 200;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
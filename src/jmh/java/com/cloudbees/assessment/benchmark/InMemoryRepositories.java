@@ -0,0 +1,76 @@
+package com.cloudbees.assessment.benchmark;
+
+import com.cloudbees.assessment.entity.Receipt;
+import com.cloudbees.assessment.entity.User;
+import com.cloudbees.assessment.repository.ReceiptRepository;
+import com.cloudbees.assessment.repository.UserRepository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Map backed stand-ins for the repositories, so the in-memory benchmarks measure the service and the seat
+ * inventory without a database. Only the methods used by the booking path are implemented.
+ */
+final class InMemoryRepositories {
+
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    UserRepository userRepository() {
+        return proxy(UserRepository.class, (method, args) -> switch (method.getName()) {
+            case "findById" -> Optional.ofNullable(users.get(((Number) args[0]).longValue()));
+            case "save" -> args[0];
+            case "delete" -> users.remove(((User) args[0]).getId());
+            case "findExistingEmails" -> List.of();
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    ReceiptRepository receiptRepository() {
+        return proxy(ReceiptRepository.class, (method, args) -> switch (method.getName()) {
+            case "save" -> store((Receipt) args[0]);
+            case "saveAllAndFlush" -> {
+                ((Collection<?>) args[0]).forEach(r -> store((Receipt) r));
+                yield args[0];
+            }
+            default -> throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    private Receipt store(Receipt receipt) {
+        User user = receipt.getUser();
+        receipt.setId(ids.incrementAndGet());
+        user.setId(ids.incrementAndGet());
+        user.setReceipt(receipt);
+        users.put(user.getId(), user);
+        return receipt;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, RepositoryMethod handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> type.getSimpleName();
+                };
+            }
+            return handler.invoke(method, args);
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+    }
+
+    @FunctionalInterface
+    private interface RepositoryMethod {
+        Object invoke(Method method, Object[] args);
+    }
+}
@@ -0,0 +1,39 @@
+package com.cloudbees.assessment.benchmark;
+
+import com.cloudbees.assessment.api.request.SeatUpdateRequest;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.cloudbees.assessment.service.SeatingManagementService;
+
+/**
+ * Booked passenger owned by one benchmark thread, moving between its own seat and a spare seat it keeps claimed.
+ */
+class Passenger {
+
+    private Long userId;
+    private int seat;
+    private int spareSeat;
+
+    void book(SeatingManagementService service, SeatInventory seats) throws Exception {
+        ReceiptResponse receipt = service.allocateSeatToUser(BenchmarkTrains.newPassenger());
+        userId = receipt.getUser().getId();
+        seat = receipt.getUser().getSeatNumber();
+        spareSeat = seats.claimFirstFree();
+        if (spareSeat == SeatInventory.NO_SEAT) {
+            throw new IllegalStateException("Train is too small for the number of benchmark threads");
+        }
+    }
+
+    /*
+    Hands the spare seat over to the move and claims the vacated seat back as the new spare. The two extra
+    CAS operations keep both seats owned by this thread so concurrent moves never collide.
+    */
+    void move(SeatingManagementService service, SeatInventory seats) throws Exception {
+        seats.release(spareSeat);
+        service.updateUserSeat(new SeatUpdateRequest(userId, spareSeat));
+        int vacated = seat;
+        seat = spareSeat;
+        spareSeat = vacated;
+        seats.claim(spareSeat);
+    }
+}
@@ -0,0 +1,55 @@
+package com.cloudbees.assessment.benchmark;
+
+import com.cloudbees.assessment.inventory.SeatInventory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seat inventory alone: claim and release of a seat on a half full train, for the whole trip and for one segment
+ * of an eight segment route.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SeatInventoryBenchmark {
+
+    private static final int SEGMENTS = 8;
+
+    @Param({"10", "1000", "100000"})
+    private int seatCount;
+
+    private SeatInventory inventory;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        inventory = new SeatInventory(seatCount, SEGMENTS);
+        // Keep the train half full so the search has to skip booked seats
+        for (int i = 0; i < seatCount / 2; i++) {
+            inventory.claimFirstFree();
+        }
+    }
+
+    @Benchmark
+    public int claimAndRelease() {
+        int seat = inventory.claimFirstFree();
+        if (seat != SeatInventory.NO_SEAT) {
+            inventory.release(seat);
+        }
+        return seat;
+    }
+
+    @Benchmark
+    public int claimAndReleaseLeg() {
+        long leg = 1L << ThreadLocalRandom.current().nextInt(SEGMENTS);
+        int seat = inventory.claimFirstFree(leg);
+        if (seat != SeatInventory.NO_SEAT) {
+            inventory.release(seat, leg);
+        }
+        return seat;
+    }
+}
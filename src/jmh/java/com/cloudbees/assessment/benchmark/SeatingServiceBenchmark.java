@@ -0,0 +1,70 @@
+package com.cloudbees.assessment.benchmark;
+
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.cache.SeatOccupancyCache;
+import com.cloudbees.assessment.hold.SeatHoldRegistry;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.service.SeatAllocator;
+import com.cloudbees.assessment.service.SeatingManagementService;
+import com.cloudbees.assessment.stats.BookingStats;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocate, move and remove through {@link SeatingManagementService} with map backed repositories, measuring the
+ * service and seat inventory without a database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SeatingServiceBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int seatCount;
+
+    private SeatingManagementService service;
+    private SeatInventory seats;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkParams params) {
+        SeatingProperties properties = BenchmarkTrains.properties();
+        TrainInventoryRegistry registry = new TrainInventoryRegistry(properties);
+        seats = registry.register(BenchmarkTrains.layout(seatCount, params.getThreads())).getSeats();
+        InMemoryRepositories repositories = new InMemoryRepositories();
+        ApplicationEventPublisher events = event -> {
+        };
+        service = new SeatingManagementService(repositories.userRepository(), repositories.receiptRepository(),
+                registry, new SeatAllocator(registry), new SeatOccupancyCache(properties), events, properties,
+                Optional.empty(), Optional.empty(), new SeatHoldRegistry(properties, events),
+                new BookingStats(repositories.receiptRepository(), registry, Optional.empty()));
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadPassenger extends Passenger {
+        @Setup(Level.Trial)
+        public void setUp(SeatingServiceBenchmark benchmark) throws Exception {
+            book(benchmark.service, benchmark.seats);
+        }
+    }
+
+    @Benchmark
+    public ReceiptResponse allocateAndRemove() throws Exception {
+        ReceiptResponse receipt = service.allocateSeatToUser(BenchmarkTrains.newPassenger());
+        service.removeUser(receipt.getUser().getId());
+        return receipt;
+    }
+
+    @Benchmark
+    public void moveSeat(ThreadPassenger passenger) throws Exception {
+        passenger.move(service, seats);
+    }
+}
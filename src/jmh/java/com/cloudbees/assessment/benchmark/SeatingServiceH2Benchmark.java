@@ -0,0 +1,73 @@
+package com.cloudbees.assessment.benchmark;
+
+import com.cloudbees.assessment.AssessmentApplication;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.service.SeatingManagementService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocate, move and remove through the application context with Hibernate on an in-memory H2 database, the same
+ * stack the REST controllers use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SeatingServiceH2Benchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int seatCount;
+
+    private ConfigurableApplicationContext context;
+    private SeatingManagementService service;
+    private SeatInventory seats;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkParams params) {
+        context = new SpringApplicationBuilder(AssessmentApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:benchmark_" + seatCount,
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.format_sql=false",
+                        "logging.level.root=WARN")
+                .run();
+        TrainInventoryRegistry registry = context.getBean(TrainInventoryRegistry.class);
+        seats = registry.register(BenchmarkTrains.layout(seatCount, params.getThreads())).getSeats();
+        service = context.getBean(SeatingManagementService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadPassenger extends Passenger {
+        @Setup(Level.Trial)
+        public void setUp(SeatingServiceH2Benchmark benchmark) throws Exception {
+            book(benchmark.service, benchmark.seats);
+        }
+    }
+
+    @Benchmark
+    public ReceiptResponse allocateAndRemove() throws Exception {
+        ReceiptResponse receipt = service.allocateSeatToUser(BenchmarkTrains.newPassenger());
+        service.removeUser(receipt.getUser().getId());
+        return receipt;
+    }
+
+    @Benchmark
+    public void moveSeat(ThreadPassenger passenger) throws Exception {
+        passenger.move(service, seats);
+    }
+}
@@ -0,0 +1,43 @@
+package com.cloudbees.assessment.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency percentiles and error rate every operation of a load run must stay within.
+ */
+record LatencySlo(long p50Millis, long p99Millis, long p999Millis, double maxErrorRate) {
+
+    static LatencySlo fromSystemProperties() {
+        return new LatencySlo(Long.getLong("load.slo.p50Millis", 20), Long.getLong("load.slo.p99Millis", 200),
+                Long.getLong("load.slo.p999Millis", 500),
+                Double.parseDouble(System.getProperty("load.slo.maxErrorRate", "0.001")));
+    }
+
+    /**
+     * @param latencies in microseconds, of successful and failed requests
+     * @return a line per threshold exceeded, empty when the operation met the SLO
+     */
+    List<String> violations(String name, Histogram latencies, long errors) {
+        List<String> violations = new ArrayList<>();
+        check(violations, name, "p50", latencies.getValueAtPercentile(50), p50Millis);
+        check(violations, name, "p99", latencies.getValueAtPercentile(99), p99Millis);
+        check(violations, name, "p99.9", latencies.getValueAtPercentile(99.9), p999Millis);
+        long requests = latencies.getTotalCount();
+        double errorRate = requests == 0 ? 0 : errors / (double) requests;
+        if (errorRate > maxErrorRate) {
+            violations.add(String.format("%s error rate %.4f over %.4f", name, errorRate, maxErrorRate));
+        }
+        return violations;
+    }
+
+    private static void check(List<String> violations, String name, String percentile, long micros,
+            long limitMillis) {
+        if (micros > TimeUnit.MILLISECONDS.toMicros(limitMillis)) {
+            violations.add(String.format("%s %s %.1f ms over %d ms", name, percentile, micros / 1000.0, limitMillis));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.cloudbees.assessment.load;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.SeatUpdateRequest;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays one operation of the mix over HTTP. Passengers booked by the run are kept in a queue, a lookup, move or
+ * delete takes one out for the duration of the call, so two calls never work on the same passenger. When no
+ * passenger is booked yet the call is a submit instead.
+ * <p>
+ * A call succeeded when it got a 2xx response, any other status, timeout or I/O error counts as an error.
+ */
+final class LoadClient {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Section[] SECTIONS = Section.values();
+    // Free seats tried at random for a move before it is replaced with a lookup
+    private static final int MOVE_SEAT_ATTEMPTS = 16;
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final String trainId;
+    private final SeatInventory seats;
+    private final Duration timeout;
+
+    private final Queue<Long> booked = new ConcurrentLinkedQueue<>();
+    private final AtomicLong passengers = new AtomicLong();
+
+    LoadClient(HttpClient client, String baseUrl, String trainId, SeatInventory seats, Duration timeout) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.trainId = trainId;
+        this.seats = seats;
+        this.timeout = timeout;
+    }
+
+    record Outcome(Operation operation, boolean succeeded) {
+    }
+
+    /**
+     * @return the operation actually performed and whether it succeeded
+     */
+    Outcome call(Operation operation) {
+        try {
+            return switch (operation) {
+                case SUBMIT -> submit();
+                case SECTION -> section();
+                case LOOKUP, MOVE, DELETE -> onBookedPassenger(operation);
+            };
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Outcome(operation, false);
+        } catch (IOException e) {
+            return new Outcome(operation, false);
+        }
+    }
+
+    private Outcome submit() throws IOException, InterruptedException {
+        ReceiptSubmitRequest request = new ReceiptSubmitRequest(null, null, "load", "passenger",
+                "passenger" + passengers.incrementAndGet() + "@load.com", null, trainId);
+        HttpResponse<String> response = send(request("/submit")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(MAPPER.writeValueAsString(request))));
+        if (!succeeded(response)) {
+            return new Outcome(Operation.SUBMIT, false);
+        }
+        booked.offer(MAPPER.readTree(response.body()).path("user").path("id").asLong());
+        return new Outcome(Operation.SUBMIT, true);
+    }
+
+    private Outcome section() throws IOException, InterruptedException {
+        Section section = SECTIONS[ThreadLocalRandom.current().nextInt(SECTIONS.length)];
+        HttpResponse<String> response = send(request("/" + section + "?trainId=" + trainId).GET());
+        return new Outcome(Operation.SECTION, succeeded(response));
+    }
+
+    private Outcome onBookedPassenger(Operation operation) throws IOException, InterruptedException {
+        Long userId = booked.poll();
+        if (userId == null) {
+            return submit();
+        }
+        boolean keep = true;
+        try {
+            if (operation == Operation.DELETE) {
+                HttpResponse<String> response = send(request("/" + userId).DELETE());
+                keep = !succeeded(response);
+                return new Outcome(operation, !keep);
+            }
+            int newSeat = operation == Operation.MOVE ? freeSeat() : SeatInventory.NO_SEAT;
+            if (newSeat == SeatInventory.NO_SEAT) {
+                HttpResponse<String> response = send(request("?userId=" + userId).GET());
+                return new Outcome(Operation.LOOKUP, succeeded(response));
+            }
+            String body = MAPPER.writeValueAsString(new SeatUpdateRequest(userId, newSeat));
+            HttpResponse<String> response = send(request("")
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(body)));
+            return new Outcome(Operation.MOVE, succeeded(response));
+        } finally {
+            if (keep) {
+                booked.offer(userId);
+            }
+        }
+    }
+
+    // A seat free when picked, a concurrent booking may still take it first and fail the move
+    private int freeSeat() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < MOVE_SEAT_ATTEMPTS; i++) {
+            int seatNumber = random.nextInt(seats.capacity()) + 1;
+            if (seats.isFree(seatNumber)) {
+                return seatNumber;
+            }
+        }
+        return SeatInventory.NO_SEAT;
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(timeout);
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static boolean succeeded(HttpResponse<String> response) {
+        return response.statusCode() / 100 == 2;
+    }
+}
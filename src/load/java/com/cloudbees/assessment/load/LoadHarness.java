@@ -0,0 +1,215 @@
+package com.cloudbees.assessment.load;
+
+import com.cloudbees.assessment.AssessmentApplication;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.layout.TrainLayout;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open loop HTTP load and soak test of the whole stack, from the controllers through Hibernate to H2. The
+ * application is started in this JVM on a random port and requests of the {@code load.mix} operations are started at
+ * a fixed {@code load.rate} per second, each on its own virtual thread, whether or not earlier ones have completed.
+ * <p>
+ * The latency of a request is measured from the time it was scheduled to start, not from the time it was sent, so
+ * a stall of the application or of the harness counts against every request that should have started during it
+ * rather than hiding behind fewer requests sent (coordinated omission). Latencies are recorded in HdrHistograms,
+ * printed every {@code load.reportSeconds} while the run lasts and written to {@code load.resultDir} as percentile
+ * distributions at the end.
+ * <p>
+ * Exits with status 1 when the p50, p99 or p99.9 latency or the error rate of any operation is over its
+ * {@code load.slo.*} threshold, failing {@code mvn -Pload verify}. A long {@code load.durationSeconds} makes it a soak
+ * test, the interval reports show latency or heap creeping up over time.
+ */
+public final class LoadHarness {
+
+    static final String TRAIN_ID = "LOAD";
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rate = Integer.getInteger("load.rate", 500);
+        Duration warmup = Duration.ofSeconds(Long.getLong("load.warmupSeconds", 10));
+        Duration duration = Duration.ofSeconds(Long.getLong("load.durationSeconds", 60));
+        Duration reportInterval = Duration.ofSeconds(Long.getLong("load.reportSeconds", 10));
+        Duration timeout = Duration.ofSeconds(Long.getLong("load.timeoutSeconds", 10));
+        OperationMix mix = OperationMix.parse(System.getProperty("load.mix",
+                "submit=25,lookup=40,section=10,move=10,delete=15"));
+        int seatCount = Integer.getInteger("load.seats", 10_000);
+        LatencySlo slo = LatencySlo.fromSystemProperties();
+        Path resultDir = Path.of(System.getProperty("load.resultDir", "target/load"));
+
+        List<String> violations;
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(AssessmentApplication.class)
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:load",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.format_sql=false",
+                        // Measure the booking stack itself, turn it on to measure the shedding of an overload
+                        "seating.admission.enabled=" + Boolean.getBoolean("load.admission"),
+                        "logging.level.root=WARN");
+        try (ConfigurableApplicationContext context = builder.run()) {
+            TrainInventoryRegistry registry = context.getBean(TrainInventoryRegistry.class);
+            registry.register(layout(seatCount));
+            SeatInventory seats = registry.find(TRAIN_ID).getSeats();
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port")
+                    + "/api/receipt";
+
+            Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+            Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+            Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+            for (Operation operation : Operation.values()) {
+                recorders.put(operation, new Recorder(SIGNIFICANT_DIGITS));
+                latencies.put(operation, new Histogram(SIGNIFICANT_DIGITS));
+                errors.put(operation, new LongAdder());
+            }
+
+            System.out.printf("%d requests/s for %ds after a %ds warmup, %d seats%n", rate, duration.toSeconds(),
+                    warmup.toSeconds(), seatCount);
+            long start = System.nanoTime();
+            long warmupEnd = start + warmup.toNanos();
+            long end = warmupEnd + duration.toNanos();
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+            reporter.scheduleAtFixedRate(() -> report(start, reportInterval, recorders, latencies, errors),
+                    reportInterval.toNanos(), reportInterval.toNanos(), TimeUnit.NANOSECONDS);
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+                 HttpClient client = HttpClient.newBuilder().executor(executor).build()) {
+                LoadClient loadClient = new LoadClient(client, baseUrl, TRAIN_ID, seats, timeout);
+                for (long request = 0; ; request++) {
+                    // Start times are fixed up front, a late start does not push the later ones back
+                    long intendedStart = start + request * TimeUnit.SECONDS.toNanos(1) / rate;
+                    if (intendedStart >= end) {
+                        break;
+                    }
+                    waitUntil(intendedStart);
+                    Operation operation = mix.pick(ThreadLocalRandom.current().nextDouble());
+                    boolean measured = intendedStart >= warmupEnd;
+                    executor.execute(() -> {
+                        LoadClient.Outcome outcome = loadClient.call(operation);
+                        if (measured) {
+                            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart);
+                            recorders.get(outcome.operation()).recordValue(micros);
+                            if (!outcome.succeeded()) {
+                                errors.get(outcome.operation()).increment();
+                            }
+                        }
+                    });
+                }
+            } finally {
+                reporter.shutdown();
+                reporter.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            for (Operation operation : Operation.values()) {
+                latencies.get(operation).add(recorders.get(operation).getIntervalHistogram());
+            }
+            violations = summarize(latencies, errors, slo, resultDir);
+        }
+
+        if (!violations.isEmpty()) {
+            System.out.println("SLO not met:");
+            violations.forEach(violation -> System.out.println("  " + violation));
+            System.exit(1);
+        }
+        System.out.println("SLO met");
+    }
+
+    /**
+     * One coach per 100 seats, each split evenly between the two sections.
+     */
+    static TrainLayout layout(int seatCount) {
+        TrainLayout.Builder builder = TrainLayout.builder(TRAIN_ID);
+        for (int first = 0, coach = 1; first < seatCount; first += 100, coach++) {
+            int seats = Math.min(100, seatCount - first);
+            builder.coach("C" + coach).section(Section.SECTION_A, (seats + 1) / 2);
+            if (seats > 1) {
+                builder.section(Section.SECTION_B, seats / 2);
+            }
+        }
+        return builder.build();
+    }
+
+    private static void waitUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    // Runs on the reporter thread only, the only writer of the cumulative histograms until the run ends
+    private static void report(long start, Duration interval, Map<Operation, Recorder> recorders,
+            Map<Operation, Histogram> latencies, Map<Operation, LongAdder> errors) {
+        Histogram all = new Histogram(SIGNIFICANT_DIGITS);
+        for (Operation operation : Operation.values()) {
+            Histogram intervalLatencies = recorders.get(operation).getIntervalHistogram();
+            latencies.get(operation).add(intervalLatencies);
+            all.add(intervalLatencies);
+        }
+        long errorCount = errors.values().stream().mapToLong(LongAdder::sum).sum();
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("[%5ds] %8.1f requests/s, p99 %8.2f ms, max %8.2f ms, %d errors so far, heap %d MB%n",
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start),
+                all.getTotalCount() / (double) interval.toSeconds(),
+                all.getValueAtPercentile(99) / MICROS_PER_MILLI, all.getMaxValue() / MICROS_PER_MILLI, errorCount,
+                (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+    }
+
+    private static List<String> summarize(Map<Operation, Histogram> latencies, Map<Operation, LongAdder> errors,
+            LatencySlo slo, Path resultDir) throws IOException {
+        Files.createDirectories(resultDir);
+        List<String> violations = new ArrayList<>();
+        System.out.printf("%-8s %10s %8s %10s %10s %10s %10s%n", "", "requests", "errors", "p50 ms", "p99 ms",
+                "p99.9 ms", "max ms");
+        Histogram all = new Histogram(SIGNIFICANT_DIGITS);
+        long allErrors = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            long operationErrors = errors.get(operation).sum();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            print(operation.key(), histogram, operationErrors, resultDir);
+            violations.addAll(slo.violations(operation.key(), histogram, operationErrors));
+            all.add(histogram);
+            allErrors += operationErrors;
+        }
+        print("all", all, allErrors, resultDir);
+        return violations;
+    }
+
+    private static void print(String name, Histogram histogram, long errors, Path resultDir) throws IOException {
+        System.out.printf("%-8s %10d %8d %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getTotalCount(), errors,
+                histogram.getValueAtPercentile(50) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(99) / MICROS_PER_MILLI,
+                histogram.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+                histogram.getMaxValue() / MICROS_PER_MILLI);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(resultDir.resolve(name + ".hgrm")))) {
+            histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.cloudbees.assessment.load;
+
+/**
+ * Calls of the receipt API replayed by the load harness, named as in {@code load.mix}.
+ */
+enum Operation {
+    SUBMIT("submit"),
+    LOOKUP("lookup"),
+    SECTION("section"),
+    MOVE("move"),
+    DELETE("delete");
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    String key() {
+        return key;
+    }
+
+    static Operation fromKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equals(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + key + " in load.mix");
+    }
+}
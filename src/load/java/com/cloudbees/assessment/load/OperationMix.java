@@ -0,0 +1,56 @@
+package com.cloudbees.assessment.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Weighted mix of operations, parsed from {@code submit=25,lookup=40,...}. Operations not listed are not replayed.
+ */
+final class OperationMix {
+
+    private final Operation[] operations;
+    // Running total of the weights up to and including every operation
+    private final int[] cumulativeWeights;
+
+    private OperationMix(Map<Operation, Integer> weights) {
+        operations = weights.keySet().toArray(Operation[]::new);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += weights.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("load.mix has no operation with a positive weight");
+        }
+    }
+
+    static OperationMix parse(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] keyAndWeight = entry.trim().split("=");
+            if (keyAndWeight.length != 2) {
+                throw new IllegalArgumentException("Expected operation=weight in load.mix, got " + entry);
+            }
+            int weight = Integer.parseInt(keyAndWeight[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight of " + keyAndWeight[0] + " in load.mix");
+            }
+            weights.put(Operation.fromKey(keyAndWeight[0].trim()), weight);
+        }
+        return new OperationMix(weights);
+    }
+
+    /**
+     * @param roll uniformly distributed in [0, 1)
+     */
+    Operation pick(double roll) {
+        int target = (int) (roll * cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < operations.length; i++) {
+            if (target < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+}
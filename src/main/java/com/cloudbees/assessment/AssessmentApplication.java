@@ -2,8 +2,13 @@ package com.cloudbees.assessment;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+// The reactive profile puts R2DBC on the classpath, its connection factory belongs to ReactiveBookingApplication only
+@SpringBootApplication(excludeName = "org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration")
+@ConfigurationPropertiesScan
+@EnableScheduling
 public class AssessmentApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,151 @@
+package com.cloudbees.assessment.admission;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.exception.TooManyRequestsException;
+import com.cloudbees.assessment.inventory.TrainInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.layout.TrainLayout;
+import com.cloudbees.assessment.service.SeatingManagementService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control in front of the booking of a submit, every check is in memory and runs before the inventory
+ * is claimed or the database is touched:
+ * <ul>
+ *     <li>a submit no vacant seat can satisfy fails straight away with the same 422 as the booking would</li>
+ *     <li>every train has a cap on the submits being booked at the same time, a submit over it gets 429</li>
+ *     <li>every train and requested section has a token bucket, a submit finding it empty gets 429</li>
+ * </ul>
+ * Buckets and caps are per train, so a flash sale on one train uses up only its own share of the threads and
+ * database connections.
+ */
+@Component
+@Slf4j
+public class AdmissionGate {
+
+    private static final Section[] SECTIONS = Section.values();
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    // Permit of a submit that took no in-flight slot
+    private static final Permit NO_SLOT = () -> {
+    };
+
+    private final TrainInventoryRegistry trainInventoryRegistry;
+    private final SeatingProperties.Admission admission;
+    private final LongSupplier nanoClock;
+
+    private final Map<String, TrainAdmission> trains = new ConcurrentHashMap<>();
+
+    private final LongAdder soldOut = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder overCapacity = new LongAdder();
+
+    @Autowired
+    public AdmissionGate(SeatingProperties seatingProperties, TrainInventoryRegistry trainInventoryRegistry) {
+        this(seatingProperties, trainInventoryRegistry, System::nanoTime);
+    }
+
+    AdmissionGate(SeatingProperties seatingProperties, TrainInventoryRegistry trainInventoryRegistry,
+            LongSupplier nanoClock) {
+        this.trainInventoryRegistry = trainInventoryRegistry;
+        this.admission = seatingProperties.getAdmission();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Admits a submit for the given train, the returned permit must be closed once its booking is done.
+     *
+     * @throws TooManyRequestsException when the train is over its rate or in-flight cap
+     * @throws CustomCloudBeesException with 422 when no vacant seat matches the request
+     */
+    public Permit admit(String trainId, ReceiptSubmitRequest request) throws CustomCloudBeesException {
+        if (!admission.isEnabled()) {
+            return NO_SLOT;
+        }
+        TrainInventory train = trainInventoryRegistry.find(trainId);
+        if (train == null) {
+            // Unknown train, the booking reports it
+            return NO_SLOT;
+        }
+        checkVacancy(train, request);
+
+        TrainAdmission trainAdmission = trains.computeIfAbsent(train.getTrainId(), k -> new TrainAdmission());
+        // The slot is checked first, a submit turned away by the cap must not use up a token of the rate
+        if (!trainAdmission.inFlight.tryAcquire()) {
+            overCapacity.increment();
+            throw new TooManyRequestsException("Too many bookings for this train, please retry",
+                    admission.getRetryAfterSeconds());
+        }
+        int bucket = request.getSection() == null ? SECTIONS.length : request.getSection().ordinal();
+        long waitNanos = trainAdmission.buckets[bucket].tryTake(nanoClock.getAsLong());
+        if (waitNanos != TokenBucket.NO_WAIT) {
+            trainAdmission.inFlight.release();
+            rateLimited.increment();
+            throw new TooManyRequestsException("Too many bookings for this train, please retry",
+                    (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+        }
+        return trainAdmission.inFlight::release;
+    }
+
+    // Same outcome as the claim of the booking, without claiming
+    private void checkVacancy(TrainInventory train, ReceiptSubmitRequest request) throws CustomCloudBeesException {
+        TrainLayout layout = train.getLayout();
+        long leg = layout.legMask(request.getFrom(), request.getTo());
+        if (leg == TrainLayout.INVALID_LEG) {
+            // Invalid journey, the booking reports it
+            return;
+        }
+        long[] allowedSeats = layout.allowedSeats(request.getSection(), request.getSeatPosition());
+        if (!train.getSeats().hasFree(leg, allowedSeats)) {
+            soldOut.increment();
+            throw new CustomCloudBeesException(HttpStatus.UNPROCESSABLE_ENTITY, allowedSeats == null ?
+                    SeatingManagementService.NO_SEAT_MESSAGE : SeatingManagementService.NO_MATCHING_SEAT_MESSAGE);
+        }
+    }
+
+    public long getSoldOut() {
+        return soldOut.sum();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    public long getOverCapacity() {
+        return overCapacity.sum();
+    }
+
+    /**
+     * In-flight slot of an admitted submit, closing it lets the next submit of the train in.
+     */
+    @FunctionalInterface
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    // Buckets of every section of a train, the last one for submits that request no section
+    private final class TrainAdmission {
+        private final TokenBucket[] buckets = new TokenBucket[SECTIONS.length + 1];
+        private final Semaphore inFlight = new Semaphore(admission.getMaxInFlightPerTrain());
+
+        private TrainAdmission() {
+            long now = nanoClock.getAsLong();
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new TokenBucket(admission.getRatePerSecond(), admission.getBurst(), now);
+            }
+        }
+    }
+}
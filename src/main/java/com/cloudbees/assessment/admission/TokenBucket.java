@@ -0,0 +1,44 @@
+package com.cloudbees.assessment.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket kept as the time the bucket is next full again, the generic cell rate algorithm. Taking a
+ * token moves that time forward by one interval, a token is available while it is at most a burst of intervals
+ * ahead of now. One compare and set per token, no refill thread.
+ */
+class TokenBucket {
+
+    static final long NO_WAIT = 0;
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    TokenBucket(int ratePerSecond, int burst, long nowNanos) {
+        if (ratePerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.intervalNanos = 1_000_000_000L / ratePerSecond;
+        this.burstNanos = intervalNanos * burst;
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * @return {@link #NO_WAIT} when a token was taken, otherwise the nanos until one is available
+     */
+    long tryTake(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            long start = current - nowNanos < 0 ? nowNanos : current;
+            long next = start + intervalNanos;
+            long wait = next - nowNanos - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return NO_WAIT;
+            }
+        }
+    }
+}
@@ -1,27 +1,88 @@
 package com.cloudbees.assessment.api.controller;
 
 import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.exception.ForwardedErrorException;
+import com.cloudbees.assessment.exception.ShardRedirectException;
+import com.cloudbees.assessment.exception.TooManyRequestsException;
+import com.cloudbees.assessment.service.SeatingManagementService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import java.util.Set;
+
 @ControllerAdvice
 public class ExceptionController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ExceptionController.class);
+    private static final String ERRORS_METRIC = "seating.errors";
+    // Errors told apart by the error tag, any other error is tagged "other" so the tag stays bounded
+    private static final Set<String> TAGGED_ERRORS = Set.of(SeatingManagementService.NO_SEAT_MESSAGE,
+            SeatingManagementService.NO_MATCHING_SEAT_MESSAGE);
+    private static final String OTHER_ERROR = "other";
+
+    private final MeterRegistry meterRegistry;
+
+    public ExceptionController(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
 
     @ExceptionHandler(CustomCloudBeesException.class)
     public ResponseEntity<String> handleCustomCloudBeesException(CustomCloudBeesException ex) {
         LOGGER.error(ex.getHttpStatus().getReasonPhrase(), ex.getErrorMessage());
+        countError(ex.getHttpStatus(), TAGGED_ERRORS.contains(ex.getErrorMessage()) ? ex.getErrorMessage() :
+                OTHER_ERROR);
         return ResponseEntity.status(ex.getHttpStatus()).body(ex.getErrorMessage());
     }
 
+    // Tells the client when the train is expected to take bookings again
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<String> handleTooManyRequestsException(TooManyRequestsException ex) {
+        countError(ex.getHttpStatus(), "admission");
+        return ResponseEntity.status(ex.getHttpStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ex.getErrorMessage());
+    }
+
+    // The answer of the owner of the train as it is, counted by the owner itself
+    @ExceptionHandler(ForwardedErrorException.class)
+    public ResponseEntity<String> handleForwardedErrorException(ForwardedErrorException ex) {
+        countError(ex.getHttpStatus(), "forwarded");
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(ex.getHttpStatus());
+        for (String header : new String[]{HttpHeaders.CONTENT_TYPE, HttpHeaders.RETRY_AFTER}) {
+            String value = ex.getHeaders().getFirst(header);
+            if (value != null) {
+                response.header(header, value);
+            }
+        }
+        return response.body(ex.getErrorMessage());
+    }
+
+    // Same path and query on the owner of the train, 307 keeps the method and body
+    @ExceptionHandler(ShardRedirectException.class)
+    public ResponseEntity<String> handleShardRedirectException(ShardRedirectException ex,
+            HttpServletRequest request) {
+        String query = request.getQueryString();
+        return ResponseEntity.status(ex.getHttpStatus())
+                .header(HttpHeaders.LOCATION, ex.getOwnerUrl() + request.getRequestURI() +
+                        (query == null ? "" : "?" + query))
+                .body(ex.getErrorMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleException(Exception ex) {
         LOGGER.error(ex.getMessage());
+        countError(HttpStatus.BAD_REQUEST, ex.getClass().getSimpleName());
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
     }
+
+    private void countError(HttpStatus status, String error) {
+        meterRegistry.counter(ERRORS_METRIC, "status", String.valueOf(status.value()), "error", error).increment();
+    }
 }
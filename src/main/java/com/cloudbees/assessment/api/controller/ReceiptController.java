@@ -1,20 +1,35 @@
 package com.cloudbees.assessment.api.controller;
 
 
+import com.cloudbees.assessment.api.request.BatchReceiptSubmitRequest;
 import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
 import com.cloudbees.assessment.api.request.SeatUpdateRequest;
+import com.cloudbees.assessment.api.response.BatchReceiptResponse;
 import com.cloudbees.assessment.api.response.ReceiptResponse;
 import com.cloudbees.assessment.api.response.SeatUpdateResponse;
+import com.cloudbees.assessment.api.response.UserSeatPageResponse;
 import com.cloudbees.assessment.api.response.UserSeatResponse;
+import com.cloudbees.assessment.cache.IdempotencyCache;
 import com.cloudbees.assessment.enums.Section;
 import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.export.ReceiptExportService;
 import com.cloudbees.assessment.service.SeatingManagementService;
+import com.cloudbees.assessment.shard.HttpShardTransport;
+import com.cloudbees.assessment.shard.ShardedSeatingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
@@ -23,13 +38,42 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ReceiptController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final SeatingManagementService seatingManagementService;
 
+    private final ShardedSeatingService shardedSeatingService;
+
+    private final IdempotencyCache idempotencyCache;
+
+    private final ReceiptExportService receiptExportService;
+
+    private final ObjectMapper objectMapper;
+
     @PostMapping("/submit")
-    public ResponseEntity<ReceiptResponse> submitReceipt(@RequestBody @Valid ReceiptSubmitRequest receiptSubmitRequest)
+    public ResponseEntity<ReceiptResponse> submitReceipt(@RequestBody @Valid ReceiptSubmitRequest receiptSubmitRequest,
+            @RequestHeader(name = HttpShardTransport.FORWARDED_HEADER, required = false) String forwardedBy,
+            @RequestHeader(name = IdempotencyCache.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey)
             throws Exception {
-        log.info("Received request to submit receipt. request: {}", receiptSubmitRequest);
-        return ResponseEntity.ok(seatingManagementService.allocateSeatToUser(receiptSubmitRequest));
+        boolean forwarded = shardedSeatingService.isForwarded(forwardedBy);
+        log.info("Received request to submit receipt. email: {}, trainId: {}, section: {}, idempotency key: {}",
+                receiptSubmitRequest.getEmail(), receiptSubmitRequest.getTrainId(), receiptSubmitRequest.getSection(),
+                idempotencyKey);
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(shardedSeatingService.allocateSeatToUser(receiptSubmitRequest, forwarded, null));
+        }
+        return ResponseEntity.ok(idempotencyCache.submit(idempotencyKey, receiptSubmitRequest,
+                () -> shardedSeatingService.allocateSeatToUser(receiptSubmitRequest, forwarded, idempotencyKey)));
+    }
+
+    @PostMapping("/submit/batch")
+    public ResponseEntity<BatchReceiptResponse> submitReceipts(
+            @RequestBody @Valid BatchReceiptSubmitRequest batchReceiptSubmitRequest,
+            @RequestHeader(name = HttpShardTransport.FORWARDED_HEADER, required = false) String forwardedBy)
+            throws CustomCloudBeesException {
+        boolean forwarded = shardedSeatingService.isForwarded(forwardedBy);
+        log.info("Received request to submit {} receipts", batchReceiptSubmitRequest.getReceipts().size());
+        return ResponseEntity.ok(shardedSeatingService.allocateSeatsToUsers(batchReceiptSubmitRequest, forwarded));
     }
 
     @GetMapping()
@@ -41,22 +85,72 @@ public class ReceiptController {
     }
 
     @GetMapping("/{section}")
-    public ResponseEntity<List<UserSeatResponse>> getUserSeatDetailsBySection(@PathVariable Section section) {
-        log.info("Received request to get user seat details by section: {}", section);
-        return ResponseEntity.ok(seatingManagementService.getUserSeatDetailsBySection(section));
+    public ResponseEntity<List<UserSeatResponse>> getUserSeatDetailsBySection(@PathVariable Section section,
+            @RequestParam(required = false) String trainId) throws CustomCloudBeesException {
+        log.info("Received request to get user seat details by section: {}, trainId: {}", section, trainId);
+        shardedSeatingService.requireLocal(trainId);
+        return ResponseEntity.ok(seatingManagementService.getUserSeatDetailsBySection(trainId, section));
     }
 
+    @GetMapping("/{section}/page")
+    public ResponseEntity<UserSeatPageResponse> getUserSeatDetailsPageBySection(@PathVariable Section section,
+            @RequestParam(required = false) String trainId, @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(1000) int size) throws CustomCloudBeesException {
+        log.info("Received request to get user seat details page by section: {}, trainId: {}, cursor: {}", section,
+                trainId, cursor);
+        shardedSeatingService.requireLocal(trainId);
+        return ResponseEntity.ok(seatingManagementService.getUserSeatDetailsBySection(trainId, section, cursor, size));
+    }
+
+    // Writes one JSON object per line as rows come from the database
+    @GetMapping(value = "/{section}/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamUserSeatDetailsBySection(@PathVariable Section section,
+            @RequestParam(required = false) String trainId) throws CustomCloudBeesException {
+        log.info("Received request to stream user seat details by section: {}, trainId: {}", section, trainId);
+        shardedSeatingService.requireLocal(trainId);
+        String resolvedTrainId = seatingManagementService.resolveTrainId(trainId);
+        StreamingResponseBody body = outputStream -> {
+            try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n")
+                    .writeValues(outputStream)) {
+                seatingManagementService.streamUserSeatDetailsBySection(resolvedTrainId, section, user -> {
+                    try {
+                        writer.write(user);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    // Every receipt in the columnar format of ReceiptExportWriter, written in chunks as rows are read
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportReceipts() {
+        log.info("Received request to export receipts");
+        StreamingResponseBody body = receiptExportService::exportReceipts;
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(body);
+    }
+
+    // trainId is the train of the booking, needed with sharding unless it is the default train
     @DeleteMapping("/{id}")
-    public ResponseEntity<String> removeUser(@PathVariable Long id) throws CustomCloudBeesException {
-        log.info("Received request to delete user for id: {}", id);
-        seatingManagementService.removeUser(id);
+    public ResponseEntity<String> removeUser(@PathVariable Long id, @RequestParam(required = false) String trainId,
+            @RequestHeader(name = HttpShardTransport.FORWARDED_HEADER, required = false) String forwardedBy)
+            throws CustomCloudBeesException {
+        boolean forwarded = shardedSeatingService.isForwarded(forwardedBy);
+        log.info("Received request to delete user for id: {}, trainId: {}", id, trainId);
+        shardedSeatingService.removeUser(id, trainId, forwarded);
         return ResponseEntity.ok().body("Successfully removed user");
     }
 
     @PatchMapping()
-    public ResponseEntity<SeatUpdateResponse> updateUserSeat(@RequestBody @Valid SeatUpdateRequest seatUpdateRequest)
+    public ResponseEntity<SeatUpdateResponse> updateUserSeat(@RequestBody @Valid SeatUpdateRequest seatUpdateRequest,
+            @RequestParam(required = false) String trainId,
+            @RequestHeader(name = HttpShardTransport.FORWARDED_HEADER, required = false) String forwardedBy)
             throws CustomCloudBeesException {
-        log.info("Received request to update user seat. Request: {}", seatUpdateRequest);
-        return ResponseEntity.ok(seatingManagementService.updateUserSeat(seatUpdateRequest));
+        boolean forwarded = shardedSeatingService.isForwarded(forwardedBy);
+        log.info("Received request to update user seat. userId: {}, newSeat: {}, trainId: {}",
+                seatUpdateRequest.getUserId(), seatUpdateRequest.getNewSeat(), trainId);
+        return ResponseEntity.ok(shardedSeatingService.updateUserSeat(seatUpdateRequest, trainId, forwarded));
     }
 }
\ No newline at end of file
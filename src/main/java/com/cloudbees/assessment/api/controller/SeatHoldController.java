@@ -0,0 +1,54 @@
+package com.cloudbees.assessment.api.controller;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.api.response.SeatHoldResponse;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.shard.HttpShardTransport;
+import com.cloudbees.assessment.shard.ShardedSeatingService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/hold")
+@Slf4j
+@RequiredArgsConstructor
+public class SeatHoldController {
+
+    private final ShardedSeatingService shardedSeatingService;
+
+    @PostMapping()
+    public ResponseEntity<SeatHoldResponse> holdSeat(@RequestBody @Valid ReceiptSubmitRequest receiptSubmitRequest,
+            @RequestHeader(name = HttpShardTransport.FORWARDED_HEADER, required = false) String forwardedBy)
+            throws CustomCloudBeesException {
+        boolean forwarded = shardedSeatingService.isForwarded(forwardedBy);
+        log.info("Received request to hold a seat. email: {}, trainId: {}, section: {}",
+                receiptSubmitRequest.getEmail(), receiptSubmitRequest.getTrainId(), receiptSubmitRequest.getSection());
+        return ResponseEntity.ok(shardedSeatingService.holdSeat(receiptSubmitRequest, forwarded));
+    }
+
+    // trainId is the train of the hold, needed with sharding unless it is the default train
+    @PostMapping("/{holdId}/confirm")
+    public ResponseEntity<ReceiptResponse> confirmHold(@PathVariable String holdId,
+            @RequestParam(required = false) String trainId,
+            @RequestHeader(name = HttpShardTransport.FORWARDED_HEADER, required = false) String forwardedBy)
+            throws CustomCloudBeesException {
+        boolean forwarded = shardedSeatingService.isForwarded(forwardedBy);
+        log.info("Received request to confirm hold: {}, trainId: {}", holdId, trainId);
+        return ResponseEntity.ok(shardedSeatingService.confirmHold(holdId, trainId, forwarded));
+    }
+
+    @DeleteMapping("/{holdId}")
+    public ResponseEntity<String> releaseHold(@PathVariable String holdId,
+            @RequestParam(required = false) String trainId,
+            @RequestHeader(name = HttpShardTransport.FORWARDED_HEADER, required = false) String forwardedBy)
+            throws CustomCloudBeesException {
+        boolean forwarded = shardedSeatingService.isForwarded(forwardedBy);
+        log.info("Received request to release hold: {}, trainId: {}", holdId, trainId);
+        shardedSeatingService.releaseHold(holdId, trainId, forwarded);
+        return ResponseEntity.ok().body("Successfully released hold");
+    }
+}
@@ -0,0 +1,34 @@
+package com.cloudbees.assessment.api.controller;
+
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.shard.ShardedSeatingService;
+import com.cloudbees.assessment.stream.SeatAvailabilityStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/seats")
+@Slf4j
+@RequiredArgsConstructor
+public class SeatStreamController {
+
+    private final SeatAvailabilityStream seatAvailabilityStream;
+
+    private final ShardedSeatingService shardedSeatingService;
+
+    // Seat changes are only seen by the node owning the train, a subscription sent elsewhere is redirected there
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSeatChanges(@RequestParam(required = false) String trainId,
+            @RequestParam(required = false) Section section) throws CustomCloudBeesException {
+        log.info("Received request to stream seat changes of trainId: {}, section: {}", trainId, section);
+        shardedSeatingService.requireLocal(trainId);
+        return seatAvailabilityStream.subscribe(trainId, section);
+    }
+}
@@ -0,0 +1,41 @@
+package com.cloudbees.assessment.api.controller;
+
+import com.cloudbees.assessment.api.response.SectionStatsResponse;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.shard.ShardedSeatingService;
+import com.cloudbees.assessment.stats.BookingStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/stats")
+@Slf4j
+@RequiredArgsConstructor
+public class StatsController {
+
+    private final BookingStats bookingStats;
+
+    private final ShardedSeatingService shardedSeatingService;
+
+    // Served from running counters, a dashboard refresh does not touch the database. The counters of a train are
+    // only kept up to date on its owner, so a train owned by another node is redirected there and is left out of the
+    // stats of every train
+    @GetMapping()
+    public ResponseEntity<List<SectionStatsResponse>> getStats(@RequestParam(required = false) String trainId)
+            throws CustomCloudBeesException {
+        log.info("Received request to get booking stats of trainId: {}", trainId);
+        if (trainId != null) {
+            shardedSeatingService.requireLocal(trainId);
+            return ResponseEntity.ok(bookingStats.getStats(trainId));
+        }
+        return ResponseEntity.ok(bookingStats.getStats(null).stream()
+                .filter(stats -> shardedSeatingService.isLocal(stats.getTrainId())).toList());
+    }
+}
@@ -0,0 +1,52 @@
+package com.cloudbees.assessment.api.controller;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.response.WaitlistResponse;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.shard.ShardedSeatingService;
+import com.cloudbees.assessment.waitlist.WaitlistService;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/waitlist")
+@Slf4j
+@RequiredArgsConstructor
+public class WaitlistController {
+
+    private final WaitlistService waitlistService;
+
+    private final ShardedSeatingService shardedSeatingService;
+
+    // Waitlists live on the node owning the train, a join sent elsewhere is redirected there with 307, and the
+    // status and leave calls of the passenger go to the same node
+    @PostMapping()
+    public ResponseEntity<WaitlistResponse> joinWaitlist(@RequestBody @Valid ReceiptSubmitRequest receiptSubmitRequest)
+            throws CustomCloudBeesException {
+        log.info("Received request to book or waitlist. email: {}, trainId: {}, section: {}",
+                receiptSubmitRequest.getEmail(), receiptSubmitRequest.getTrainId(), receiptSubmitRequest.getSection());
+        shardedSeatingService.requireLocal(receiptSubmitRequest.getTrainId());
+        return ResponseEntity.ok(waitlistService.join(receiptSubmitRequest));
+    }
+
+    // Long poll, answers once the passenger is promoted or after waitMs with the current status
+    @GetMapping("/{waitlistId}")
+    public CompletableFuture<ResponseEntity<WaitlistResponse>> getWaitlistStatus(@PathVariable String waitlistId,
+            @RequestParam(defaultValue = "0") @Min(0) long waitMs) throws CustomCloudBeesException {
+        log.info("Received request to get waitlist status: {}, waitMs: {}", waitlistId, waitMs);
+        return waitlistService.awaitStatus(waitlistId, waitMs).thenApply(ResponseEntity::ok);
+    }
+
+    @DeleteMapping("/{waitlistId}")
+    public ResponseEntity<String> leaveWaitlist(@PathVariable String waitlistId) throws CustomCloudBeesException {
+        log.info("Received request to leave waitlist: {}", waitlistId);
+        waitlistService.leave(waitlistId);
+        return ResponseEntity.ok().body("Successfully left the waitlist");
+    }
+}
@@ -0,0 +1,24 @@
+package com.cloudbees.assessment.api.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchReceiptSubmitRequest {
+    @NotEmpty(message = "at least one receipt is required")
+    @Size(max = 1000, message = "at most 1000 receipts can be submitted at once")
+    @Valid
+    private List<ReceiptSubmitRequest> receipts;
+    // Seat the whole group next to each other, all receipts must then be for the same train and journey
+    private boolean adjacent;
+}
@@ -1,13 +1,18 @@
 package com.cloudbees.assessment.api.request;
 
+import com.cloudbees.assessment.enums.SeatPosition;
+import com.cloudbees.assessment.enums.Section;
+import com.fasterxml.jackson.annotation.JsonCreator;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
 import java.math.BigDecimal;
 
 @Getter
-@AllArgsConstructor
+@EqualsAndHashCode
+@AllArgsConstructor(onConstructor_ = @JsonCreator)
 public class ReceiptSubmitRequest {
     private String from;
     private String to;
@@ -18,4 +23,14 @@ public class ReceiptSubmitRequest {
     @NotBlank(message = "email is required")
     private String email;
     private BigDecimal price;
+    // Optional, the default train is booked when not given
+    private String trainId;
+    // Optional seat preferences, a booking fails rather than getting a seat that does not match them
+    private Section section;
+    private SeatPosition seatPosition;
+
+    public ReceiptSubmitRequest(String from, String to, String firstName, String lastName, String email,
+            BigDecimal price, String trainId) {
+        this(from, to, firstName, lastName, email, price, trainId, null, null);
+    }
 }
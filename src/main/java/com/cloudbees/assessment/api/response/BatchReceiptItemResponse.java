@@ -0,0 +1,20 @@
+package com.cloudbees.assessment.api.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Outcome of one receipt of a batch submission, in the position it had in the request.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchReceiptItemResponse {
+    private int index;
+    private int status;
+    private ReceiptResponse receipt;
+    private String errorMessage;
+}
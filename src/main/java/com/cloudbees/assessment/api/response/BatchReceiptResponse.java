@@ -0,0 +1,16 @@
+package com.cloudbees.assessment.api.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class BatchReceiptResponse {
+    private int succeeded;
+    private int failed;
+    private List<BatchReceiptItemResponse> results;
+}
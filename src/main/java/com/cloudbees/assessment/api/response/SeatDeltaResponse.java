@@ -0,0 +1,16 @@
+package com.cloudbees.assessment.api.response;
+
+import com.cloudbees.assessment.enums.SeatState;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class SeatDeltaResponse {
+
+    private Integer seatNumber;
+    private SeatState oldState;
+    private SeatState newState;
+}
@@ -0,0 +1,20 @@
+package com.cloudbees.assessment.api.response;
+
+import com.cloudbees.assessment.enums.Section;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class SeatHoldResponse {
+
+    private String holdId;
+    private String trainId;
+    private Integer seatNumber;
+    private Section section;
+    private Instant expiresAt;
+}
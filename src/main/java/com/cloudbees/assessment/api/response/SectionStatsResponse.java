@@ -0,0 +1,25 @@
+package com.cloudbees.assessment.api.response;
+
+import com.cloudbees.assessment.enums.Section;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SectionStatsResponse {
+    private String trainId;
+    private Section section;
+    // Booked journeys, a seat sold on two legs of the route counts twice
+    private long seatsSold;
+    // Seats not booked on any segment of the route
+    private int vacantSeats;
+    private BigDecimal revenue;
+    // Absent while nothing is sold in the section
+    private BigDecimal averageFare;
+}
@@ -0,0 +1,21 @@
+package com.cloudbees.assessment.api.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * One page of a section manifest. {@code nextCursor} is passed back to get the following page and is absent on
+ * the last page.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserSeatPageResponse {
+    private List<UserSeatResponse> users;
+    private String nextCursor;
+}
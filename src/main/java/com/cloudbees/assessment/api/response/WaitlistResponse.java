@@ -0,0 +1,21 @@
+package com.cloudbees.assessment.api.response;
+
+import com.cloudbees.assessment.enums.WaitlistStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WaitlistResponse {
+
+    private String waitlistId;
+    private WaitlistStatus status;
+    // Passengers ahead in the waitlist while waiting
+    private Integer position;
+    private ReceiptResponse receipt;
+    private String errorMessage;
+}
@@ -0,0 +1,159 @@
+package com.cloudbees.assessment.cache;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Receipts of submits made with an {@code Idempotency-Key}, so a retried submit gets the receipt of the first one
+ * without booking again or touching the repositories.
+ * <p>
+ * A submit arriving while the first one with the same key is still running waits for its outcome. A failed submit
+ * is not kept, its retry runs again. Keys expire after {@code seating.idempotency.ttl-seconds} and at most
+ * {@code seating.idempotency.max-entries} are kept, the oldest ones are evicted first. A submit still running is
+ * never evicted, the bound is exceeded until it completes.
+ */
+@Component
+@Slf4j
+public class IdempotencyCache {
+
+    // Clients retrying a submit send the key of the first attempt and get its receipt back
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Entries in the order they were added, which is also the order they expire in
+    private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final long replayWaitMillis;
+
+    private final LongAdder replays = new LongAdder();
+
+    public IdempotencyCache(SeatingProperties seatingProperties) {
+        this.ttlMillis = seatingProperties.getIdempotency().getTtlSeconds() * 1000;
+        this.maxEntries = seatingProperties.getIdempotency().getMaxEntries();
+        this.replayWaitMillis = seatingProperties.getIdempotency().getReplayWaitMs();
+    }
+
+    @FunctionalInterface
+    public interface Submission {
+        ReceiptResponse submit() throws CustomCloudBeesException;
+    }
+
+    /**
+     * Runs the submission once per key, returning the stored receipt to every later submit with the same key.
+     */
+    public ReceiptResponse submit(String key, ReceiptSubmitRequest request, Submission submission)
+            throws CustomCloudBeesException {
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(key, request, now + ttlMillis);
+        Entry existing = entries.putIfAbsent(key, entry);
+        while (existing != null && existing.isExpired(now)) {
+            entries.remove(key, existing);
+            existing = entries.putIfAbsent(key, entry);
+        }
+        if (existing != null) {
+            return replay(key, request, existing);
+        }
+        order.add(entry);
+        queued.incrementAndGet();
+        evictExpiredAndOldest(now);
+        try {
+            ReceiptResponse response = submission.submit();
+            entry.result.complete(response);
+            return response;
+        } catch (CustomCloudBeesException | RuntimeException e) {
+            // Let the retry run again, submits already waiting get the same error
+            entries.remove(key, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public long getReplays() {
+        return replays.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private ReceiptResponse replay(String key, ReceiptSubmitRequest request, Entry existing)
+            throws CustomCloudBeesException {
+        if (!existing.request.equals(request)) {
+            throw new CustomCloudBeesException(HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency key was already " +
+                    "used for a different request");
+        }
+        try {
+            ReceiptResponse response = existing.result.get(replayWaitMillis, TimeUnit.MILLISECONDS);
+            replays.increment();
+            log.info("Returning stored receipt of idempotency key: {}", key);
+            return response;
+        } catch (TimeoutException e) {
+            throw new CustomCloudBeesException(HttpStatus.CONFLICT, "A submit with this idempotency key is still " +
+                    "running");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomCloudBeesException(HttpStatus.CONFLICT, "A submit with this idempotency key is still " +
+                    "running");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CustomCloudBeesException cause) {
+                throw cause;
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Failed submits stay queued until they are the oldest, they count towards the bound so the queue stays bounded.
+    // Eviction stops at a submit still running, its retries must keep finding it
+    private void evictExpiredAndOldest(long now) {
+        Entry oldest;
+        while ((oldest = order.peek()) != null) {
+            boolean live = entries.get(oldest.key) == oldest;
+            if (live && !oldest.result.isDone()) {
+                return;
+            }
+            if (!oldest.isExpired(now) && queued.get() <= maxEntries && live) {
+                return;
+            }
+            if (order.remove(oldest)) {
+                queued.decrementAndGet();
+                entries.remove(oldest.key, oldest);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final ReceiptSubmitRequest request;
+        private final long expiresAt;
+        private final CompletableFuture<ReceiptResponse> result = new CompletableFuture<>();
+
+        private Entry(String key, ReceiptSubmitRequest request, long expiresAt) {
+            this.key = key;
+            this.request = request;
+            this.expiresAt = expiresAt;
+        }
+
+        // A submit still running never expires, retries keep waiting for it
+        private boolean isExpired(long now) {
+            return now >= expiresAt && result.isDone();
+        }
+    }
+}
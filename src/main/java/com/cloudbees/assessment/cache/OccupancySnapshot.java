@@ -0,0 +1,17 @@
+package com.cloudbees.assessment.cache;
+
+import com.cloudbees.assessment.api.response.UserSeatResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Immutable occupancy of a section of a train as of a cache version.
+ */
+@Getter
+@AllArgsConstructor
+public class OccupancySnapshot {
+    private final long version;
+    private final List<UserSeatResponse> users;
+}
@@ -0,0 +1,132 @@
+package com.cloudbees.assessment.cache;
+
+import com.cloudbees.assessment.api.response.UserSeatResponse;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.event.SeatOccupancyChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Read cache of the occupancy of every section of every train.
+ * <p>
+ * Each section has a version that is bumped by every {@link SeatOccupancyChangedEvent} of the section. A snapshot
+ * is served only while its version is current, and a snapshot loaded while a change happened is never stored, so
+ * readers never see data older than the last stored change. Reads are a map lookup and take no lock.
+ * <p>
+ * The cache holds at most {@code seating.cache.max-entries} sections. When it is full the section read least
+ * recently is evicted, which drops journeys that have departed and are no longer looked at.
+ */
+@Component
+@Slf4j
+public class SeatOccupancyCache {
+
+    private final int maxEntries;
+    private final Map<SectionKey, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<SectionKey, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SeatOccupancyCache(SeatingProperties seatingProperties) {
+        this.maxEntries = seatingProperties.getCache().getMaxEntries();
+    }
+
+    /**
+     * @return the cached occupancy of the section, loading and caching it on a miss
+     */
+    public List<UserSeatResponse> get(String trainId, Section section, Supplier<List<UserSeatResponse>> loader) {
+        SectionKey key = new SectionKey(trainId, section);
+        AtomicLong version = versions.computeIfAbsent(key, k -> new AtomicLong());
+        long currentVersion = version.get();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.snapshot.getVersion() == currentVersion) {
+            hits.increment();
+            entry.lastAccess = System.nanoTime();
+            return entry.snapshot.getUsers();
+        }
+        misses.increment();
+        List<UserSeatResponse> users = List.copyOf(loader.get());
+
+        // Only store what was loaded if no change happened meanwhile
+        if (version.get() == currentVersion) {
+            entries.put(key, new Entry(new OccupancySnapshot(currentVersion, users)));
+            if (entries.size() > maxEntries) {
+                evictLeastRecentlyUsed();
+            }
+        }
+        return users;
+    }
+
+    // Runs after commit, so a reader can not cache the rows of the section as they were before the change
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSeatOccupancyChanged(SeatOccupancyChangedEvent event) {
+        invalidate(event.getTrainId(), event.getSection());
+    }
+
+    public void invalidate(String trainId, Section section) {
+        SectionKey key = new SectionKey(trainId, section);
+        versions.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+        entries.remove(key);
+    }
+
+    public void clear() {
+        versions.values().forEach(AtomicLong::incrementAndGet);
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void evictLeastRecentlyUsed() {
+        while (entries.size() > maxEntries) {
+            SectionKey oldest = null;
+            long oldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<SectionKey, Entry> e : entries.entrySet()) {
+                if (e.getValue().lastAccess < oldestAccess) {
+                    oldestAccess = e.getValue().lastAccess;
+                    oldest = e.getKey();
+                }
+            }
+            if (oldest == null || entries.remove(oldest) == null) {
+                return;
+            }
+            evictions.increment();
+            log.debug("Evicted occupancy of train: {}, section: {}", oldest.trainId(), oldest.section());
+        }
+    }
+
+    private record SectionKey(String trainId, Section section) {
+    }
+
+    private static final class Entry {
+        private final OccupancySnapshot snapshot;
+        private volatile long lastAccess = System.nanoTime();
+
+        private Entry(OccupancySnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+}
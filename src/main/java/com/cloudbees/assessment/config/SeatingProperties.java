@@ -0,0 +1,181 @@
+package com.cloudbees.assessment.config;
+
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.layout.TrainLayout;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Seat layouts of the trains, bound from the {@code seating.*} properties.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "seating")
+public class SeatingProperties {
+
+    // Train used when a request does not name one
+    private String defaultTrainId;
+    private List<Train> trains = new ArrayList<>();
+    private Cache cache = new Cache();
+    // Attempts of a seat move that conflicts with a concurrent update of the same user
+    private int seatMoveMaxAttempts = 3;
+    private Journal journal = new Journal();
+    private Warmup warmup = new Warmup();
+    private Hold hold = new Hold();
+    private Shard shard = new Shard();
+    private Idempotency idempotency = new Idempotency();
+    private Stream stream = new Stream();
+    private Export export = new Export();
+    private Waitlist waitlist = new Waitlist();
+    private Admission admission = new Admission();
+    private Tracing tracing = new Tracing();
+
+    @Getter
+    @Setter
+    public static class Train {
+        private String id;
+        // Stations of the route in travel order, optional
+        private List<String> stations = new ArrayList<>();
+        private List<Coach> coaches = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    public static class Coach {
+        private String id;
+        // Seats are numbered row by row, the first and last seat of a row are window seats
+        private int seatsPerRow = TrainLayout.DEFAULT_SEATS_PER_ROW;
+        private List<SectionSeats> sections = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    public static class SectionSeats {
+        private Section section;
+        private int seats;
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+        // Sections of trains kept in the occupancy cache
+        private int maxEntries = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Journal {
+        // Acknowledge bookings once journaled and store them in the database in the background
+        private boolean enabled;
+        private String path = "data/booking.journal";
+        private int sizeMb = 64;
+        private long flushIntervalMs = 20;
+        private int flushBatchSize = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class Warmup {
+        // Id ranges of users loaded into the seat inventory at the same time on startup
+        private int parallelism = 4;
+        // Smallest number of users worth a range of its own
+        private long minRowsPerShard = 50_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Hold {
+        // Time a held seat stays claimed without being confirmed
+        private long ttlSeconds = 300;
+        // Resolution of the expiry wheel, a hold expires at most one tick late
+        private long tickMs = 100;
+        private int wheelSize = 64;
+    }
+
+    @Getter
+    @Setter
+    public static class Shard {
+        // Partition the trains across the nodes, each node allocating seats only for the trains it owns
+        private boolean enabled;
+        private String nodeId = "local";
+        // Base url of every node by node id, this node included
+        private Map<String, String> nodes = new LinkedHashMap<>();
+        // Points of every node on the hash ring, more points spread the trains more evenly
+        private int virtualNodes = 128;
+        // Shared by the nodes and sent on forwarded requests, only a request carrying it is served without a redirect
+        private String secret;
+        private int connectTimeoutMs = 1000;
+        private int readTimeoutMs = 5000;
+    }
+
+    @Getter
+    @Setter
+    public static class Idempotency {
+        // Time a retry with the same Idempotency-Key gets the stored receipt
+        private long ttlSeconds = 86_400;
+        private int maxEntries = 100_000;
+        // Time a retry waits for the first submit with the same key before it is answered 409
+        private long replayWaitMs = 10_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Stream {
+        // Time a seat stream stays open, clients reconnect and get a new snapshot after it
+        private long timeoutMs = 1_800_000;
+        private int maxSubscribers = 10_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Export {
+        // Rows of the receipt export written per chunk
+        private int chunkRows = 4096;
+        // Decimals kept of the prices, stored as longs scaled by ten to this power
+        private int priceScale = 2;
+    }
+
+    @Getter
+    @Setter
+    public static class Waitlist {
+        // Passengers waiting on one train and section at most
+        private int maxEntriesPerQueue = 1000;
+        // Longest a status request waits for a promotion before answering
+        private long maxWaitMs = 30_000;
+        // Time the outcome of a promotion stays available to status requests
+        private long resultTtlSeconds = 3600;
+        private long cleanupIntervalMs = 60_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Admission {
+        // Rate limit and cap the submits of every train before they reach the inventory and the database
+        private boolean enabled = true;
+        // Sustained submits per second of one train and requested section, and the burst allowed above it
+        private int ratePerSecond = 200;
+        private int burst = 50;
+        // Submits of one train being booked at the same time, so a hot train can not take every thread
+        private int maxInFlightPerTrain = 32;
+        // Retry-After of a submit turned away by the in-flight cap
+        private long retryAfterSeconds = 1;
+    }
+
+    @Getter
+    @Setter
+    public static class Tracing {
+        // Write a span of every controller, service and repository call of sampled requests to a local file
+        private boolean enabled;
+        // Share of requests traced, the calls of a request are all traced or none are
+        private double sampleRate = 0.01;
+        private String path = "logs/spans.jsonl";
+        // Spans waiting to be written, spans finished while it is full are dropped
+        private int queueSize = 8192;
+    }
+}
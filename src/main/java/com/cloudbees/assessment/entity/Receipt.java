@@ -15,7 +15,8 @@ import java.math.BigDecimal;
 @NoArgsConstructor
 public class Receipt {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "receipt_seq")
+    @SequenceGenerator(name = "receipt_seq", sequenceName = "receipt_seq", allocationSize = 50)
     private Long id;
     private String fromStation;
     private String toStation;
@@ -13,15 +13,20 @@ import lombok.Setter;
 @Getter
 @Setter
 @NoArgsConstructor
-@Table(name = "`user`")
+@Table(name = "`user`",
+        uniqueConstraints = @UniqueConstraint(name = "uk_user_email", columnNames = "email"),
+        indexes = @Index(name = "idx_user_train_section_seat", columnList = "train_id, section, seat_number"))
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class User {
 
+    // Pooled sequence, one round trip reserves ids for 50 rows so batched inserts need no id lookups
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
     private Long id;
     private String firstName;
     private String lastName;
+    @Column(nullable = false)
     private String email;
 
     // Bidirectional one to one mapping between receipt and user
@@ -29,7 +34,13 @@ public class User {
     @JsonIgnore
     private Receipt receipt;
 
+    private String trainId;
     private Integer seatNumber;
     @Enumerated(EnumType.STRING)
     private Section section;
+
+    // Optimistic lock, a save based on a stale read of the user fails instead of overwriting a concurrent change
+    @Version
+    @JsonIgnore
+    private Long version;
 }
@@ -0,0 +1,5 @@
+package com.cloudbees.assessment.enums;
+
+public enum SeatPosition {
+    WINDOW, AISLE
+}
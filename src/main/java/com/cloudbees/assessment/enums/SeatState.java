@@ -0,0 +1,10 @@
+package com.cloudbees.assessment.enums;
+
+public enum SeatState {
+    // Not booked on any segment of the route
+    VACANT,
+    // Booked on some segments, other journeys can still get it
+    PARTLY_BOOKED,
+    // Booked on every segment of the route
+    BOOKED
+}
@@ -0,0 +1,12 @@
+package com.cloudbees.assessment.enums;
+
+public enum WaitlistStatus {
+    // Waiting for a seat to free up
+    WAITING,
+    // Promoted, the receipt of the booking is ready
+    BOOKED,
+    // The booking was refused when promoting, e.g. the user is already inside the train
+    FAILED,
+    // The passenger left the waitlist
+    CANCELLED
+}
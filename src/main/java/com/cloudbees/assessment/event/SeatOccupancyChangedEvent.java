@@ -0,0 +1,24 @@
+package com.cloudbees.assessment.event;
+
+import com.cloudbees.assessment.enums.Section;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published by {@code SeatingManagementService} after a booking, move or removal changed the segments held on a
+ * seat and the change is stored. A seat move publishes a release of the old seat and a booking of the new one. A seat
+ * hold that is released or expires publishes a release too.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class SeatOccupancyChangedEvent {
+    private final String trainId;
+    private final Section section;
+    private final int seatNumber;
+    // true when the leg was booked on the seat, false when it was released
+    private final boolean booked;
+    // Segments of the route that were booked or released
+    private final long legMask;
+}
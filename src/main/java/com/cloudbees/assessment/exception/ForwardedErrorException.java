@@ -0,0 +1,20 @@
+package com.cloudbees.assessment.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Error answered by the node owning a train to a forwarded request, sent back to the client with the status, headers
+ * and body the owner answered with.
+ */
+@Getter
+public class ForwardedErrorException extends CustomCloudBeesException {
+
+    private final HttpHeaders headers;
+
+    public ForwardedErrorException(HttpStatus httpStatus, HttpHeaders headers, String body) {
+        super(httpStatus, body);
+        this.headers = headers;
+    }
+}
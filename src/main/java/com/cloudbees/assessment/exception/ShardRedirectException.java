@@ -0,0 +1,19 @@
+package com.cloudbees.assessment.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Request on a train owned by another node that is not forwarded, the client is redirected to the owner with 307.
+ */
+@Getter
+public class ShardRedirectException extends CustomCloudBeesException {
+
+    // Base url of the owner, the path and query of the request are appended to it
+    private final String ownerUrl;
+
+    public ShardRedirectException(String ownerUrl) {
+        super(HttpStatus.TEMPORARY_REDIRECT, "The train is served by another node");
+        this.ownerUrl = ownerUrl;
+    }
+}
@@ -0,0 +1,18 @@
+package com.cloudbees.assessment.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Request turned away by admission control, answered with 429 and a Retry-After header.
+ */
+@Getter
+public class TooManyRequestsException extends CustomCloudBeesException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String errorMessage, long retryAfterSeconds) {
+        super(HttpStatus.TOO_MANY_REQUESTS, errorMessage);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
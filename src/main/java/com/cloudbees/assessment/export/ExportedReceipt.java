@@ -0,0 +1,13 @@
+package com.cloudbees.assessment.export;
+
+import com.cloudbees.assessment.enums.Section;
+
+import java.math.BigDecimal;
+
+/**
+ * Receipt with the booking of its user, one row of a receipt export.
+ */
+public record ExportedReceipt(Long receiptId, Long userId, String firstName, String lastName, String email,
+                              String trainId, Integer seatNumber, Section section, String fromStation,
+                              String toStation, BigDecimal price) {
+}
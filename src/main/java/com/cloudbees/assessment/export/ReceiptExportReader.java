@@ -0,0 +1,142 @@
+package com.cloudbees.assessment.export;
+
+import com.cloudbees.assessment.enums.Section;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Reads back an export written by {@link ReceiptExportWriter}, one chunk at a time.
+ */
+public class ReceiptExportReader {
+
+    private static final Section[] SECTIONS = Section.values();
+
+    private final DataInputStream in;
+    private final int priceScale;
+    private final List<String> dictionary = new ArrayList<>();
+    private final Deque<ExportedReceipt> chunk = new ArrayDeque<>();
+    private long previousReceiptId;
+    private long previousUserId;
+    private boolean ended;
+
+    public ReceiptExportReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        if (this.in.readInt() != ReceiptExportWriter.MAGIC) {
+            throw new IOException("Not a receipt export");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != ReceiptExportWriter.VERSION) {
+            throw new IOException("Unsupported receipt export version " + version);
+        }
+        this.priceScale = this.in.readUnsignedByte();
+        dictionary.add(null);
+    }
+
+    /**
+     * @return the next receipt, or null once the end of the export is reached
+     * @throws EOFException if the export was cut off before its end
+     */
+    public ExportedReceipt read() throws IOException {
+        if (chunk.isEmpty() && !ended) {
+            readChunk();
+        }
+        return chunk.poll();
+    }
+
+    private void readChunk() throws IOException {
+        int rows = (int) readVarLong();
+        if (rows == 0) {
+            ended = true;
+            return;
+        }
+        long newEntries = readVarLong();
+        for (long i = 0; i < newEntries; i++) {
+            dictionary.add(readString());
+        }
+        long[] receiptIds = new long[rows];
+        long[] userIds = new long[rows];
+        int[] nulls = new int[rows];
+        int[] trainIds = new int[rows];
+        int[] fromStations = new int[rows];
+        int[] toStations = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            previousReceiptId += unzigzag(readVarLong());
+            receiptIds[i] = previousReceiptId;
+        }
+        for (int i = 0; i < rows; i++) {
+            previousUserId += unzigzag(readVarLong());
+            userIds[i] = previousUserId;
+        }
+        for (int i = 0; i < rows; i++) {
+            nulls[i] = in.readUnsignedByte();
+        }
+        readDictionaryIds(trainIds);
+        readDictionaryIds(fromStations);
+        readDictionaryIds(toStations);
+        Integer[] seatNumbers = new Integer[rows];
+        for (int i = 0; i < rows; i++) {
+            seatNumbers[i] = (nulls[i] & ReceiptExportWriter.NO_SEAT) != 0 ? null : (int) readVarLong();
+        }
+        Section[] sections = new Section[rows];
+        for (int i = 0; i < rows; i++) {
+            sections[i] = (nulls[i] & ReceiptExportWriter.NO_SECTION) != 0 ? null : SECTIONS[in.readUnsignedByte()];
+        }
+        BigDecimal[] prices = new BigDecimal[rows];
+        for (int i = 0; i < rows; i++) {
+            prices[i] = (nulls[i] & ReceiptExportWriter.NO_PRICE) != 0 ? null :
+                    BigDecimal.valueOf(unzigzag(readVarLong()), priceScale);
+        }
+        String[][] names = new String[3][rows];
+        for (String[] column : names) {
+            for (int i = 0; i < rows; i++) {
+                column[i] = readString();
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            chunk.add(new ExportedReceipt(receiptIds[i], userIds[i], names[0][i], names[1][i], names[2][i],
+                    dictionary.get(trainIds[i]), seatNumbers[i], sections[i], dictionary.get(fromStations[i]),
+                    dictionary.get(toStations[i]), prices[i]));
+        }
+    }
+
+    private void readDictionaryIds(int[] ids) throws IOException {
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = (int) readVarLong();
+        }
+    }
+
+    private String readString() throws IOException {
+        int length = (int) readVarLong();
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in receipt export");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
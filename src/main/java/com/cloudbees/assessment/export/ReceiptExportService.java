@@ -0,0 +1,46 @@
+package com.cloudbees.assessment.export;
+
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.repository.ReceiptRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Bulk export of every receipt with its user for the nightly extracts.
+ */
+@RequiredArgsConstructor
+@Service
+@Slf4j
+public class ReceiptExportService {
+
+    private final ReceiptRepository receiptRepository;
+
+    private final SeatingProperties seatingProperties;
+
+    /**
+     * Writes every receipt to the output as rows come from a forward-only cursor, only the rows of the chunk being
+     * written are held in memory and no entity is loaded.
+     */
+    @Transactional(readOnly = true)
+    public long exportReceipts(OutputStream outputStream) throws IOException {
+        SeatingProperties.Export properties = seatingProperties.getExport();
+        ReceiptExportWriter writer = new ReceiptExportWriter(outputStream, properties.getChunkRows(),
+                properties.getPriceScale());
+        try (Stream<ExportedReceipt> receipts = receiptRepository.streamExport()) {
+            Iterator<ExportedReceipt> iterator = receipts.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+            }
+        }
+        writer.finish();
+        log.info("Exported {} receipts", writer.getRows());
+        return writer.getRows();
+    }
+}
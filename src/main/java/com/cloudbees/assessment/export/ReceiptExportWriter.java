@@ -0,0 +1,179 @@
+package com.cloudbees.assessment.export;
+
+import com.cloudbees.assessment.enums.Section;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes receipts in a compact columnar format, a chunk of rows at a time so memory use does not grow with the
+ * number of receipts.
+ * <p>
+ * The export starts with the int {@link #MAGIC}, a version byte and the scale of the prices. Every chunk is the row
+ * count as a varint, the number of strings added to the dictionary by the chunk and the strings, then one column
+ * after the other:
+ * <ul>
+ *     <li>receipt id and user id, zigzag varint difference to the previous row</li>
+ *     <li>null flags, one byte with {@link #NO_SEAT}, {@link #NO_SECTION} and {@link #NO_PRICE}</li>
+ *     <li>train id, from station and to station, varint dictionary id, 0 for null</li>
+ *     <li>seat number varint, section ordinal byte, price zigzag varint of the price scaled to a long</li>
+ *     <li>first name, last name and email, varint length plus one, 0 for null, then the UTF-8 bytes</li>
+ * </ul>
+ * A chunk of zero rows ends the export. Dictionary ids are given in the order strings first appear, from 1.
+ */
+public class ReceiptExportWriter {
+
+    public static final int MAGIC = 0x52435054;
+    public static final int VERSION = 1;
+
+    static final int NO_SEAT = 1;
+    static final int NO_SECTION = 2;
+    static final int NO_PRICE = 4;
+
+    private final DataOutputStream out;
+    private final int chunkRows;
+    private final int priceScale;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> newEntries = new ArrayList<>();
+    private final List<ExportedReceipt> chunk = new ArrayList<>();
+    private final Column header = new Column();
+    private final Column column = new Column();
+    private long previousReceiptId;
+    private long previousUserId;
+    private long rows;
+
+    public ReceiptExportWriter(OutputStream out, int chunkRows, int priceScale) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.chunkRows = chunkRows;
+        this.priceScale = priceScale;
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+        this.out.writeByte(priceScale);
+    }
+
+    public void write(ExportedReceipt receipt) throws IOException {
+        chunk.add(receipt);
+        if (chunk.size() == chunkRows) {
+            writeChunk();
+        }
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Writes the last chunk and the end of the export, the output stream is left open. An export that failed part
+     * way is not finished, so readers see it was cut off.
+     */
+    public void finish() throws IOException {
+        writeChunk();
+        // Varint of a zero row count
+        out.writeByte(0);
+        out.flush();
+    }
+
+    private void writeChunk() throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        header.reset();
+        column.reset();
+        for (ExportedReceipt receipt : chunk) {
+            column.writeVarLong(zigzag(valueOf(receipt.receiptId()) - previousReceiptId));
+            previousReceiptId = valueOf(receipt.receiptId());
+        }
+        for (ExportedReceipt receipt : chunk) {
+            column.writeVarLong(zigzag(valueOf(receipt.userId()) - previousUserId));
+            previousUserId = valueOf(receipt.userId());
+        }
+        for (ExportedReceipt receipt : chunk) {
+            column.write((receipt.seatNumber() == null ? NO_SEAT : 0) | (receipt.section() == null ? NO_SECTION : 0)
+                    | (receipt.price() == null ? NO_PRICE : 0));
+        }
+        chunk.forEach(receipt -> column.writeVarLong(dictionaryId(receipt.trainId())));
+        chunk.forEach(receipt -> column.writeVarLong(dictionaryId(receipt.fromStation())));
+        chunk.forEach(receipt -> column.writeVarLong(dictionaryId(receipt.toStation())));
+        for (ExportedReceipt receipt : chunk) {
+            if (receipt.seatNumber() != null) {
+                column.writeVarLong(receipt.seatNumber());
+            }
+        }
+        for (ExportedReceipt receipt : chunk) {
+            if (receipt.section() != null) {
+                column.write(receipt.section().ordinal());
+            }
+        }
+        for (ExportedReceipt receipt : chunk) {
+            if (receipt.price() != null) {
+                column.writeVarLong(zigzag(scaled(receipt.price())));
+            }
+        }
+        chunk.forEach(receipt -> column.writeString(receipt.firstName()));
+        chunk.forEach(receipt -> column.writeString(receipt.lastName()));
+        chunk.forEach(receipt -> column.writeString(receipt.email()));
+
+        header.writeVarLong(chunk.size());
+        header.writeVarLong(newEntries.size());
+        newEntries.forEach(header::writeString);
+        header.writeTo(out);
+        column.writeTo(out);
+        rows += chunk.size();
+        newEntries.clear();
+        chunk.clear();
+    }
+
+    private int dictionaryId(String value) {
+        if (value == null) {
+            return 0;
+        }
+        return dictionary.computeIfAbsent(value, v -> {
+            newEntries.add(v);
+            return dictionary.size() + 1;
+        });
+    }
+
+    // Fails rather than rounding a price that has more decimals than the export keeps
+    private long scaled(BigDecimal price) {
+        return price.setScale(priceScale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    private static long valueOf(Long id) {
+        return id == null ? 0 : id;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    // Bytes of one part of a chunk, reused for every chunk
+    private static final class Column extends ByteArrayOutputStream {
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                write(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
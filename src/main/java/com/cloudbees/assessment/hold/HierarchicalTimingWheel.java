@@ -0,0 +1,148 @@
+package com.cloudbees.assessment.hold;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel of timeouts, advanced by a single clock tick for all of them.
+ * <p>
+ * The first wheel has one bucket per tick, every further wheel one bucket per full turn of the wheel below it. A
+ * timeout goes into the lowest wheel whose span reaches its expiry, so scheduling and cancelling are O(1) whatever
+ * the number of timeouts. When the clock reaches a bucket of a higher wheel its timeouts are cascaded down, and
+ * the timeouts of a first wheel bucket expire once its whole tick has passed. A timeout therefore never expires
+ * early and at most one tick late. Cancelled timeouts are dropped when their bucket is reached.
+ *
+ * @param <T> item carried by the timeouts
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    // Buckets of every wheel, the first wheel at index 0, higher wheels are added when a timeout needs them
+    private final List<List<Timeout<T>>[]> wheels = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    // Start of the current tick of the first wheel
+    private long currentTime;
+
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("Tick must be positive and a wheel needs at least two buckets");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTime = startMillis - startMillis % tickMillis;
+        wheels.add(newWheel());
+    }
+
+    /**
+     * Schedules an item to expire at the given time, an expiry in the past expires on the next tick.
+     */
+    public Timeout<T> schedule(T item, long expiresAtMillis) {
+        Timeout<T> timeout = new Timeout<>(item, expiresAtMillis);
+        lock.lock();
+        try {
+            add(timeout);
+        } finally {
+            lock.unlock();
+        }
+        return timeout;
+    }
+
+    /**
+     * Moves the clock to the given time and hands every item whose timeout passed and was not cancelled to the
+     * consumer. Items are handed over after the wheel is unlocked, so the consumer may schedule new timeouts.
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        List<T> due = new ArrayList<>();
+        lock.lock();
+        try {
+            while (currentTime + tickMillis <= nowMillis) {
+                List<Timeout<T>> bucket = takeBucket(0, currentTime);
+                for (Timeout<T> timeout : bucket) {
+                    if (!timeout.cancelled) {
+                        due.add(timeout.item);
+                    }
+                }
+                currentTime += tickMillis;
+                // Highest wheel first, a timeout cascaded into a lower wheel may land in its current bucket too
+                for (int level = wheels.size() - 1; level > 0; level--) {
+                    long levelTick = levelTick(level);
+                    if (currentTime % levelTick == 0) {
+                        takeBucket(level, currentTime).forEach(this::add);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        due.forEach(expired);
+    }
+
+    private void add(Timeout<T> timeout) {
+        if (timeout.cancelled) {
+            return;
+        }
+        long expiresAt = Math.max(timeout.expiresAt, currentTime);
+        for (int level = 0; ; level++) {
+            if (level == wheels.size()) {
+                wheels.add(newWheel());
+            }
+            long levelTick = levelTick(level);
+            long levelStart = currentTime - currentTime % levelTick;
+            if (expiresAt < levelStart + levelTick * wheelSize) {
+                wheels.get(level)[bucketIndex(expiresAt, levelTick)].add(timeout);
+                return;
+            }
+        }
+    }
+
+    private List<Timeout<T>> takeBucket(int level, long time) {
+        List<Timeout<T>>[] wheel = wheels.get(level);
+        int index = bucketIndex(time, levelTick(level));
+        List<Timeout<T>> bucket = wheel[index];
+        wheel[index] = new ArrayList<>();
+        return bucket;
+    }
+
+    private long levelTick(int level) {
+        long levelTick = tickMillis;
+        for (int i = 0; i < level; i++) {
+            levelTick *= wheelSize;
+        }
+        return levelTick;
+    }
+
+    private int bucketIndex(long time, long levelTick) {
+        return (int) ((time / levelTick) % wheelSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Timeout<T>>[] newWheel() {
+        List<Timeout<T>>[] wheel = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        return wheel;
+    }
+
+    public static final class Timeout<T> {
+        private final T item;
+        private final long expiresAt;
+        private volatile boolean cancelled;
+
+        private Timeout(T item, long expiresAt) {
+            this.item = item;
+            this.expiresAt = expiresAt;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
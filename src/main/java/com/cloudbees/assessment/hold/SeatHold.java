@@ -0,0 +1,15 @@
+package com.cloudbees.assessment.hold;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.inventory.TrainInventory;
+
+import java.time.Instant;
+
+/**
+ * Seat claimed in the inventory for a passenger until the booking is confirmed, released or the hold expires.
+ *
+ * @param train inventory the seat was claimed in, the seat is given back to it
+ */
+public record SeatHold(String holdId, ReceiptSubmitRequest request, TrainInventory train, int seatNumber,
+        long legMask, Instant expiresAt) {
+}
@@ -0,0 +1,96 @@
+package com.cloudbees.assessment.hold;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.event.SeatOccupancyChangedEvent;
+import com.cloudbees.assessment.inventory.TrainInventory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Open seat holds, expired on a {@link HierarchicalTimingWheel} advanced every {@code seating.hold.tick-ms}.
+ * <p>
+ * Confirming, releasing and expiring a hold all start by removing it from the registry, so only one of them ever
+ * gets the seat of a hold.
+ */
+@Component
+@Slf4j
+public class SeatHoldRegistry {
+
+    private final Map<String, Entry> holds = new ConcurrentHashMap<>();
+    private final HierarchicalTimingWheel<String> expiries;
+    private final SeatingProperties.Hold properties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Clock clock;
+
+    @Autowired
+    public SeatHoldRegistry(SeatingProperties seatingProperties, ApplicationEventPublisher eventPublisher) {
+        this(seatingProperties, eventPublisher, Clock.systemUTC());
+    }
+
+    SeatHoldRegistry(SeatingProperties seatingProperties, ApplicationEventPublisher eventPublisher, Clock clock) {
+        this.properties = seatingProperties.getHold();
+        this.eventPublisher = eventPublisher;
+        this.clock = clock;
+        this.expiries = new HierarchicalTimingWheel<>(properties.getTickMs(), properties.getWheelSize(),
+                clock.millis());
+    }
+
+    /**
+     * Holds a seat already claimed in the inventory of the train for the configured time to live.
+     */
+    public SeatHold add(ReceiptSubmitRequest request, TrainInventory train, int seatNumber, long legMask) {
+        String holdId = UUID.randomUUID().toString();
+        Instant expiresAt = clock.instant().plusSeconds(properties.getTtlSeconds());
+        SeatHold hold = new SeatHold(holdId, request, train, seatNumber, legMask, expiresAt);
+        HierarchicalTimingWheel.Timeout<String> timeout = expiries.schedule(holdId, expiresAt.toEpochMilli());
+        holds.put(holdId, new Entry(hold, timeout));
+        return hold;
+    }
+
+    /**
+     * Removes an open hold, its seat now belongs to the caller.
+     *
+     * @return the hold, or null if there is no such hold or it already expired
+     */
+    public SeatHold take(String holdId) {
+        Entry entry = holds.remove(holdId);
+        if (entry == null) {
+            return null;
+        }
+        entry.timeout().cancel();
+        return entry.hold();
+    }
+
+    public int size() {
+        return holds.size();
+    }
+
+    @Scheduled(fixedRateString = "${seating.hold.tick-ms:100}")
+    public void expireHolds() {
+        expiries.advance(clock.millis(), holdId -> {
+            Entry entry = holds.remove(holdId);
+            if (entry != null) {
+                SeatHold hold = entry.hold();
+                hold.train().getSeats().release(hold.seatNumber(), hold.legMask());
+                log.info("Hold {} on seat {} of train {} expired", holdId, hold.seatNumber(),
+                        hold.train().getTrainId());
+                eventPublisher.publishEvent(new SeatOccupancyChangedEvent(hold.train().getTrainId(),
+                        hold.train().getLayout().sectionOf(hold.seatNumber()), hold.seatNumber(), false,
+                        hold.legMask()));
+            }
+        });
+    }
+
+    private record Entry(SeatHold hold, HierarchicalTimingWheel.Timeout<String> timeout) {
+    }
+}
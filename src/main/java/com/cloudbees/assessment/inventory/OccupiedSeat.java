@@ -0,0 +1,7 @@
+package com.cloudbees.assessment.inventory;
+
+/**
+ * Seat of a stored booking together with its journey, as loaded into the inventory on startup.
+ */
+public record OccupiedSeat(String trainId, Integer seatNumber, String fromStation, String toStation) {
+}
@@ -0,0 +1,423 @@
+package com.cloudbees.assessment.inventory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Lock-free, segment aware inventory of the seats of a train.
+ * <p>
+ * The route of a train is split into segments between consecutive stations (at most 64), and a booking holds its
+ * seat only for the segments of its leg, given as a bit mask. A seat can be sold again to any passenger whose leg
+ * does not overlap the legs already booked on it.
+ * <p>
+ * The source of truth is one segment mask per seat, claimed and released with a single CAS. On top of it every
+ * segment keeps an atomic bitset of the seats occupied on that segment, 64 seats per word. Looking up a free seat
+ * for a leg ORs the words of the leg's segments and picks a clear bit, so 64 seats are checked per word read and
+ * the scan starts past the words already known to be full. The same word scan restricts the search to a set of
+ * allowed seats, such as a section, or finds runs of consecutive free seats for groups. A train without stations
+ * has a single segment and every booking holds the whole trip.
+ * <p>
+ * Seats may be split into groups, such as the sections of the train, whose vacant seats are counted as seats are
+ * claimed and released, so reading them scans nothing.
+ *
+ * @author vaibhav
+ */
+public class SeatInventory {
+
+    public static final int NO_SEAT = -1;
+    public static final int MAX_SEGMENTS = Long.SIZE;
+    public static final int MAX_RUN_LENGTH = Long.SIZE;
+
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+    private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+
+    private final int capacity;
+    private final int segmentCount;
+    private final long fullRouteMask;
+
+    // Segments of the route held on each seat, index is seat number - 1
+    private final AtomicLongArray seatMasks;
+    // Per segment bitset of occupied seats, kept in sync with seatMasks and used to find free seats
+    private final AtomicLongArray[] occupiedBySegment;
+    // Per segment index of the lowest word that may still have a free seat
+    private final AtomicInteger[] firstFreeWordHints;
+    // Seats not booked on any segment
+    private final LongAdder vacant = new LongAdder();
+    // Group of every seat, index is seat number - 1, and the seats of each group not booked on any segment
+    private final byte[] groupBySeat;
+    private final LongAdder[] vacantByGroup;
+
+    public SeatInventory(int capacity) {
+        this(capacity, 1);
+    }
+
+    public SeatInventory(int capacity, int segmentCount) {
+        this(capacity, segmentCount, 1, seatNumber -> 0);
+    }
+
+    /**
+     * @param groupCount  number of groups, at most {@link Byte#MAX_VALUE}
+     * @param groupOfSeat group of a seat number, between 0 and groupCount - 1
+     */
+    public SeatInventory(int capacity, int segmentCount, int groupCount, IntUnaryOperator groupOfSeat) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Seat capacity must be positive");
+        }
+        if (segmentCount <= 0 || segmentCount > MAX_SEGMENTS) {
+            throw new IllegalArgumentException("Segment count must be between 1 and " + MAX_SEGMENTS);
+        }
+        this.capacity = capacity;
+        this.segmentCount = segmentCount;
+        this.fullRouteMask = segmentCount == MAX_SEGMENTS ? -1L : (1L << segmentCount) - 1;
+        this.seatMasks = new AtomicLongArray(capacity);
+
+        int wordCount = ((capacity - 1) >> ADDRESS_BITS_PER_WORD) + 1;
+        int usedBitsInLastWord = capacity - ((wordCount - 1) << ADDRESS_BITS_PER_WORD);
+        this.occupiedBySegment = new AtomicLongArray[segmentCount];
+        this.firstFreeWordHints = new AtomicInteger[segmentCount];
+        for (int segment = 0; segment < segmentCount; segment++) {
+            occupiedBySegment[segment] = new AtomicLongArray(wordCount);
+            // Mark the bits past the last seat as occupied so they are never handed out
+            if (usedBitsInLastWord < BITS_PER_WORD) {
+                occupiedBySegment[segment].set(wordCount - 1, -1L << usedBitsInLastWord);
+            }
+            firstFreeWordHints[segment] = new AtomicInteger();
+        }
+        vacant.add(capacity);
+
+        if (groupCount <= 0 || groupCount > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Group count must be between 1 and " + Byte.MAX_VALUE);
+        }
+        this.groupBySeat = new byte[capacity];
+        this.vacantByGroup = new LongAdder[groupCount];
+        for (int group = 0; group < groupCount; group++) {
+            vacantByGroup[group] = new LongAdder();
+        }
+        for (int index = 0; index < capacity; index++) {
+            int group = groupOfSeat.applyAsInt(index + 1);
+            if (group < 0 || group >= groupCount) {
+                throw new IllegalArgumentException("Seat " + (index + 1) + " is in no group");
+            }
+            groupBySeat[index] = (byte) group;
+            vacantByGroup[group].increment();
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int segmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * @return mask holding every segment of the route, used for bookings of the whole trip
+     */
+    public long fullRouteMask() {
+        return fullRouteMask;
+    }
+
+    public boolean contains(int seatNumber) {
+        return seatNumber >= 1 && seatNumber <= capacity;
+    }
+
+    /**
+     * @return true if the seat is not booked on any segment
+     */
+    public boolean isFree(int seatNumber) {
+        return contains(seatNumber) && seatMasks.get(seatNumber - 1) == 0;
+    }
+
+    /**
+     * @return true if the seat is not booked on any segment of the given leg
+     */
+    public boolean isFree(int seatNumber, long legMask) {
+        return contains(seatNumber) && (seatMasks.get(seatNumber - 1) & legMask) == 0;
+    }
+
+    /**
+     * @return segments of the route currently booked on the seat
+     */
+    public long bookedSegments(int seatNumber) {
+        return contains(seatNumber) ? seatMasks.get(seatNumber - 1) : 0;
+    }
+
+    public boolean claim(int seatNumber) {
+        return claim(seatNumber, fullRouteMask);
+    }
+
+    /**
+     * Claims the given seat for the segments of a leg.
+     *
+     * @return true if no segment of the leg was booked and the seat now belongs to the caller for the leg, false
+     * if the leg overlaps an existing booking or the seat does not exist
+     */
+    public boolean claim(int seatNumber, long legMask) {
+        checkLeg(legMask);
+        return contains(seatNumber) && tryClaim(seatNumber - 1, legMask);
+    }
+
+    public boolean release(int seatNumber) {
+        return release(seatNumber, fullRouteMask);
+    }
+
+    /**
+     * Releases the segments of a leg held on the given seat.
+     *
+     * @return true if any segment of the leg was booked, false if the leg was already free or the seat does not
+     * exist
+     */
+    public boolean release(int seatNumber, long legMask) {
+        checkLeg(legMask);
+        if (!contains(seatNumber)) {
+            return false;
+        }
+        int index = seatNumber - 1;
+        long mask;
+        do {
+            mask = seatMasks.get(index);
+            if ((mask & legMask) == 0) {
+                return false;
+            }
+        } while (!seatMasks.compareAndSet(index, mask, mask & ~legMask));
+        if ((mask & ~legMask) == 0) {
+            vacant.increment();
+            vacantByGroup[groupBySeat[index]].increment();
+        }
+        int wordIndex = wordIndex(index);
+        for (long changed = mask & legMask; changed != 0; changed &= changed - 1) {
+            int segment = Long.numberOfTrailingZeros(changed);
+            syncSegmentBit(segment, index);
+            firstFreeWordHints[segment].accumulateAndGet(wordIndex, Math::min);
+        }
+        return true;
+    }
+
+    public int claimFirstFree() {
+        return claimFirstFree(fullRouteMask);
+    }
+
+    /**
+     * Claims the lowest numbered seat that is free on every segment of the leg.
+     *
+     * @return the claimed seat number, or {@link #NO_SEAT} if no seat is free for the whole leg
+     */
+    public int claimFirstFree(long legMask) {
+        return claimFirstFree(legMask, null);
+    }
+
+    /**
+     * Claims the lowest numbered seat among the allowed seats that is free on every segment of the leg.
+     *
+     * @param allowedSeats bitset of the seats to choose from, bit i of word w is seat 64 * w + i + 1, null for any
+     * @return the claimed seat number, or {@link #NO_SEAT} if no allowed seat is free for the whole leg
+     */
+    public int claimFirstFree(long legMask, long[] allowedSeats) {
+        checkLeg(legMask);
+        int wordCount = occupiedBySegment[0].length();
+
+        // Words below the hint of any segment of the leg are full for that segment, so full for the leg too
+        int start = 0;
+        for (long segments = legMask; segments != 0; segments &= segments - 1) {
+            start = Math.max(start, firstFreeWordHints[Long.numberOfTrailingZeros(segments)].get());
+        }
+        for (int pass = 0; pass < 2; pass++) {
+            for (int wordIndex = start; wordIndex < wordCount; wordIndex++) {
+                long occupied = occupiedWord(wordIndex, legMask);
+                if (allowedSeats != null) {
+                    occupied |= wordIndex < allowedSeats.length ? ~allowedSeats[wordIndex] : -1L;
+                }
+                while (occupied != -1L) {
+                    long bit = Long.lowestOneBit(~occupied);
+                    int index = (wordIndex << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(bit);
+                    if (tryClaim(index, legMask)) {
+                        return index + 1;
+                    }
+                    // Lost the seat to a concurrent booking, the bitsets may lag behind the seat masks
+                    occupied |= bit;
+                }
+            }
+            // A concurrent release may have lowered the hints behind us, rescan once from the start
+            if (start == 0) {
+                break;
+            }
+            start = 0;
+        }
+        return NO_SEAT;
+    }
+
+    /**
+     * Checks for an allowed seat free on every segment of the leg without claiming it. The answer is a read of the
+     * bitsets, a concurrent booking or release may change it straight after.
+     *
+     * @param allowedSeats bitset of the seats to choose from as for {@link #claimFirstFree(long, long[])}
+     */
+    public boolean hasFree(long legMask, long[] allowedSeats) {
+        checkLeg(legMask);
+        int wordCount = occupiedBySegment[0].length();
+        for (int wordIndex = 0; wordIndex < wordCount; wordIndex++) {
+            long occupied = occupiedWord(wordIndex, legMask);
+            if (allowedSeats != null) {
+                occupied |= wordIndex < allowedSeats.length ? ~allowedSeats[wordIndex] : -1L;
+            }
+            if (occupied != -1L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Claims consecutive seats between the given seat numbers, both included, that are all free on every segment
+     * of the leg. Free runs are found a word at a time by ANDing the free bits with shifted copies of themselves.
+     *
+     * @param length number of seats, at most {@link #MAX_RUN_LENGTH}
+     * @return the first seat of the claimed run, or {@link #NO_SEAT} if there is no such run
+     */
+    public int claimRun(long legMask, int length, int firstSeat, int lastSeat) {
+        checkLeg(legMask);
+        if (length <= 0 || length > MAX_RUN_LENGTH) {
+            throw new IllegalArgumentException("Run length must be between 1 and " + MAX_RUN_LENGTH);
+        }
+        int first = Math.max(firstSeat, 1) - 1;
+        int last = Math.min(lastSeat, capacity) - 1;
+        if (last - first + 1 < length) {
+            return NO_SEAT;
+        }
+        int lastWord = wordIndex(last);
+        long next = freeWord(wordIndex(first), legMask, first, last);
+        for (int wordIndex = wordIndex(first); wordIndex <= lastWord; wordIndex++) {
+            long current = next;
+            next = wordIndex < lastWord ? freeWord(wordIndex + 1, legMask, first, last) : 0;
+            // Bit i of starts is set if seats i to i + length - 1 of this word and the next one are free
+            long starts = current;
+            for (int shift = 1; shift < length && starts != 0; shift++) {
+                starts &= (current >>> shift) | (next << (BITS_PER_WORD - shift));
+            }
+            for (; starts != 0; starts &= starts - 1) {
+                int index = (wordIndex << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(starts);
+                if (tryClaimRun(index, length, legMask)) {
+                    return index + 1;
+                }
+            }
+        }
+        return NO_SEAT;
+    }
+
+    /**
+     * @return number of seats not booked on any segment
+     */
+    public int vacantCount() {
+        return vacant.intValue();
+    }
+
+    /**
+     * @return number of seats of the given group not booked on any segment, 0 for a group the inventory does not have
+     */
+    public int vacantCountOfGroup(int group) {
+        return group >= 0 && group < vacantByGroup.length ? vacantByGroup[group].intValue() : 0;
+    }
+
+    /**
+     * @return number of seats between the given seat numbers, both included, that are not booked on any segment
+     */
+    public int vacantCount(int firstSeat, int lastSeat) {
+        int first = Math.max(firstSeat, 1) - 1;
+        int last = Math.min(lastSeat, capacity) - 1;
+        int count = 0;
+        for (int wordIndex = wordIndex(first); first <= last && wordIndex <= wordIndex(last); wordIndex++) {
+            count += Long.bitCount(freeWord(wordIndex, fullRouteMask, first, last));
+        }
+        return count;
+    }
+
+    // Claims every seat of the run, or none of them if a concurrent booking took one
+    private boolean tryClaimRun(int firstIndex, int length, long legMask) {
+        for (int index = firstIndex; index < firstIndex + length; index++) {
+            if (!tryClaim(index, legMask)) {
+                for (int claimed = firstIndex; claimed < index; claimed++) {
+                    release(claimed + 1, legMask);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Seats of the word free on every segment of the leg, limited to the seat indexes first to last
+    private long freeWord(int wordIndex, long legMask, int first, int last) {
+        int wordStart = wordIndex << ADDRESS_BITS_PER_WORD;
+        int low = Math.max(first, wordStart) - wordStart;
+        int high = Math.min(last, wordStart + BITS_PER_WORD - 1) - wordStart;
+        long range = (-1L << low) & (-1L >>> (BITS_PER_WORD - 1 - high));
+        return ~occupiedWord(wordIndex, legMask) & range;
+    }
+
+    private boolean tryClaim(int index, long legMask) {
+        long mask;
+        do {
+            mask = seatMasks.get(index);
+            if ((mask & legMask) != 0) {
+                return false;
+            }
+        } while (!seatMasks.compareAndSet(index, mask, mask | legMask));
+        if (mask == 0) {
+            vacant.decrement();
+            vacantByGroup[groupBySeat[index]].decrement();
+        }
+        for (long segments = legMask; segments != 0; segments &= segments - 1) {
+            syncSegmentBit(Long.numberOfTrailingZeros(segments), index);
+        }
+        return true;
+    }
+
+    /*
+    Copies the seat mask bit of a segment into the segment bitset. Concurrent claims and releases of the same
+    seat may sync out of order, so after writing the bit we re-read the seat mask and repeat until they agree.
+    The last writer always sees the final seat mask, so the bitset converges to it.
+    */
+    private void syncSegmentBit(int segment, int index) {
+        AtomicLongArray words = occupiedBySegment[segment];
+        int wordIndex = wordIndex(index);
+        long bit = bit(index);
+        long segmentBit = 1L << segment;
+        boolean occupied;
+        do {
+            occupied = (seatMasks.get(index) & segmentBit) != 0;
+            long word;
+            long updated;
+            do {
+                word = words.get(wordIndex);
+                updated = occupied ? word | bit : word & ~bit;
+            } while (word != updated && !words.compareAndSet(wordIndex, word, updated));
+            if (occupied && updated == -1L) {
+                firstFreeWordHints[segment].compareAndSet(wordIndex, wordIndex + 1);
+            }
+        } while (occupied != ((seatMasks.get(index) & segmentBit) != 0));
+    }
+
+    private long occupiedWord(int wordIndex, long legMask) {
+        long occupied = 0;
+        for (long segments = legMask; segments != 0 && occupied != -1L; segments &= segments - 1) {
+            occupied |= occupiedBySegment[Long.numberOfTrailingZeros(segments)].get(wordIndex);
+        }
+        return occupied;
+    }
+
+    private void checkLeg(long legMask) {
+        if (legMask == 0 || (legMask & ~fullRouteMask) != 0) {
+            throw new IllegalArgumentException("Leg must hold at least one segment of the route");
+        }
+    }
+
+    private static int wordIndex(int index) {
+        return index >> ADDRESS_BITS_PER_WORD;
+    }
+
+    private static long bit(int index) {
+        return 1L << index;
+    }
+}
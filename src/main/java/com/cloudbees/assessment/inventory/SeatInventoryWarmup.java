@@ -0,0 +1,110 @@
+package com.cloudbees.assessment.inventory;
+
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.layout.TrainLayout;
+import com.cloudbees.assessment.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Claims the seats of the bookings already stored in the database, so the inventory agrees with the database after
+ * a restart. Users are read with a projection of seat and journey only, split into id ranges that are loaded in
+ * parallel once the table is large enough.
+ * <p>
+ * Runs once every bean is created and before the web server is started, so no request can book a seat before it is
+ * loaded, and a booking taken meanwhile can not be claimed twice. The readiness probe stays down until it is done.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SeatInventoryWarmup implements SmartInitializingSingleton {
+
+    private final UserRepository userRepository;
+    private final TrainInventoryRegistry trainInventoryRegistry;
+    private final SeatingProperties seatingProperties;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.nanoTime();
+        Long firstId = userRepository.findFirstId();
+        Long lastId = userRepository.findLastId();
+        LongAdder loaded = new LongAdder();
+        LongAdder conflicts = new LongAdder();
+        int shards = 0;
+        if (firstId != null && lastId != null) {
+            SeatingProperties.Warmup warmup = seatingProperties.getWarmup();
+            shards = (int) Math.max(1, Math.min(warmup.getParallelism(),
+                    userRepository.count() / warmup.getMinRowsPerShard()));
+            load(firstId, lastId, shards, loaded, conflicts);
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        Timer.builder("seating.inventory.warmup")
+                .description("Time taken to load the stored bookings into the seat inventory")
+                .register(meterRegistry)
+                .record(elapsed);
+        if (conflicts.sum() > 0) {
+            log.warn("{} stored bookings overlap another booking of their seat and were not loaded", conflicts.sum());
+        }
+        log.info("Loaded {} occupied seats into the inventory from {} shards in {} ms", loaded.sum(), shards,
+                elapsed.toMillis());
+    }
+
+    private void load(long firstId, long lastId, int shards, LongAdder loaded, LongAdder conflicts) {
+        long shardWidth = (lastId - firstId) / shards + 1;
+        ExecutorService executor = Executors.newFixedThreadPool(shards);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (long from = firstId; from <= lastId; from += shardWidth) {
+                long shardFirstId = from;
+                long shardLastId = Math.min(lastId, from + shardWidth - 1);
+                results.add(executor.submit(() -> claimAll(userRepository.findOccupiedSeats(shardFirstId,
+                        shardLastId), loaded, conflicts)));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not load the stored bookings into the seat inventory",
+                    e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading the stored bookings", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Claims are lock-free, so shards load into the same train concurrently
+    private void claimAll(List<OccupiedSeat> seats, LongAdder loaded, LongAdder conflicts) {
+        for (OccupiedSeat seat : seats) {
+            TrainInventory train = trainInventoryRegistry.find(seat.trainId());
+            if (train == null || !train.getSeats().contains(seat.seatNumber())) {
+                conflicts.increment();
+                continue;
+            }
+            long leg = train.getLayout().legMask(seat.fromStation(), seat.toStation());
+            if (leg == TrainLayout.INVALID_LEG) {
+                leg = train.getSeats().fullRouteMask();
+            }
+            if (train.getSeats().claim(seat.seatNumber(), leg)) {
+                loaded.increment();
+            } else {
+                conflicts.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.cloudbees.assessment.inventory;
+
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.layout.TrainLayout;
+import lombok.Getter;
+
+/**
+ * Seat layout of a train together with its own seat inventory.
+ */
+@Getter
+public class TrainInventory {
+    private final TrainLayout layout;
+    private final SeatInventory seats;
+
+    public TrainInventory(TrainLayout layout) {
+        this.layout = layout;
+        // Vacant seats are counted per section
+        this.seats = new SeatInventory(layout.getSeatCount(), layout.getSegmentCount(), Section.values().length,
+                seatNumber -> layout.sectionOf(seatNumber).ordinal());
+    }
+
+    /**
+     * @return number of seats of the section not booked on any segment
+     */
+    public int vacantCount(Section section) {
+        return seats.vacantCountOfGroup(section.ordinal());
+    }
+
+    public String getTrainId() {
+        return layout.getTrainId();
+    }
+}
@@ -0,0 +1,68 @@
+package com.cloudbees.assessment.inventory;
+
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.layout.TrainLayout;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds one {@link TrainInventory} per train, so bookings on different trains never touch the same seat words.
+ * Trains are loaded from {@link SeatingProperties} on startup and more can be registered at runtime.
+ */
+@Component
+@Slf4j
+public class TrainInventoryRegistry {
+
+    private final Map<String, TrainInventory> trains = new ConcurrentHashMap<>();
+
+    @Getter
+    private final String defaultTrainId;
+
+    public TrainInventoryRegistry(SeatingProperties seatingProperties) {
+        for (SeatingProperties.Train train : seatingProperties.getTrains()) {
+            TrainLayout.Builder builder = TrainLayout.builder(train.getId());
+            if (!train.getStations().isEmpty()) {
+                builder.stations(train.getStations());
+            }
+            for (SeatingProperties.Coach coach : train.getCoaches()) {
+                builder.coach(coach.getId(), coach.getSeatsPerRow());
+                coach.getSections().forEach(s -> builder.section(s.getSection(), s.getSeats()));
+            }
+            register(builder.build());
+        }
+        String configuredDefault = seatingProperties.getDefaultTrainId();
+        if (configuredDefault == null && !seatingProperties.getTrains().isEmpty()) {
+            configuredDefault = seatingProperties.getTrains().get(0).getId();
+        }
+        if (configuredDefault == null || !trains.containsKey(configuredDefault)) {
+            throw new IllegalStateException("Default train " + configuredDefault + " is not configured");
+        }
+        this.defaultTrainId = configuredDefault;
+        log.info("Loaded seat layouts for {} trains, default train: {}", trains.size(), defaultTrainId);
+    }
+
+    /**
+     * Registers a train with an empty inventory, replacing any train with the same id.
+     */
+    public TrainInventory register(TrainLayout layout) {
+        TrainInventory trainInventory = new TrainInventory(layout);
+        trains.put(layout.getTrainId(), trainInventory);
+        return trainInventory;
+    }
+
+    /**
+     * @return the train with the given id, the default train when the id is null, or null if there is no such train
+     */
+    public TrainInventory find(String trainId) {
+        return trains.get(trainId == null ? defaultTrainId : trainId);
+    }
+
+    public Collection<TrainInventory> getAll() {
+        return trains.values();
+    }
+}
@@ -0,0 +1,400 @@
+package com.cloudbees.assessment.journal;
+
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.entity.Receipt;
+import com.cloudbees.assessment.entity.User;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.event.SeatOccupancyChangedEvent;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.inventory.TrainInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.repository.ReceiptRepository;
+import com.cloudbees.assessment.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, memory-mapped journal of the bookings, enabled with {@code seating.journal.enabled}.
+ * <p>
+ * A booking gets its receipt and user ids from the database sequences and is acknowledged once its record is forced
+ * to disk, {@link BookingJournalFlusher} stores it in the database in the background and moves the checkpoint in the
+ * header past it. Until then it is looked up with {@link #findPending(Long, String)}. On startup the records after
+ * the checkpoint are replayed into the seat inventory and queued for the database again. When everything is stored
+ * and the file is half full, writing starts over from the top with a new epoch. The checksum of a record covers the
+ * epoch, so records left over from an older epoch are never replayed.
+ * <p>
+ * Records are forced in append order: one force covers every record written since the last one, so concurrent
+ * bookings share it and a booking is acknowledged only once every record before it is durable too. A torn record
+ * can therefore only be the last one written, and no acknowledged booking follows it. Replay stops there and clears
+ * the rest of the file, so records of an interrupted write are never picked up later.
+ * <p>
+ * The header holds the checkpoint (long) and the epoch (int), every record its payload length (int), CRC32C (int)
+ * and payload.
+ */
+@Component
+@ConditionalOnProperty(prefix = "seating.journal", name = "enabled", havingValue = "true")
+@Slf4j
+public class BookingJournal {
+
+    private static final int CHECKPOINT_OFFSET = 0;
+    private static final int EPOCH_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int ID_BLOCK_SIZE = 50;
+    private static final int CLEAR_CHUNK_SIZE = 64 * 1024;
+
+    private final TrainInventoryRegistry trainInventoryRegistry;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private final PooledIds receiptIds;
+    private final PooledIds userIds;
+
+    // Serializes appends and the restart of the file from the top
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // Serializes forces, taken before the append lock
+    private final ReentrantLock forceLock = new ReentrantLock();
+    // Journaled bookings not stored in the database yet, in journal order
+    private final Queue<JournaledBooking> pending = new ConcurrentLinkedQueue<>();
+    private final Map<Long, JournaledBooking> pendingByUserId = new ConcurrentHashMap<>();
+    private final Map<String, JournaledBooking> pendingByEmail = new ConcurrentHashMap<>();
+    // Emails of the bookings journaled and not stored yet, the unique email index only sees a user once stored
+    private final Set<String> journaledEmails = ConcurrentHashMap.newKeySet();
+    private int epoch;
+    private int writePosition;
+    // Every record before this offset is on disk
+    private volatile int durablePosition;
+
+    public BookingJournal(SeatingProperties seatingProperties, TrainInventoryRegistry trainInventoryRegistry,
+            UserRepository userRepository, ReceiptRepository receiptRepository,
+            ApplicationEventPublisher eventPublisher) throws IOException {
+        this.trainInventoryRegistry = trainInventoryRegistry;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.receiptIds = new PooledIds(receiptRepository::nextIdBlock, ID_BLOCK_SIZE);
+        this.userIds = new PooledIds(userRepository::nextIdBlock, ID_BLOCK_SIZE);
+        SeatingProperties.Journal properties = seatingProperties.getJournal();
+        Path path = Path.of(properties.getPath()).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, properties.getSizeMb() * 1024L * 1024L);
+        replay();
+        log.info("Opened booking journal {}, {} bookings to store", path, pending.size());
+    }
+
+    /**
+     * Gives the receipt and its user their ids, appends the booking of a claimed seat and forces it to disk along
+     * with every record appended before it.
+     *
+     * @throws CustomCloudBeesException if the user is already booked or the journal has no room left
+     */
+    public void append(Receipt receipt, long legMask) throws CustomCloudBeesException {
+        User user = receipt.getUser();
+        String email = user.getEmail();
+        if (!journaledEmails.add(email)) {
+            throw new CustomCloudBeesException(HttpStatus.UNPROCESSABLE_ENTITY, "This user is already inside the " +
+                    "train");
+        }
+        try {
+            // Looked up with the unique email index, a user stored meanwhile is still refused by it on flush
+            if (userRepository.existsByEmail(email)) {
+                journaledEmails.remove(email);
+                throw new CustomCloudBeesException(HttpStatus.UNPROCESSABLE_ENTITY, "This user is already inside " +
+                        "the train");
+            }
+            receipt.setId(receiptIds.next());
+            user.setId(userIds.next());
+        } catch (RuntimeException e) {
+            journaledEmails.remove(email);
+            throw e;
+        }
+        byte[] payload = encode(receipt, legMask);
+        int end;
+        appendLock.lock();
+        try {
+            int position = writePosition;
+            end = position + RECORD_HEADER_SIZE + payload.length;
+            if (end > buffer.capacity()) {
+                journaledEmails.remove(email);
+                throw new CustomCloudBeesException(HttpStatus.SERVICE_UNAVAILABLE, "The booking journal is full, " +
+                        "please retry");
+            }
+            buffer.put(position + RECORD_HEADER_SIZE, payload);
+            buffer.putInt(position + Integer.BYTES, checksum(payload));
+            buffer.putInt(position, payload.length);
+            writePosition = end;
+            addPending(JournaledBooking.of(receipt, legMask, end));
+        } finally {
+            appendLock.unlock();
+        }
+        forceThrough(end);
+    }
+
+    /**
+     * @return the booking not stored in the database yet of the user with the given id, or else with the given
+     * email, null if there is none
+     */
+    public JournaledBooking findPending(Long userId, String email) {
+        JournaledBooking booking = userId == null ? null : pendingByUserId.get(userId);
+        if (booking == null && email != null) {
+            booking = pendingByEmail.get(email);
+        }
+        return booking;
+    }
+
+    /**
+     * @return every booking not stored in the database yet, in journal order
+     */
+    public List<JournaledBooking> allPending() {
+        return List.copyOf(pending);
+    }
+
+    /**
+     * @return the oldest bookings not stored in the database yet, at most the given number. Only bookings already
+     * on disk are returned, a booking whose append failed to force is never stored
+     */
+    List<JournaledBooking> pending(int maxBookings) {
+        int durable = durablePosition;
+        List<JournaledBooking> bookings = new ArrayList<>();
+        Iterator<JournaledBooking> iterator = pending.iterator();
+        while (iterator.hasNext() && bookings.size() < maxBookings) {
+            JournaledBooking booking = iterator.next();
+            if (booking.endOffset() > durable) {
+                break;
+            }
+            bookings.add(booking);
+        }
+        return bookings;
+    }
+
+    /**
+     * Moves the checkpoint past the oldest pending bookings once they are stored in the database.
+     */
+    void stored(List<JournaledBooking> bookings) {
+        bookings.forEach(b -> {
+            pending.poll();
+            pendingByUserId.remove(b.userId());
+            pendingByEmail.remove(b.email());
+            journaledEmails.remove(b.email());
+        });
+        int checkpoint = bookings.get(bookings.size() - 1).endOffset();
+        buffer.putLong(CHECKPOINT_OFFSET, checkpoint);
+        buffer.force(CHECKPOINT_OFFSET, HEADER_SIZE);
+        restartIfDrained(checkpoint);
+    }
+
+    /**
+     * Drops the oldest pending booking the database refused and gives its seat back, announcing the vacant seat like
+     * a removed user.
+     */
+    void discard(JournaledBooking booking) {
+        TrainInventory train = trainInventoryRegistry.find(booking.trainId());
+        if (train != null) {
+            train.getSeats().release(booking.seatNumber(), booking.legMask());
+        }
+        stored(List.of(booking));
+        if (train != null) {
+            eventPublisher.publishEvent(new SeatOccupancyChangedEvent(booking.trainId(), booking.section(),
+                    booking.seatNumber(), false, booking.legMask()));
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    // Forces every record written so far unless a force of another booking already covered the one ending at end
+    private void forceThrough(int end) {
+        forceLock.lock();
+        try {
+            if (durablePosition >= end) {
+                return;
+            }
+            int durable = durablePosition;
+            int written;
+            appendLock.lock();
+            try {
+                written = writePosition;
+            } finally {
+                appendLock.unlock();
+            }
+            buffer.force(durable, written - durable);
+            durablePosition = written;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    private void addPending(JournaledBooking booking) {
+        pending.add(booking);
+        pendingByUserId.put(booking.userId(), booking);
+        pendingByEmail.put(booking.email(), booking);
+    }
+
+    private void replay() {
+        epoch = buffer.getInt(EPOCH_OFFSET);
+        int position = (int) buffer.getLong(CHECKPOINT_OFFSET);
+        if (position < HEADER_SIZE) {
+            // New file
+            buffer.putLong(CHECKPOINT_OFFSET, HEADER_SIZE);
+            buffer.force(CHECKPOINT_OFFSET, HEADER_SIZE);
+            position = HEADER_SIZE;
+        }
+        JournaledBooking booking;
+        while ((booking = read(position)) != null) {
+            position = booking.endOffset();
+            // Stored before the checkpoint was moved past it
+            if (journaledEmails.contains(booking.email()) || userRepository.existsByEmail(booking.email())) {
+                continue;
+            }
+            TrainInventory train = trainInventoryRegistry.find(booking.trainId());
+            if (train == null || !train.getSeats().claim(booking.seatNumber(), booking.legMask())) {
+                log.warn("Skipping journaled booking of {}, seat {} of train {} is not available", booking.email(),
+                        booking.seatNumber(), booking.trainId());
+                continue;
+            }
+            journaledEmails.add(booking.email());
+            addPending(booking);
+        }
+        if (position + RECORD_HEADER_SIZE <= buffer.capacity() && buffer.getInt(position) != 0) {
+            clearFrom(position);
+        }
+        writePosition = position;
+        durablePosition = position;
+    }
+
+    // Zeroes the file after the last complete record, a record later appended here can not run into old ones
+    private void clearFrom(int position) {
+        log.warn("Clearing booking journal after offset {}, the record there is incomplete or from an older epoch",
+                position);
+        byte[] zeros = new byte[CLEAR_CHUNK_SIZE];
+        for (int offset = position; offset < buffer.capacity(); offset += zeros.length) {
+            buffer.put(offset, zeros, 0, Math.min(zeros.length, buffer.capacity() - offset));
+        }
+        buffer.force(position, buffer.capacity() - position);
+    }
+
+    // Record at the given offset, null past the last complete record of the current epoch
+    private JournaledBooking read(int position) {
+        if (position + RECORD_HEADER_SIZE > buffer.capacity()) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        int end = position + RECORD_HEADER_SIZE + length;
+        if (length <= 0 || end > buffer.capacity()) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(position + RECORD_HEADER_SIZE, payload);
+        if (checksum(payload) != buffer.getInt(position + Integer.BYTES)) {
+            return null;
+        }
+        return decode(payload, end);
+    }
+
+    private void restartIfDrained(int checkpoint) {
+        if (checkpoint < buffer.capacity() / 2) {
+            return;
+        }
+        forceLock.lock();
+        appendLock.lock();
+        try {
+            if (!pending.isEmpty() || writePosition != checkpoint) {
+                return;
+            }
+            // Epoch first, a crash in between leaves an old checkpoint with nothing valid after it
+            epoch++;
+            buffer.putInt(EPOCH_OFFSET, epoch);
+            buffer.putLong(CHECKPOINT_OFFSET, HEADER_SIZE);
+            buffer.force(CHECKPOINT_OFFSET, HEADER_SIZE);
+            writePosition = HEADER_SIZE;
+            durablePosition = HEADER_SIZE;
+            log.info("Restarted booking journal with epoch {}", epoch);
+        } finally {
+            appendLock.unlock();
+            forceLock.unlock();
+        }
+    }
+
+    private int checksum(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(Integer.BYTES).putInt(0, epoch));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(Receipt receipt, long legMask) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(receipt.getId());
+            out.writeLong(receipt.getUser().getId());
+            out.writeUTF(receipt.getUser().getTrainId());
+            out.writeInt(receipt.getUser().getSeatNumber());
+            out.writeUTF(receipt.getUser().getSection().name());
+            out.writeLong(legMask);
+            writeNullable(out, receipt.getFromStation());
+            writeNullable(out, receipt.getToStation());
+            writeNullable(out, receipt.getUser().getFirstName());
+            writeNullable(out, receipt.getUser().getLastName());
+            out.writeUTF(receipt.getUser().getEmail());
+            out.writeUTF(receipt.getPrice().toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static JournaledBooking decode(byte[] payload, int endOffset) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            return new JournaledBooking(in.readLong(), in.readLong(), in.readUTF(), in.readInt(),
+                    Section.valueOf(in.readUTF()), in.readLong(), readNullable(in), readNullable(in),
+                    readNullable(in), readNullable(in), in.readUTF(), new BigDecimal(in.readUTF()), endOffset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,105 @@
+package com.cloudbees.assessment.journal;
+
+import com.cloudbees.assessment.cache.SeatOccupancyCache;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.stats.BookingStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stores the journaled bookings in the database in batches, in journal order. A batch that fails on a constraint
+ * is stored one booking at a time and the bookings the database refuses are dropped. Any other failure leaves the
+ * bookings pending for the next run.
+ * <p>
+ * Rows are inserted with the ids the bookings were acknowledged with, JPA would give them new ones.
+ */
+@Component
+@ConditionalOnProperty(prefix = "seating.journal", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class BookingJournalFlusher {
+
+    private static final String INSERT_USER = "insert into \"user\" (id, version, first_name, last_name, email, " +
+            "train_id, seat_number, section) values (?, 0, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_RECEIPT = "insert into receipt (id, from_station, to_station, user_id, " +
+            "price) values (?, ?, ?, ?, ?)";
+
+    private final BookingJournal bookingJournal;
+    private final JdbcTemplate jdbcTemplate;
+    private final SeatOccupancyCache seatOccupancyCache;
+    private final TransactionTemplate transactionTemplate;
+    private final SeatingProperties seatingProperties;
+    private final BookingStats bookingStats;
+
+    // Held across the database calls, a monitor would pin the carrier of every request thread waiting on it
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * Stores every pending booking. Also called on a request to change a booking still in the journal, so it can be
+     * changed in the database.
+     */
+    @Scheduled(fixedDelayString = "${seating.journal.flush-interval-ms:20}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            int batchSize = seatingProperties.getJournal().getFlushBatchSize();
+            List<JournaledBooking> batch;
+            while (!(batch = bookingJournal.pending(batchSize)).isEmpty()) {
+                try {
+                    store(batch);
+                } catch (DataIntegrityViolationException e) {
+                    batch.forEach(this::storeOrDiscard);
+                } catch (RuntimeException e) {
+                    log.warn("Could not store {} journaled bookings, retrying later", batch.size(), e);
+                    return;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void storeOrDiscard(JournaledBooking booking) {
+        try {
+            store(List.of(booking));
+        } catch (DataIntegrityViolationException e) {
+            log.error("Dropping journaled booking of {} refused by the database", booking.email(), e);
+            bookingJournal.discard(booking);
+            // It was counted when it was acknowledged
+            bookingStats.recordCancellation(booking.trainId(), booking.section(), booking.price());
+        }
+    }
+
+    private void store(List<JournaledBooking> bookings) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_USER, bookings, bookings.size(), (statement, booking) -> {
+                statement.setLong(1, booking.userId());
+                statement.setString(2, booking.firstName());
+                statement.setString(3, booking.lastName());
+                statement.setString(4, booking.email());
+                statement.setString(5, booking.trainId());
+                statement.setInt(6, booking.seatNumber());
+                statement.setString(7, booking.section().name());
+            });
+            jdbcTemplate.batchUpdate(INSERT_RECEIPT, bookings, bookings.size(), (statement, booking) -> {
+                statement.setLong(1, booking.receiptId());
+                statement.setString(2, booking.fromStation());
+                statement.setString(3, booking.toStation());
+                statement.setLong(4, booking.userId());
+                statement.setBigDecimal(5, booking.price());
+            });
+        });
+        bookingJournal.stored(bookings);
+        // The manifests of the sections are read from the database, so they change only now
+        bookings.forEach(b -> seatOccupancyCache.invalidate(b.trainId(), b.section()));
+    }
+}
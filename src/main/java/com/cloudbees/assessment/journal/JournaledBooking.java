@@ -0,0 +1,43 @@
+package com.cloudbees.assessment.journal;
+
+import com.cloudbees.assessment.entity.Receipt;
+import com.cloudbees.assessment.entity.User;
+import com.cloudbees.assessment.enums.Section;
+
+import java.math.BigDecimal;
+
+/**
+ * Booking appended to the {@link BookingJournal} and not stored in the database yet. It keeps the receipt and user
+ * ids it was acknowledged with.
+ *
+ * @param endOffset offset in the journal right after the record of the booking
+ */
+public record JournaledBooking(long receiptId, long userId, String trainId, int seatNumber, Section section,
+        long legMask, String fromStation, String toStation, String firstName, String lastName, String email,
+        BigDecimal price, int endOffset) {
+
+    static JournaledBooking of(Receipt receipt, long legMask, int endOffset) {
+        User user = receipt.getUser();
+        return new JournaledBooking(receipt.getId(), user.getId(), user.getTrainId(), user.getSeatNumber(),
+                user.getSection(), legMask, receipt.getFromStation(), receipt.getToStation(), user.getFirstName(),
+                user.getLastName(), user.getEmail(), receipt.getPrice(), endOffset);
+    }
+
+    /**
+     * @return receipt and user of the booking, with their ids
+     */
+    public Receipt toReceipt() {
+        User user = new User();
+        user.setId(userId);
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        user.setEmail(email);
+        user.setTrainId(trainId);
+        user.setSeatNumber(seatNumber);
+        user.setSection(section);
+        Receipt receipt = new Receipt(fromStation, toStation, user, price);
+        receipt.setId(receiptId);
+        user.setReceipt(receipt);
+        return receipt;
+    }
+}
@@ -0,0 +1,38 @@
+package com.cloudbees.assessment.journal;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Ids drawn from a pooled database sequence for bookings acknowledged before they are stored. A value read from the
+ * sequence reserves the block of ids ending at it, the same block the pooled optimizer of Hibernate hands out for
+ * that value, so ids never collide with those of rows inserted through JPA.
+ */
+final class PooledIds {
+
+    private final LongSupplier sequence;
+    private final int allocationSize;
+    private long next;
+    private long last = -1;
+    // Not a monitor, a virtual thread waiting on the sequence would pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    PooledIds(LongSupplier sequence, int allocationSize) {
+        this.sequence = sequence;
+        this.allocationSize = allocationSize;
+    }
+
+    long next() {
+        lock.lock();
+        try {
+            if (next > last) {
+                last = sequence.getAsLong();
+                // The first value of the sequence is a block of its own
+                next = Math.max(1, last - allocationSize + 1);
+            }
+            return next++;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
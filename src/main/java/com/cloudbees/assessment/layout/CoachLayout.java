@@ -0,0 +1,20 @@
+package com.cloudbees.assessment.layout;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Contiguous range of seat numbers of a train that belong to one coach, split into sections. Seats are numbered row
+ * by row, from one window to the other.
+ */
+@Getter
+@AllArgsConstructor
+public class CoachLayout {
+    private final String coachId;
+    private final int firstSeat;
+    private final int lastSeat;
+    private final List<SectionLayout> sections;
+    private final int seatsPerRow;
+}
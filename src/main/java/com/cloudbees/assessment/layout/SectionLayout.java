@@ -0,0 +1,20 @@
+package com.cloudbees.assessment.layout;
+
+import com.cloudbees.assessment.enums.Section;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Contiguous range of seat numbers of a coach that belong to one section.
+ */
+@Getter
+@AllArgsConstructor
+public class SectionLayout {
+    private final Section section;
+    private final int firstSeat;
+    private final int lastSeat;
+
+    public int getSeatCount() {
+        return lastSeat - firstSeat + 1;
+    }
+}
@@ -0,0 +1,228 @@
+package com.cloudbees.assessment.layout;
+
+import com.cloudbees.assessment.enums.SeatPosition;
+import com.cloudbees.assessment.enums.Section;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable seat layout of a train. Seats are numbered 1 to {@link #getSeatCount()} across all coaches, in the
+ * order the coaches and their sections were added.
+ * <p>
+ * Seat to section lookup is a flat array indexed by seat number, so it costs one array read. The seats of every
+ * section and of every position in the row are also kept as bitsets, see {@link #allowedSeats(Section, SeatPosition)}.
+ * <p>
+ * A train may have a route of stations. The stretch between two consecutive stations is a segment, and a journey
+ * from one station to a later one is the bit mask of the segments it covers, see {@link #legMask(String, String)}.
+ * A train without a route has a single segment.
+ */
+public class TrainLayout {
+
+    public static final long INVALID_LEG = 0L;
+    public static final int DEFAULT_SEATS_PER_ROW = 4;
+
+    private static final Section[] SECTIONS = Section.values();
+
+    @Getter
+    private final String trainId;
+    @Getter
+    private final List<CoachLayout> coaches;
+    @Getter
+    private final int seatCount;
+    @Getter
+    private final List<String> stations;
+
+    // Section ordinal of every seat, index 0 is unused
+    private final byte[] sectionBySeat;
+    // Seats of every section and every position in the row, bit i of word w is seat 64 * w + i + 1
+    private final Map<Section, long[]> seatsBySection = new EnumMap<>(Section.class);
+    private final Map<SeatPosition, long[]> seatsByPosition = new EnumMap<>(SeatPosition.class);
+
+    private TrainLayout(String trainId, List<CoachLayout> coaches, int seatCount, List<String> stations) {
+        this.trainId = trainId;
+        this.coaches = Collections.unmodifiableList(coaches);
+        this.seatCount = seatCount;
+        this.stations = Collections.unmodifiableList(stations);
+        this.sectionBySeat = new byte[seatCount + 1];
+        int words = ((seatCount - 1) >> 6) + 1;
+        for (Section section : SECTIONS) {
+            seatsBySection.put(section, new long[words]);
+        }
+        for (SeatPosition position : SeatPosition.values()) {
+            seatsByPosition.put(position, new long[words]);
+        }
+        for (CoachLayout coach : coaches) {
+            for (SectionLayout section : coach.getSections()) {
+                for (int seat = section.getFirstSeat(); seat <= section.getLastSeat(); seat++) {
+                    sectionBySeat[seat] = (byte) section.getSection().ordinal();
+                    setSeat(seatsBySection.get(section.getSection()), seat);
+                }
+            }
+            int seatsPerRow = coach.getSeatsPerRow();
+            for (int seat = coach.getFirstSeat(); seat <= coach.getLastSeat(); seat++) {
+                int place = (seat - coach.getFirstSeat()) % seatsPerRow;
+                if (place == 0 || place == seatsPerRow - 1) {
+                    setSeat(seatsByPosition.get(SeatPosition.WINDOW), seat);
+                }
+                // The aisle runs down the middle of the row
+                if (place == (seatsPerRow - 1) / 2 || place == seatsPerRow / 2) {
+                    setSeat(seatsByPosition.get(SeatPosition.AISLE), seat);
+                }
+            }
+        }
+    }
+
+    public static Builder builder(String trainId) {
+        return new Builder(trainId);
+    }
+
+    public boolean hasSeat(int seatNumber) {
+        return seatNumber >= 1 && seatNumber <= seatCount;
+    }
+
+    public Section sectionOf(int seatNumber) {
+        return SECTIONS[sectionBySeat[seatNumber]];
+    }
+
+    /**
+     * Bitset of the seats in the given section and at the given position of the row, in the word layout of
+     * {@link com.cloudbees.assessment.inventory.SeatInventory}. Either may be null to allow any.
+     *
+     * @return the allowed seats, or null if neither is given and every seat is allowed
+     */
+    public long[] allowedSeats(Section section, SeatPosition position) {
+        if (section == null) {
+            return position == null ? null : seatsByPosition.get(position).clone();
+        }
+        long[] allowed = seatsBySection.get(section).clone();
+        if (position != null) {
+            long[] atPosition = seatsByPosition.get(position);
+            for (int i = 0; i < allowed.length; i++) {
+                allowed[i] &= atPosition[i];
+            }
+        }
+        return allowed;
+    }
+
+    public int getSegmentCount() {
+        return stations.isEmpty() ? 1 : stations.size() - 1;
+    }
+
+    /**
+     * Segments covered by a journey between two stations of the route. A journey without stations, or any journey
+     * on a train without a route, covers the whole trip.
+     *
+     * @return the segment mask of the journey, or {@link #INVALID_LEG} if a station is not on the route or the
+     * journey does not go forward
+     */
+    public long legMask(String fromStation, String toStation) {
+        int segmentCount = getSegmentCount();
+        long fullRoute = segmentCount == Long.SIZE ? -1L : (1L << segmentCount) - 1;
+        if (stations.isEmpty() || (fromStation == null && toStation == null)) {
+            return fullRoute;
+        }
+        int from = fromStation == null ? 0 : stationIndex(fromStation);
+        int to = toStation == null ? stations.size() - 1 : stationIndex(toStation);
+        if (from < 0 || to < 0 || from >= to) {
+            return INVALID_LEG;
+        }
+        // Segment i runs from station i to station i + 1
+        long upToDestination = to == Long.SIZE ? -1L : (1L << to) - 1;
+        return upToDestination & ~((1L << from) - 1);
+    }
+
+    private static void setSeat(long[] seats, int seatNumber) {
+        seats[(seatNumber - 1) >> 6] |= 1L << (seatNumber - 1);
+    }
+
+    private int stationIndex(String station) {
+        for (int i = 0; i < stations.size(); i++) {
+            if (stations.get(i).equalsIgnoreCase(station)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static class Builder {
+        private final String trainId;
+        private final List<CoachLayout> coaches = new ArrayList<>();
+        private final List<String> stations = new ArrayList<>();
+        private List<SectionLayout> currentSections;
+        private String currentCoachId;
+        private int currentCoachFirstSeat;
+        private int currentCoachSeatsPerRow;
+        private int nextSeat = 1;
+
+        private Builder(String trainId) {
+            if (trainId == null || trainId.isBlank()) {
+                throw new IllegalArgumentException("Train id is required");
+            }
+            this.trainId = trainId;
+        }
+
+        /**
+         * Sets the stations of the route in travel order, at most 65 stations so a journey fits a 64 bit mask.
+         */
+        public Builder stations(List<String> route) {
+            if (route.size() == 1 || route.size() > Long.SIZE + 1) {
+                throw new IllegalArgumentException("A route must have between 2 and " + (Long.SIZE + 1) + " stations");
+            }
+            stations.clear();
+            stations.addAll(route);
+            return this;
+        }
+
+        public Builder coach(String coachId) {
+            return coach(coachId, DEFAULT_SEATS_PER_ROW);
+        }
+
+        public Builder coach(String coachId, int seatsPerRow) {
+            if (seatsPerRow <= 0) {
+                throw new IllegalArgumentException("Seats per row must be positive");
+            }
+            closeCoach();
+            currentCoachId = coachId;
+            currentCoachSeatsPerRow = seatsPerRow;
+            currentCoachFirstSeat = nextSeat;
+            currentSections = new ArrayList<>();
+            return this;
+        }
+
+        public Builder section(Section section, int seats) {
+            if (currentSections == null) {
+                throw new IllegalStateException("A coach must be added before its sections");
+            }
+            if (seats <= 0) {
+                throw new IllegalArgumentException("Section seat count must be positive");
+            }
+            currentSections.add(new SectionLayout(section, nextSeat, nextSeat + seats - 1));
+            nextSeat += seats;
+            return this;
+        }
+
+        public TrainLayout build() {
+            closeCoach();
+            if (coaches.isEmpty()) {
+                throw new IllegalStateException("Train " + trainId + " has no seats");
+            }
+            return new TrainLayout(trainId, coaches, nextSeat - 1, new ArrayList<>(stations));
+        }
+
+        private void closeCoach() {
+            if (currentSections == null) {
+                return;
+            }
+            if (!currentSections.isEmpty()) {
+                coaches.add(new CoachLayout(currentCoachId, currentCoachFirstSeat, nextSeat - 1,
+                        Collections.unmodifiableList(currentSections), currentCoachSeatsPerRow));
+            }
+            currentSections = null;
+        }
+    }
+}
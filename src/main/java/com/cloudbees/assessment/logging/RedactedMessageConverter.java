@@ -0,0 +1,15 @@
+package com.cloudbees.assessment.logging;
+
+import ch.qos.logback.classic.pattern.ClassicConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * {@code %redactedMessage} of the prod log pattern, the formatted message with emails masked, as a JSON string.
+ */
+public class RedactedMessageConverter extends ClassicConverter {
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        return Redaction.json(event.getFormattedMessage());
+    }
+}
@@ -0,0 +1,19 @@
+package com.cloudbees.assessment.logging;
+
+import ch.qos.logback.classic.pattern.ThrowableHandlingConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+
+/**
+ * {@code %redactedException} of the prod log pattern, the stack trace with emails masked, as a JSON string so the
+ * event stays on one line. Being a throwable converter, the layout does not append the stack trace again.
+ */
+public class RedactedThrowableConverter extends ThrowableHandlingConverter {
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        IThrowableProxy throwable = event.getThrowableProxy();
+        return throwable == null ? "" : Redaction.json(ThrowableProxyUtil.asString(throwable));
+    }
+}
@@ -0,0 +1,92 @@
+package com.cloudbees.assessment.logging;
+
+/**
+ * Masks email addresses in log messages and span attributes, and escapes the text for a JSON string, in one pass
+ * over the characters. {@code passenger@mail.com} is written as {@code p***@mail.com}.
+ */
+public final class Redaction {
+
+    private static final String MASK = "***";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private Redaction() {
+    }
+
+    /**
+     * @return the text itself when it has no email and nothing to escape, otherwise a masked and escaped copy
+     */
+    public static String json(String text) {
+        if (text == null) {
+            return "";
+        }
+        if (!needsRewrite(text)) {
+            return text;
+        }
+        StringBuilder out = new StringBuilder(text.length() + 16);
+        appendJson(out, text);
+        return out.toString();
+    }
+
+    /**
+     * Appends the text masked and escaped. Characters of the local part of an email never need escaping, so the
+     * part already appended is cut back to its first character once the {@code @} shows it was an email.
+     */
+    public static void appendJson(StringBuilder out, CharSequence text) {
+        // Start in out of the run of characters that could be the local part of an email, -1 outside such a run
+        int localPartStart = -1;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '@' && localPartStart >= 0 && i + 1 < length && isDomainChar(text.charAt(i + 1))) {
+                out.setLength(localPartStart + 1);
+                out.append(MASK).append('@');
+                localPartStart = -1;
+                continue;
+            }
+            if (isLocalPartChar(c)) {
+                if (localPartStart < 0) {
+                    localPartStart = out.length();
+                }
+                out.append(c);
+                continue;
+            }
+            localPartStart = -1;
+            appendEscaped(out, c);
+        }
+    }
+
+    private static boolean needsRewrite(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '@' || c == '"' || c == '\\' || c < 0x20) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void appendEscaped(StringBuilder out, char c) {
+        switch (c) {
+            case '"' -> out.append("\\\"");
+            case '\\' -> out.append("\\\\");
+            case '\n' -> out.append("\\n");
+            case '\r' -> out.append("\\r");
+            case '\t' -> out.append("\\t");
+            default -> {
+                if (c < 0x20) {
+                    out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                } else {
+                    out.append(c);
+                }
+            }
+        }
+    }
+
+    private static boolean isLocalPartChar(char c) {
+        return isDomainChar(c) || c == '.' || c == '_' || c == '%' || c == '+' || c == '-';
+    }
+
+    private static boolean isDomainChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+}
@@ -0,0 +1,94 @@
+package com.cloudbees.assessment.metrics;
+
+import com.cloudbees.assessment.admission.AdmissionGate;
+import com.cloudbees.assessment.cache.IdempotencyCache;
+import com.cloudbees.assessment.cache.SeatOccupancyCache;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.inventory.TrainInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.layout.CoachLayout;
+import com.cloudbees.assessment.stream.SeatAvailabilityStream;
+import com.cloudbees.assessment.waitlist.WaitlistService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Gauges of the vacant seats of every section of every train and the counters of the occupancy and
+ * idempotency caches and of the submits rejected by admission control.
+ * <p>
+ * Vacant seats are read from the running vacancy counts of the inventory, so a scrape does not scan the seats.
+ * Gauges are bound for the trains registered when the application starts.
+ */
+@Component
+@RequiredArgsConstructor
+public class SeatingMetrics implements MeterBinder {
+
+    private final TrainInventoryRegistry trainInventoryRegistry;
+    private final SeatOccupancyCache seatOccupancyCache;
+    private final IdempotencyCache idempotencyCache;
+    private final SeatAvailabilityStream seatAvailabilityStream;
+    private final WaitlistService waitlistService;
+    private final AdmissionGate admissionGate;
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        for (TrainInventory train : trainInventoryRegistry.getAll()) {
+            String trainId = train.getTrainId();
+            Set<Section> sections = EnumSet.noneOf(Section.class);
+            for (CoachLayout coach : train.getLayout().getCoaches()) {
+                coach.getSections().forEach(s -> sections.add(s.getSection()));
+            }
+            sections.forEach(section ->
+                    Gauge.builder("seating.seats.vacant", () -> vacantSeats(trainId, section))
+                            .description("Seats not booked on any segment of the route")
+                            .tag("train", trainId)
+                            .tag("section", section.name())
+                            .register(meterRegistry));
+        }
+
+        FunctionCounter.builder("seating.cache.requests", seatOccupancyCache, SeatOccupancyCache::getHits)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("seating.cache.requests", seatOccupancyCache, SeatOccupancyCache::getMisses)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("seating.cache.evictions", seatOccupancyCache, SeatOccupancyCache::getEvictions)
+                .register(meterRegistry);
+        Gauge.builder("seating.cache.size", seatOccupancyCache, SeatOccupancyCache::size)
+                .register(meterRegistry);
+
+        FunctionCounter.builder("seating.idempotency.replays", idempotencyCache, IdempotencyCache::getReplays)
+                .description("Retried submits answered with the stored receipt")
+                .register(meterRegistry);
+        Gauge.builder("seating.idempotency.size", idempotencyCache, IdempotencyCache::size)
+                .register(meterRegistry);
+        Gauge.builder("seating.stream.subscribers", seatAvailabilityStream, SeatAvailabilityStream::subscriberCount)
+                .register(meterRegistry);
+        Gauge.builder("seating.waitlist.size", waitlistService, WaitlistService::size)
+                .description("Passengers waiting for a seat")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("seating.admission.rejected", admissionGate, AdmissionGate::getSoldOut)
+                .tag("reason", "sold_out")
+                .register(meterRegistry);
+        FunctionCounter.builder("seating.admission.rejected", admissionGate, AdmissionGate::getRateLimited)
+                .tag("reason", "rate")
+                .register(meterRegistry);
+        FunctionCounter.builder("seating.admission.rejected", admissionGate, AdmissionGate::getOverCapacity)
+                .tag("reason", "in_flight")
+                .register(meterRegistry);
+    }
+
+    // Looks the train up on every read, so a train registered again with the same id is still measured
+    private int vacantSeats(String trainId, Section section) {
+        TrainInventory train = trainInventoryRegistry.find(trainId);
+        return train == null ? 0 : train.vacantCount(section);
+    }
+}
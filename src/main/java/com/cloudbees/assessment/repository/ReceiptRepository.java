@@ -1,9 +1,42 @@
 package com.cloudbees.assessment.repository;
 
 import com.cloudbees.assessment.entity.Receipt;
+import com.cloudbees.assessment.export.ExportedReceipt;
+import com.cloudbees.assessment.stats.SectionTotals;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface ReceiptRepository extends JpaRepository<Receipt, Integer> {
+
+    // Receipt and its user in one round trip, looked up through the unique email index or the user id
+    @Query("select r from Receipt r join fetch r.user u where u.email = :email or u.id = :userId")
+    Receipt findWithUserByEmailOrUserId(@Param("email") String email, @Param("userId") Long userId);
+
+    // Every receipt with its user in receipt id order, projected so no entity is loaded into the persistence context
+    @Query("select new com.cloudbees.assessment.export.ExportedReceipt(r.id, u.id, u.firstName, u.lastName, " +
+            "u.email, u.trainId, u.seatNumber, u.section, r.fromStation, r.toStation, r.price) from Receipt r " +
+            "join r.user u order by r.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    Stream<ExportedReceipt> streamExport();
+
+    // Bookings and summed fares of every section, grouped by the database so only one row per section is read
+    @Query("select new com.cloudbees.assessment.stats.SectionTotals(u.trainId, u.section, count(r), sum(r.price)) " +
+            "from Receipt r join r.user u where u.seatNumber is not null group by u.trainId, u.section")
+    List<SectionTotals> findSectionTotals();
+
+    // Next value of the pooled receipt id sequence, the upper end of a block of 50 ids
+    @Query(value = "select next value for receipt_seq", nativeQuery = true)
+    @Transactional
+    long nextIdBlock();
 }
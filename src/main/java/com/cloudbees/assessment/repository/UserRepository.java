@@ -1,20 +1,64 @@
 package com.cloudbees.assessment.repository;
 
+import com.cloudbees.assessment.api.response.UserSeatResponse;
 import com.cloudbees.assessment.entity.User;
 import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.inventory.OccupiedSeat;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Integer> {
-    User findByEmail(String email);
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    // Served by the unique email index
+    boolean existsByEmail(String email);
 
-    User findByEmailOrId(String email, Long userId);
+    List<User> findByTrainIdAndSection(String trainId, Section section);
 
-    List<User> findBySection(Section section);
+    // Keyset page of a section ordered by seat, users sharing a seat on different legs are ordered by id
+    @Query("select new com.cloudbees.assessment.api.response.UserSeatResponse(u.id, u.email, u.seatNumber, " +
+            "u.section) from User u where u.trainId = :trainId and u.section = :section and (u.seatNumber > " +
+            ":afterSeat or (u.seatNumber = :afterSeat and u.id > :afterId)) order by u.seatNumber, u.id")
+    List<UserSeatResponse> findSeatPage(@Param("trainId") String trainId, @Param("section") Section section,
+            @Param("afterSeat") int afterSeat, @Param("afterId") long afterId, Pageable pageable);
+
+    @Query("select new com.cloudbees.assessment.api.response.UserSeatResponse(u.id, u.email, u.seatNumber, " +
+            "u.section) from User u where u.trainId = :trainId and u.section = :section order by u.seatNumber, u.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    Stream<UserSeatResponse> streamSeats(@Param("trainId") String trainId, @Param("section") Section section);
 
     Optional<User> findById(Long userId);
+
+    @Query("select min(u.id) from User u")
+    Long findFirstId();
+
+    @Query("select max(u.id) from User u")
+    Long findLastId();
+
+    // Seat and journey of the booked users in an id range, read to rebuild the seat inventory on startup
+    @Query("select new com.cloudbees.assessment.inventory.OccupiedSeat(u.trainId, u.seatNumber, r.fromStation, " +
+            "r.toStation) from User u left join u.receipt r where u.seatNumber is not null and u.id between " +
+            ":firstId and :lastId")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    List<OccupiedSeat> findOccupiedSeats(@Param("firstId") long firstId, @Param("lastId") long lastId);
+
+    // Next value of the pooled user id sequence, the upper end of a block of 50 ids
+    @Query(value = "select next value for user_seq", nativeQuery = true)
+    @Transactional
+    long nextIdBlock();
 }
@@ -0,0 +1,159 @@
+package com.cloudbees.assessment.service;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.response.UserSeatResponse;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.cloudbees.assessment.inventory.TrainInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.layout.CoachLayout;
+import com.cloudbees.assessment.layout.SectionLayout;
+import com.cloudbees.assessment.layout.TrainLayout;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Seat claims in the in-memory inventories shared by the servlet and the reactive booking services, so both stacks
+ * pick seats, check journeys and read manifest cursors the same way. Only the claim is made here, storing the
+ * booking and giving the seat back when that fails is up to the caller.
+ */
+@Component
+@RequiredArgsConstructor
+public class SeatAllocator {
+
+    // The unique email index is the only constraint a new booking can violate, so a violation means the user is
+    // already inside the train
+    public static final String ALREADY_BOOKED_MESSAGE = "This user is already inside the train";
+
+    private static final String CURSOR_SEPARATOR = ":";
+
+    private final TrainInventoryRegistry trainInventoryRegistry;
+
+    /**
+     * @return inventory of the given train, or of the default train when no id is given
+     */
+    public TrainInventory getTrain(String trainId) throws CustomCloudBeesException {
+        TrainInventory train = trainInventoryRegistry.find(trainId);
+        if (train == null) {
+            throw new CustomCloudBeesException(HttpStatus.NOT_FOUND, "No train found with given id");
+        }
+        return train;
+    }
+
+    public long getLeg(TrainInventory train, String fromStation, String toStation) throws CustomCloudBeesException {
+        long leg = train.getLayout().legMask(fromStation, toStation);
+        if (leg == TrainLayout.INVALID_LEG) {
+            throw new CustomCloudBeesException(HttpStatus.BAD_REQUEST, "The given stations are not a journey on " +
+                    "this train");
+        }
+        return leg;
+    }
+
+    /**
+     * Leg held by an existing booking, the whole trip if it has no receipt or its stations are no longer on the
+     * route.
+     */
+    public long getBookedLeg(TrainInventory train, String fromStation, String toStation) {
+        long leg = train.getLayout().legMask(fromStation, toStation);
+        return leg == TrainLayout.INVALID_LEG ? train.getSeats().fullRouteMask() : leg;
+    }
+
+    // Claim first seat vacant for the whole journey that matches the requested section and position, the claim is
+    // atomic so concurrent bookings never get the same seat. A seat booked only on other parts of the route can be
+    // reused
+    public int claimSeat(TrainInventory train, long leg, ReceiptSubmitRequest request)
+            throws CustomCloudBeesException {
+        long[] allowedSeats = train.getLayout().allowedSeats(request.getSection(), request.getSeatPosition());
+        int seatNumber = train.getSeats().claimFirstFree(leg, allowedSeats);
+        if (seatNumber == SeatInventory.NO_SEAT) {
+            throw new CustomCloudBeesException(HttpStatus.UNPROCESSABLE_ENTITY, allowedSeats == null ?
+                    SeatingManagementService.NO_SEAT_MESSAGE : SeatingManagementService.NO_MATCHING_SEAT_MESSAGE);
+        }
+        return seatNumber;
+    }
+
+    // Claims consecutive seats of one coach, and of the requested section, for every passenger of a group
+    public GroupSeats claimAdjacentSeats(List<ReceiptSubmitRequest> requests) throws CustomCloudBeesException {
+        if (requests.size() > SeatInventory.MAX_RUN_LENGTH) {
+            throw new CustomCloudBeesException(HttpStatus.BAD_REQUEST, "At most " + SeatInventory.MAX_RUN_LENGTH +
+                    " passengers can be seated together");
+        }
+        ReceiptSubmitRequest first = requests.get(0);
+        for (ReceiptSubmitRequest request : requests) {
+            if (!Objects.equals(first.getTrainId(), request.getTrainId()) || !Objects.equals(first.getFrom(),
+                    request.getFrom()) || !Objects.equals(first.getTo(), request.getTo())) {
+                throw new CustomCloudBeesException(HttpStatus.BAD_REQUEST, "Passengers seated together must take " +
+                        "the same journey on the same train");
+            }
+        }
+        TrainInventory train = getTrain(first.getTrainId());
+        long leg = getLeg(train, first.getFrom(), first.getTo());
+        for (CoachLayout coach : train.getLayout().getCoaches()) {
+            int firstSeat = SeatInventory.NO_SEAT;
+            if (first.getSection() == null) {
+                // Without a section the group may sit across the sections of the coach
+                firstSeat = train.getSeats().claimRun(leg, requests.size(), coach.getFirstSeat(), coach.getLastSeat());
+            }
+            for (SectionLayout section : coach.getSections()) {
+                if (firstSeat == SeatInventory.NO_SEAT && section.getSection() == first.getSection()) {
+                    firstSeat = train.getSeats().claimRun(leg, requests.size(), section.getFirstSeat(),
+                            section.getLastSeat());
+                }
+            }
+            if (firstSeat != SeatInventory.NO_SEAT) {
+                return new GroupSeats(train, leg, firstSeat);
+            }
+        }
+        throw new CustomCloudBeesException(HttpStatus.UNPROCESSABLE_ENTITY, "No adjacent seats are vacant for the " +
+                "group");
+    }
+
+    /**
+     * @return position after which a manifest page starts, the start of the section when no cursor is given
+     */
+    public static SeatCursor parseCursor(String cursor) throws CustomCloudBeesException {
+        if (!StringUtils.hasText(cursor)) {
+            return new SeatCursor(0, 0);
+        }
+        try {
+            int separator = cursor.indexOf(CURSOR_SEPARATOR);
+            return new SeatCursor(Integer.parseInt(cursor.substring(0, separator)),
+                    Long.parseLong(cursor.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new CustomCloudBeesException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    /**
+     * @return cursor of the page after the given one, null when it is the last page
+     */
+    public static String nextCursor(List<UserSeatResponse> page, int pageSize) {
+        if (page.size() < pageSize) {
+            return null;
+        }
+        UserSeatResponse last = page.get(page.size() - 1);
+        return last.getSeatNumber() + CURSOR_SEPARATOR + last.getUserId();
+    }
+
+    // Manifest rows are ordered by seat, then by user id
+    public record SeatCursor(int afterSeat, long afterId) {
+    }
+
+    // Consecutive seats claimed for a group, passenger i of the group gets seat firstSeat + i
+    public record GroupSeats(TrainInventory train, long leg, int firstSeat) {
+
+        public int seatOf(int index) {
+            return firstSeat + index;
+        }
+
+        // Gives back the seat kept for passenger i
+        public void release(int index) {
+            train.getSeats().release(firstSeat + index, leg);
+        }
+    }
+}
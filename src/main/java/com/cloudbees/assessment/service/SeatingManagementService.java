@@ -2,26 +2,54 @@ package com.cloudbees.assessment.service;
 
 import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
 import com.cloudbees.assessment.api.request.SeatUpdateRequest;
+import com.cloudbees.assessment.api.response.BatchReceiptItemResponse;
+import com.cloudbees.assessment.api.response.BatchReceiptResponse;
 import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.api.response.SeatHoldResponse;
 import com.cloudbees.assessment.api.response.SeatUpdateResponse;
+import com.cloudbees.assessment.api.response.UserSeatPageResponse;
 import com.cloudbees.assessment.api.response.UserSeatResponse;
+import com.cloudbees.assessment.cache.SeatOccupancyCache;
+import com.cloudbees.assessment.config.SeatingProperties;
 import com.cloudbees.assessment.entity.Receipt;
 import com.cloudbees.assessment.entity.User;
 import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.event.SeatOccupancyChangedEvent;
 import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.hold.SeatHold;
+import com.cloudbees.assessment.hold.SeatHoldRegistry;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.cloudbees.assessment.inventory.TrainInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.journal.BookingJournal;
+import com.cloudbees.assessment.journal.BookingJournalFlusher;
+import com.cloudbees.assessment.journal.JournaledBooking;
 import com.cloudbees.assessment.repository.ReceiptRepository;
 import com.cloudbees.assessment.repository.UserRepository;
+import com.cloudbees.assessment.service.SeatAllocator.GroupSeats;
+import com.cloudbees.assessment.service.SeatAllocator.SeatCursor;
+import com.cloudbees.assessment.stats.BookingStats;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
-import java.util.*;
-
-import static com.cloudbees.assessment.enums.Section.SECTION_A;
-import static com.cloudbees.assessment.enums.Section.SECTION_B;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * @author vaibhav
@@ -29,135 +57,414 @@ import static com.cloudbees.assessment.enums.Section.SECTION_B;
 @RequiredArgsConstructor
 @Service
 @Slf4j
+@Timed(value = "seating.service", histogram = true)
 public class SeatingManagementService {
 
-    /* Static map which stores seat number vs section
-    For now lets assume there are 10 seats.
-    Seat Number 1 to 5 -> Section A
-    Seat Number 6-10 -> Section B
-    */
-    private static final Map<Integer, Section> SEAT_MAP;
+    public static final String NO_SEAT_MESSAGE = "All seats have been filled";
+    public static final String NO_MATCHING_SEAT_MESSAGE = "No vacant seat matches the requested section and position";
+
     private static final BigDecimal PRICE_PAID_20 = new BigDecimal(20);
 
     private final UserRepository userRepository;
 
     private final ReceiptRepository receiptRepository;
 
-    // Static list to store to vacant seats
-    static List<Integer> vacantSeats = new ArrayList<>();
-
-    // Initialize static fields
-    static {
-        SEAT_MAP = new HashMap<>();
-        SEAT_MAP.put(1, SECTION_A);
-        SEAT_MAP.put(2, SECTION_A);
-        SEAT_MAP.put(3, SECTION_A);
-        SEAT_MAP.put(4, SECTION_A);
-        SEAT_MAP.put(5, SECTION_A);
-        SEAT_MAP.put(6, SECTION_B);
-        SEAT_MAP.put(7, SECTION_B);
-        SEAT_MAP.put(8, SECTION_B);
-        SEAT_MAP.put(9, SECTION_B);
-        SEAT_MAP.put(10, SECTION_B);
-        for (int i = 1; i <= 10; i++) {
-            vacantSeats.add(i);
-        }
-    }
-
-    public ReceiptResponse allocateSeatToUser(ReceiptSubmitRequest request) throws Exception {
-        String email = request.getEmail();
-        User user = userRepository.findByEmail(email);
-
-        // Throw exception if the user has already submitted receipt
-        if (user != null) {
-            throw new CustomCloudBeesException(HttpStatus.UNPROCESSABLE_ENTITY, "This user is already inside the " +
-                    "train");
-        }
-        int totalVacantSeats = vacantSeats.size();
-        if (totalVacantSeats == 0) {
-            throw new CustomCloudBeesException(HttpStatus.UNPROCESSABLE_ENTITY, "All seats have been filled");
-        }
-        user = new User();
-        user.setFirstName(request.getFirstName());
-        user.setLastName(request.getLastName());
-        user.setEmail(request.getEmail());
+    // Seat layout and lock-free seat inventory of every train
+    private final TrainInventoryRegistry trainInventoryRegistry;
 
-        // Pick first vacant seat from the list and assign to user
-        Integer seatNumberToBeAssignedToUser = vacantSeats.get(0);
-        user.setSeatNumber(seatNumberToBeAssignedToUser);
-        user.setSection(SEAT_MAP.get(seatNumberToBeAssignedToUser));
+    private final SeatAllocator seatAllocator;
 
-        Receipt receipt = new Receipt(request.getFrom(), request.getTo(), user, request.getPrice() == null ?
-                PRICE_PAID_20 : request.getPrice());
-        receiptRepository.save(receipt);
+    private final SeatOccupancyCache seatOccupancyCache;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final SeatingProperties seatingProperties;
+
+    // Present when bookings are acknowledged from the journal and stored in the database in the background
+    private final Optional<BookingJournal> bookingJournal;
+
+    private final Optional<BookingJournalFlusher> bookingJournalFlusher;
+
+    private final SeatHoldRegistry seatHoldRegistry;
+
+    // Running seats sold and revenue per section, served by /api/stats
+    private final BookingStats bookingStats;
+
+    public ReceiptResponse allocateSeatToUser(ReceiptSubmitRequest request) throws CustomCloudBeesException {
+        TrainInventory train = seatAllocator.getTrain(request.getTrainId());
+        long leg = seatAllocator.getLeg(train, request.getFrom(), request.getTo());
+        int seatNumberToBeAssignedToUser = seatAllocator.claimSeat(train, leg, request);
+        return bookClaimedSeat(request, train, seatNumberToBeAssignedToUser, leg);
+    }
+
+    /**
+     * Claims a seat for the journey without booking it, so it can not be sold while the payment is in progress.
+     * The hold is given back to the inventory once it expires unless it is confirmed or released before.
+     */
+    public SeatHoldResponse holdSeat(ReceiptSubmitRequest request) throws CustomCloudBeesException {
+        TrainInventory train = seatAllocator.getTrain(request.getTrainId());
+        long leg = seatAllocator.getLeg(train, request.getFrom(), request.getTo());
+        int seatNumber = seatAllocator.claimSeat(train, leg, request);
+        SeatHold hold = seatHoldRegistry.add(request, train, seatNumber, leg);
+        log.info("Holding seat {} of train {} until {}", seatNumber, train.getTrainId(), hold.expiresAt());
+        return new SeatHoldResponse(hold.holdId(), train.getTrainId(), seatNumber,
+                train.getLayout().sectionOf(seatNumber), hold.expiresAt());
+    }
+
+    /**
+     * Books the held seat for the passenger of the hold.
+     */
+    public ReceiptResponse confirmHold(String holdId) throws CustomCloudBeesException {
+        SeatHold hold = takeHold(holdId);
+        return bookClaimedSeat(hold.request(), hold.train(), hold.seatNumber(), hold.legMask());
+    }
+
+    public void releaseHold(String holdId) throws CustomCloudBeesException {
+        SeatHold hold = takeHold(holdId);
+        hold.train().getSeats().release(hold.seatNumber(), hold.legMask());
+        log.info("Released hold {} on seat {}", holdId, hold.seatNumber());
+        eventPublisher.publishEvent(new SeatOccupancyChangedEvent(hold.train().getTrainId(),
+                hold.train().getLayout().sectionOf(hold.seatNumber()), hold.seatNumber(), false, hold.legMask()));
+    }
+
+    // Stores the booking of a seat already claimed for the passenger, the seat is given back if that fails
+    private ReceiptResponse bookClaimedSeat(ReceiptSubmitRequest request, TrainInventory train,
+            int seatNumberToBeAssignedToUser, long leg) throws CustomCloudBeesException {
+        SeatInventory seatInventory = train.getSeats();
+        Receipt receipt = newReceipt(request, train, seatNumberToBeAssignedToUser);
+        try {
+            if (bookingJournal.isPresent()) {
+                // Durable once in the journal, which gives the receipt the ids it is stored with later
+                bookingJournal.get().append(receipt, leg);
+            } else {
+                receiptRepository.save(receipt);
+            }
+        } catch (RuntimeException | CustomCloudBeesException e) {
+            // Give the seat back if the booking could not be persisted
+            seatInventory.release(seatNumberToBeAssignedToUser, leg);
+
+            if (e instanceof DataIntegrityViolationException) {
+                throw new CustomCloudBeesException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        SeatAllocator.ALREADY_BOOKED_MESSAGE);
+            }
+            throw e;
+        }
+        publishSeatChange(receipt.getUser(), true, leg);
+        bookingStats.recordBooking(train.getTrainId(), receipt.getUser().getSection(), receipt.getPrice());
+
+        return toReceiptResponse(receipt);
+    }
+
+    private SeatHold takeHold(String holdId) throws CustomCloudBeesException {
+        SeatHold hold = seatHoldRegistry.take(holdId);
+        if (hold == null) {
+            throw new CustomCloudBeesException(HttpStatus.NOT_FOUND, "No hold found with given id, it may have " +
+                    "expired");
+        }
+        return hold;
+    }
+
+    /**
+     * Books a group of passengers in one go. Emails are checked with a single query, seats are claimed in one pass
+     * over the inventories and all receipts are inserted in one transaction with JDBC batching. A passenger that
+     * can not be booked does not fail the others, its error is reported at its position in the result.
+     */
+    @Transactional
+    public BatchReceiptResponse allocateSeatsToUsers(List<ReceiptSubmitRequest> requests) {
+        return allocateSeatsToUsers(requests, null);
+    }
+
+    /**
+     * Books a group of passengers on consecutive seats of one coach, found with a word-wide search of the free seat
+     * bitsets. Fails as a whole when the group can not be seated together, otherwise passengers are booked as by
+     * {@link #allocateSeatsToUsers(List)}.
+     */
+    @Transactional
+    public BatchReceiptResponse allocateAdjacentSeatsToUsers(List<ReceiptSubmitRequest> requests)
+            throws CustomCloudBeesException {
+        return allocateSeatsToUsers(requests, seatAllocator.claimAdjacentSeats(requests));
+    }
+
+    private BatchReceiptResponse allocateSeatsToUsers(List<ReceiptSubmitRequest> requests, GroupSeats group) {
+        if (bookingJournal.isPresent()) {
+            return journalSeatsToUsers(requests, group);
+        }
+        Set<String> emails = new HashSet<>();
+        requests.forEach(r -> emails.add(r.getEmail()));
+        Set<String> bookedEmails = new HashSet<>(userRepository.findExistingEmails(emails));
 
-        // Remove the seat assigned to user from the list of vacant seats
-        vacantSeats.remove(seatNumberToBeAssignedToUser);
+        BatchReceiptItemResponse[] results = new BatchReceiptItemResponse[requests.size()];
+        List<Receipt> receipts = new ArrayList<>();
+        List<SeatClaim> claims = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            ReceiptSubmitRequest request = requests.get(i);
+            try {
+                // Also rejects the same email appearing twice in the batch
+                if (!bookedEmails.add(request.getEmail())) {
+                    throw new CustomCloudBeesException(HttpStatus.UNPROCESSABLE_ENTITY,
+                            SeatAllocator.ALREADY_BOOKED_MESSAGE);
+                }
+                TrainInventory train = seatAllocator.getTrain(request.getTrainId());
+                long leg = seatAllocator.getLeg(train, request.getFrom(), request.getTo());
+                int seatNumber = group == null ? seatAllocator.claimSeat(train, leg, request) : group.seatOf(i);
+                claims.add(new SeatClaim(i, train, seatNumber, leg));
+                receipts.add(newReceipt(request, train, seatNumber));
+            } catch (CustomCloudBeesException e) {
+                if (group != null) {
+                    // Seat kept in the group for this passenger
+                    group.release(i);
+                }
+                results[i] = new BatchReceiptItemResponse(i, e.getHttpStatus().value(), null, e.getErrorMessage());
+            }
+        }
 
-        return new ReceiptResponse(receipt.getId(), receipt.getFromStation(), receipt.getToStation(), user,
-                receipt.getPrice());
+        try {
+            receiptRepository.saveAllAndFlush(receipts);
+        } catch (RuntimeException e) {
+            // Nothing of the batch was stored, give every claimed seat back
+            claims.forEach(c -> c.train().getSeats().release(c.seatNumber(), c.leg()));
+            throw e;
+        }
+        for (int i = 0; i < claims.size(); i++) {
+            publishSeatChange(receipts.get(i).getUser(), true, claims.get(i).leg());
+            bookingStats.recordBooking(claims.get(i).train().getTrainId(), receipts.get(i).getUser().getSection(),
+                    receipts.get(i).getPrice());
+            int index = claims.get(i).index();
+            results[index] = new BatchReceiptItemResponse(index, HttpStatus.OK.value(),
+                    toReceiptResponse(receipts.get(i)), null);
+        }
+        log.info("Booked {} of {} passengers of batch", receipts.size(), requests.size());
+        return new BatchReceiptResponse(receipts.size(), requests.size() - receipts.size(), Arrays.asList(results));
+    }
 
+    // With the journal there is no database write to batch, every passenger is journaled on its own
+    private BatchReceiptResponse journalSeatsToUsers(List<ReceiptSubmitRequest> requests, GroupSeats group) {
+        List<BatchReceiptItemResponse> results = new ArrayList<>();
+        int succeeded = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                ReceiptResponse receipt = group == null ? allocateSeatToUser(requests.get(i)) :
+                        bookClaimedSeat(requests.get(i), group.train(), group.seatOf(i), group.leg());
+                results.add(new BatchReceiptItemResponse(i, HttpStatus.OK.value(), receipt, null));
+                succeeded++;
+            } catch (CustomCloudBeesException e) {
+                results.add(new BatchReceiptItemResponse(i, e.getHttpStatus().value(), null, e.getErrorMessage()));
+            }
+        }
+        return new BatchReceiptResponse(succeeded, requests.size() - succeeded, results);
     }
 
     public ReceiptResponse getUserReceiptDetails(Long userId, String email) throws CustomCloudBeesException {
         if (userId == null && StringUtils.isEmpty(email)) {
             throw new CustomCloudBeesException(HttpStatus.UNPROCESSABLE_ENTITY, "One of user id or email is mandatory");
         }
-        User user = userRepository.findByEmailOrId(email, userId);
-        if (user == null) {
+        // A booking still in the journal is not in the database yet
+        JournaledBooking journaled = bookingJournal.map(j -> j.findPending(userId, email)).orElse(null);
+        Receipt receipt = journaled != null ? journaled.toReceipt() :
+                receiptRepository.findWithUserByEmailOrUserId(email, userId);
+        if (receipt == null) {
             throw new CustomCloudBeesException(HttpStatus.NOT_FOUND, "No user found with given details");
         }
-        Receipt receipt = user.getReceipt();
-        return new ReceiptResponse(receipt.getId(), receipt.getFromStation(), receipt.getToStation(), user,
-                receipt.getPrice());
+        return toReceiptResponse(receipt);
     }
 
-    public List<UserSeatResponse> getUserSeatDetailsBySection(Section section) {
-        List<User> usersBySection = userRepository.findBySection(section);
-        List<UserSeatResponse> userSeatResponses = new ArrayList<>();
-        usersBySection.forEach(u -> {
-            userSeatResponses.add(new UserSeatResponse(u.getId(), u.getEmail(), u.getSeatNumber(), u.getSection()));
+    public List<UserSeatResponse> getUserSeatDetailsBySection(String trainId, Section section)
+            throws CustomCloudBeesException {
+        TrainInventory train = seatAllocator.getTrain(trainId);
+
+        // Served from the occupancy cache, which is invalidated by every booking, move and removal of the section
+        return seatOccupancyCache.get(train.getTrainId(), section, () -> {
+            List<User> usersBySection = userRepository.findByTrainIdAndSection(train.getTrainId(), section);
+            List<UserSeatResponse> userSeatResponses = new ArrayList<>();
+            usersBySection.forEach(u -> {
+                userSeatResponses.add(new UserSeatResponse(u.getId(), u.getEmail(), u.getSeatNumber(),
+                        u.getSection()));
+            });
+            return userSeatResponses;
         });
-        return userSeatResponses;
     }
 
-    public void removeUser(Long id) throws CustomCloudBeesException {
-        Optional<User> userOptional = userRepository.findById(id);
-        if (userOptional.isEmpty()) {
-            throw new CustomCloudBeesException(HttpStatus.NOT_FOUND, "User not found with given id");
+    /**
+     * Page of a section manifest ordered by seat, starting after the given cursor. Seeks straight to the cursor
+     * with the (section, seat) index instead of skipping rows with an offset.
+     */
+    public UserSeatPageResponse getUserSeatDetailsBySection(String trainId, Section section, String cursor,
+            int pageSize) throws CustomCloudBeesException {
+        TrainInventory train = seatAllocator.getTrain(trainId);
+        SeatCursor after = SeatAllocator.parseCursor(cursor);
+        List<UserSeatResponse> users = userRepository.findSeatPage(train.getTrainId(), section, after.afterSeat(),
+                after.afterId(), PageRequest.of(0, pageSize));
+        return new UserSeatPageResponse(users, SeatAllocator.nextCursor(users, pageSize));
+    }
+
+    /**
+     * Streams a section manifest ordered by seat to the consumer as rows are read from the database. Only the
+     * projected columns are read, so memory use does not grow with the size of the train.
+     */
+    @Transactional(readOnly = true)
+    public void streamUserSeatDetailsBySection(String trainId, Section section, Consumer<UserSeatResponse> consumer) {
+        try (Stream<UserSeatResponse> users = userRepository.streamSeats(trainId, section)) {
+            users.forEach(consumer);
         }
-        User user = userOptional.get();
+    }
+
+    /**
+     * @return id of the given train, or of the default train when no id is given
+     */
+    public String resolveTrainId(String trainId) throws CustomCloudBeesException {
+        return seatAllocator.getTrain(trainId).getTrainId();
+    }
+
+    public void removeUser(Long id) throws CustomCloudBeesException {
+        removeUser(id, null);
+    }
+
+    /**
+     * @param trainId train the user must be booked on, any train when null
+     */
+    public void removeUser(Long id, String trainId) throws CustomCloudBeesException {
+        storeIfJournaled(id);
+        User user = findUser(id, trainId);
         Integer seatNumber = user.getSeatNumber();
         userRepository.delete(user);
 
-        // Add the seat of removed user to list of vacant seats
-        vacantSeats.add(seatNumber);
+        // Release the journey of removed user on its seat back to the inventory of its train
+        TrainInventory train = trainInventoryRegistry.find(user.getTrainId());
+        if (train != null && seatNumber != null) {
+            long leg = getBookedLeg(train, user);
+            train.getSeats().release(seatNumber, leg);
+            publishSeatChange(user, false, leg);
+        }
+        if (seatNumber != null) {
+            bookingStats.recordCancellation(user.getTrainId(), user.getSection(), getPrice(user));
+        }
         log.info("Successfully removed user for id: {}", id);
     }
 
+    /**
+     * Moves a user to a new seat. The new seat is claimed in the inventory before the user row is saved and the
+     * old seat is released only after, so the seat can never be given to two users. The save is checked against
+     * the version of the row, a move that lost a race with another change of the same user is retried on fresh
+     * data a bounded number of times. A seat that is taken fails straight away with 409.
+     */
     public SeatUpdateResponse updateUserSeat(SeatUpdateRequest seatUpdateRequest) throws CustomCloudBeesException {
-        User user = userRepository.findById(seatUpdateRequest.getUserId()).orElse(null);
-        if (user == null) {
-            throw new CustomCloudBeesException(HttpStatus.NOT_FOUND, "User not found with given id");
+        return updateUserSeat(seatUpdateRequest, null);
+    }
+
+    /**
+     * @param trainId train the user must be booked on, any train when null
+     */
+    public SeatUpdateResponse updateUserSeat(SeatUpdateRequest seatUpdateRequest, String trainId)
+            throws CustomCloudBeesException {
+        int maxAttempts = seatingProperties.getSeatMoveMaxAttempts();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return moveUserSeat(seatUpdateRequest, trainId);
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    log.warn("Giving up seat move of user with id: {} after {} attempts",
+                            seatUpdateRequest.getUserId(), attempt);
+                    throw new CustomCloudBeesException(HttpStatus.CONFLICT, "The user was updated concurrently, " +
+                            "please retry");
+                }
+                log.info("Retrying seat move of user with id: {} after concurrent update",
+                        seatUpdateRequest.getUserId());
+            }
         }
+    }
+
+    private SeatUpdateResponse moveUserSeat(SeatUpdateRequest seatUpdateRequest, String trainId)
+            throws CustomCloudBeesException {
+        storeIfJournaled(seatUpdateRequest.getUserId());
+        User user = findUser(seatUpdateRequest.getUserId(), trainId);
         Integer existingSeat = user.getSeatNumber();
         Integer newSeat = seatUpdateRequest.getNewSeat();
+        TrainInventory train = seatAllocator.getTrain(user.getTrainId());
+        SeatInventory seatInventory = train.getSeats();
+        long leg = getBookedLeg(train, user);
 
-        // Throw exception if new seat is not vacant
-        if (!vacantSeats.contains(newSeat)) {
-            throw new CustomCloudBeesException(HttpStatus.BAD_REQUEST, "The given seat is already occupied");
+        if (!seatInventory.contains(newSeat)) {
+            throw new CustomCloudBeesException(HttpStatus.BAD_REQUEST, "The given seat does not exist");
+        }
+        // Claim the new seat for the user's journey first, throw exception if it is not vacant
+        if (!seatInventory.claim(newSeat, leg)) {
+            throw new CustomCloudBeesException(HttpStatus.CONFLICT, "The given seat is already occupied");
         }
+        Section existingSection = user.getSection();
         user.setSeatNumber(newSeat);
-        user.setSection(SEAT_MAP.get(newSeat));
-
-        // remove new seat from vacant seats
-        vacantSeats.remove(newSeat);
+        user.setSection(train.getLayout().sectionOf(newSeat));
+        try {
+            userRepository.save(user);
+        } catch (RuntimeException e) {
+            seatInventory.release(newSeat, leg);
+            user.setSeatNumber(existingSeat);
+            user.setSection(existingSection);
+            throw e;
+        }
 
-        // add the existing (old) seat of user to vacant seats
-        vacantSeats.add(existingSeat);
-        userRepository.save(user);
+        // release the existing (old) seat of user back to the inventory
+        if (existingSeat != null) {
+            seatInventory.release(existingSeat, leg);
+            eventPublisher.publishEvent(new SeatOccupancyChangedEvent(train.getTrainId(), existingSection,
+                    existingSeat, false, leg));
+        }
+        publishSeatChange(user, true, leg);
+        bookingStats.recordMove(train.getTrainId(), existingSection, user.getSection(), getPrice(user));
         log.info("Successfully updated user with id: {}", seatUpdateRequest.getUserId());
 
         return new SeatUpdateResponse(user.getId(), user.getSeatNumber());
     }
+
+    // A user booked on another train than the given one is not found, that train may be owned by another node
+    private User findUser(Long id, String trainId) throws CustomCloudBeesException {
+        User user = userRepository.findById(id).orElse(null);
+        if (user == null || (trainId != null && !trainId.equals(user.getTrainId()))) {
+            throw new CustomCloudBeesException(HttpStatus.NOT_FOUND, "User not found with given id");
+        }
+        return user;
+    }
+
+    // A booking still in the journal is stored first, so it is changed in the database like any other
+    private void storeIfJournaled(Long userId) {
+        if (userId != null && bookingJournal.map(j -> j.findPending(userId, null)).isPresent()) {
+            bookingJournalFlusher.ifPresent(BookingJournalFlusher::flush);
+        }
+    }
+
+    private void publishSeatChange(User user, boolean booked, long leg) {
+        eventPublisher.publishEvent(new SeatOccupancyChangedEvent(user.getTrainId(), user.getSection(),
+                user.getSeatNumber(), booked, leg));
+    }
+
+    private Receipt newReceipt(ReceiptSubmitRequest request, TrainInventory train, int seatNumber) {
+        User user = new User();
+        user.setFirstName(request.getFirstName());
+        user.setLastName(request.getLastName());
+        user.setEmail(request.getEmail());
+        user.setTrainId(train.getTrainId());
+        user.setSeatNumber(seatNumber);
+        user.setSection(train.getLayout().sectionOf(seatNumber));
+        return new Receipt(request.getFrom(), request.getTo(), user, request.getPrice() == null ?
+                PRICE_PAID_20 : request.getPrice());
+    }
+
+    private static ReceiptResponse toReceiptResponse(Receipt receipt) {
+        return new ReceiptResponse(receipt.getId(), receipt.getFromStation(), receipt.getToStation(),
+                receipt.getUser(), receipt.getPrice());
+    }
+
+    private long getBookedLeg(TrainInventory train, User user) {
+        Receipt receipt = user.getReceipt();
+        return receipt == null ? train.getSeats().fullRouteMask() :
+                seatAllocator.getBookedLeg(train, receipt.getFromStation(), receipt.getToStation());
+    }
+
+    private static BigDecimal getPrice(User user) {
+        return user.getReceipt() == null ? null : user.getReceipt().getPrice();
+    }
+
+    // Seat held for a passenger of a batch that is not stored yet
+    private record SeatClaim(int index, TrainInventory train, int seatNumber, long leg) {
+    }
+
 }
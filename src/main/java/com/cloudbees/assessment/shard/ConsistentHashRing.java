@@ -0,0 +1,50 @@
+package com.cloudbees.assessment.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Maps keys to nodes by consistent hashing. Every node is placed on the ring at several points, so keys spread evenly
+ * and adding or removing a node only moves the keys of that node.
+ */
+public class ConsistentHashRing {
+
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> nodeIds, int virtualNodes) {
+        if (nodeIds.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("The ring needs at least one node and one virtual node per node");
+        }
+        for (String nodeId : nodeIds) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(nodeId + "#" + i), nodeId);
+            }
+        }
+    }
+
+    /**
+     * @return the node owning the key, the first node clockwise from the hash of the key
+     */
+    public String nodeFor(String key) {
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry == null ? ring.firstEntry().getValue() : entry.getValue();
+    }
+
+    // FNV-1a over the UTF-8 bytes followed by the murmur3 finalizer, stable across JVMs unlike String.hashCode
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
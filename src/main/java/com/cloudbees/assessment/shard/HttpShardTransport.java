@@ -0,0 +1,127 @@
+package com.cloudbees.assessment.shard;
+
+import com.cloudbees.assessment.api.request.BatchReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.SeatUpdateRequest;
+import com.cloudbees.assessment.api.response.BatchReceiptResponse;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.api.response.SeatHoldResponse;
+import com.cloudbees.assessment.api.response.SeatUpdateResponse;
+import com.cloudbees.assessment.cache.IdempotencyCache;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.exception.ForwardedErrorException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.util.Map;
+
+/**
+ * Forwards requests to the owning node over its REST api, marked as forwarded with the shared secret so the
+ * owner serves them itself.
+ */
+@Component
+public class HttpShardTransport implements ShardTransport {
+
+    public static final String FORWARDED_HEADER = "X-Seating-Forwarded";
+
+    private final Map<String, String> nodes;
+
+    private final String secret;
+
+    private final RestClient restClient;
+
+    public HttpShardTransport(SeatingProperties seatingProperties, RestClient.Builder restClientBuilder) {
+        SeatingProperties.Shard shard = seatingProperties.getShard();
+        this.nodes = shard.getNodes();
+        this.secret = shard.getSecret();
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(shard.getConnectTimeoutMs());
+        requestFactory.setReadTimeout(shard.getReadTimeoutMs());
+        this.restClient = restClientBuilder.requestFactory(requestFactory).build();
+    }
+
+    @Override
+    public ReceiptResponse submitReceipt(String nodeId, ReceiptSubmitRequest request, String idempotencyKey)
+            throws CustomCloudBeesException {
+        // The owner keeps the key too, a retry of the client through another node is still answered once
+        return exchange(nodeId, HttpMethod.POST, request, idempotencyKey, ReceiptResponse.class,
+                "/api/receipt/submit");
+    }
+
+    @Override
+    public BatchReceiptResponse submitReceipts(String nodeId, BatchReceiptSubmitRequest request)
+            throws CustomCloudBeesException {
+        return exchange(nodeId, HttpMethod.POST, request, null, BatchReceiptResponse.class,
+                "/api/receipt/submit/batch");
+    }
+
+    @Override
+    public SeatHoldResponse holdSeat(String nodeId, ReceiptSubmitRequest request) throws CustomCloudBeesException {
+        return exchange(nodeId, HttpMethod.POST, request, null, SeatHoldResponse.class, "/api/hold");
+    }
+
+    @Override
+    public ReceiptResponse confirmHold(String nodeId, String trainId, String holdId)
+            throws CustomCloudBeesException {
+        return exchange(nodeId, HttpMethod.POST, null, null, ReceiptResponse.class,
+                "/api/hold/{holdId}/confirm?trainId={trainId}", holdId, trainId);
+    }
+
+    @Override
+    public void releaseHold(String nodeId, String trainId, String holdId) throws CustomCloudBeesException {
+        exchange(nodeId, HttpMethod.DELETE, null, null, String.class, "/api/hold/{holdId}?trainId={trainId}",
+                holdId, trainId);
+    }
+
+    @Override
+    public void removeUser(String nodeId, String trainId, Long userId) throws CustomCloudBeesException {
+        exchange(nodeId, HttpMethod.DELETE, null, null, String.class, "/api/receipt/{userId}?trainId={trainId}",
+                userId, trainId);
+    }
+
+    @Override
+    public SeatUpdateResponse updateUserSeat(String nodeId, String trainId, SeatUpdateRequest request)
+            throws CustomCloudBeesException {
+        return exchange(nodeId, HttpMethod.PATCH, request, null, SeatUpdateResponse.class,
+                "/api/receipt?trainId={trainId}", trainId);
+    }
+
+    private <T> T exchange(String nodeId, HttpMethod method, Object body, String idempotencyKey, Class<T> type,
+            String path, Object... uriVariables) throws CustomCloudBeesException {
+        RestClient.RequestBodySpec request = restClient.method(method)
+                .uri(baseUrl(nodeId) + path, uriVariables)
+                .header(FORWARDED_HEADER, secret);
+        if (idempotencyKey != null) {
+            request.header(IdempotencyCache.IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+        }
+        if (body != null) {
+            request.body(body);
+        }
+        try {
+            return request.retrieve().body(type);
+        } catch (RestClientResponseException e) {
+            // The owner answered with an error, it goes back to the client as it is
+            HttpStatus status = HttpStatus.resolve(e.getStatusCode().value());
+            throw new ForwardedErrorException(status == null ? HttpStatus.BAD_GATEWAY : status,
+                    e.getResponseHeaders() == null ? HttpHeaders.EMPTY : e.getResponseHeaders(),
+                    e.getResponseBodyAsString());
+        } catch (ResourceAccessException e) {
+            throw new CustomCloudBeesException(HttpStatus.SERVICE_UNAVAILABLE, "Node owning the train is unavailable");
+        }
+    }
+
+    private String baseUrl(String nodeId) throws CustomCloudBeesException {
+        String baseUrl = nodes.get(nodeId);
+        if (baseUrl == null) {
+            throw new CustomCloudBeesException(HttpStatus.SERVICE_UNAVAILABLE, "Node owning the train is unknown");
+        }
+        return baseUrl;
+    }
+}
@@ -0,0 +1,77 @@
+package com.cloudbees.assessment.shard;
+
+import com.cloudbees.assessment.config.SeatingProperties;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which node owns the seat inventory of a train. Without sharding this node owns every train.
+ */
+@Component
+@Slf4j
+public class ShardRouter {
+
+    @Getter
+    private final String localNodeId;
+
+    // False when this node owns every train
+    @Getter
+    private final boolean enabled;
+
+    private final Map<String, String> nodes;
+
+    private final ConsistentHashRing ring;
+
+    private final byte[] secret;
+
+    public ShardRouter(SeatingProperties seatingProperties) {
+        SeatingProperties.Shard shard = seatingProperties.getShard();
+        this.localNodeId = shard.getNodeId();
+        this.enabled = shard.isEnabled();
+        this.nodes = shard.getNodes();
+        if (!shard.isEnabled()) {
+            this.ring = new ConsistentHashRing(List.of(localNodeId), 1);
+            this.secret = null;
+            return;
+        }
+        if (!shard.getNodes().containsKey(localNodeId)) {
+            throw new IllegalStateException("Local node " + localNodeId + " is not one of the shard nodes");
+        }
+        if (!StringUtils.hasText(shard.getSecret())) {
+            throw new IllegalStateException("A shard secret is needed when sharding is enabled");
+        }
+        this.secret = shard.getSecret().getBytes(StandardCharsets.UTF_8);
+        this.ring = new ConsistentHashRing(shard.getNodes().keySet(), shard.getVirtualNodes());
+        log.info("Node {} sharding trains across nodes {}", localNodeId, shard.getNodes().keySet());
+    }
+
+    public String ownerOf(String trainId) {
+        return ring.nodeFor(trainId);
+    }
+
+    public boolean isLocal(String trainId) {
+        return localNodeId.equals(ownerOf(trainId));
+    }
+
+    /**
+     * @return true if the forwarded header value is the shared secret, so the request comes from another node
+     */
+    public boolean isForwardedBy(String token) {
+        // Compared in constant time so the secret cannot be guessed from response times
+        return enabled && token != null && MessageDigest.isEqual(secret, token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return base url of the node, null if it is not listed
+     */
+    public String baseUrlOf(String nodeId) {
+        return nodes.get(nodeId);
+    }
+}
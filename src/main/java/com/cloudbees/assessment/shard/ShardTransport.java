@@ -0,0 +1,34 @@
+package com.cloudbees.assessment.shard;
+
+import com.cloudbees.assessment.api.request.BatchReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.SeatUpdateRequest;
+import com.cloudbees.assessment.api.response.BatchReceiptResponse;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.api.response.SeatHoldResponse;
+import com.cloudbees.assessment.api.response.SeatUpdateResponse;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+
+/**
+ * Forwards requests for trains owned by another node to that node. Requests naming a user or a hold carry the train
+ * id, so the owner only changes bookings of that train.
+ */
+public interface ShardTransport {
+
+    ReceiptResponse submitReceipt(String nodeId, ReceiptSubmitRequest request, String idempotencyKey)
+            throws CustomCloudBeesException;
+
+    BatchReceiptResponse submitReceipts(String nodeId, BatchReceiptSubmitRequest request)
+            throws CustomCloudBeesException;
+
+    SeatHoldResponse holdSeat(String nodeId, ReceiptSubmitRequest request) throws CustomCloudBeesException;
+
+    ReceiptResponse confirmHold(String nodeId, String trainId, String holdId) throws CustomCloudBeesException;
+
+    void releaseHold(String nodeId, String trainId, String holdId) throws CustomCloudBeesException;
+
+    void removeUser(String nodeId, String trainId, Long userId) throws CustomCloudBeesException;
+
+    SeatUpdateResponse updateUserSeat(String nodeId, String trainId, SeatUpdateRequest request)
+            throws CustomCloudBeesException;
+}
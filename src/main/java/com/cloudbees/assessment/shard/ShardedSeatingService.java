@@ -0,0 +1,217 @@
+package com.cloudbees.assessment.shard;
+
+import com.cloudbees.assessment.admission.AdmissionGate;
+import com.cloudbees.assessment.api.request.BatchReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.SeatUpdateRequest;
+import com.cloudbees.assessment.api.response.BatchReceiptItemResponse;
+import com.cloudbees.assessment.api.response.BatchReceiptResponse;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.api.response.SeatHoldResponse;
+import com.cloudbees.assessment.api.response.SeatUpdateResponse;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.exception.ShardRedirectException;
+import com.cloudbees.assessment.service.SeatingManagementService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes seats on the node owning the seat inventory of the train, so every train is allocated by one JVM only.
+ * Every request that claims or releases a seat goes through here and is forwarded to the owner when the train is
+ * owned by another node.
+ * <p>
+ * Requests naming a user or a hold take the train id from the client, the default train when it is not given, and
+ * the owner only changes bookings of that train.
+ */
+@RequiredArgsConstructor
+@Service
+@Slf4j
+public class ShardedSeatingService {
+
+    private final SeatingManagementService seatingManagementService;
+
+    private final ShardRouter shardRouter;
+
+    private final ShardTransport shardTransport;
+
+    // Applied on the node that owns the train only, a forwarded submit is admitted once
+    private final AdmissionGate admissionGate;
+
+    /**
+     * @param forwarded      true when another node already routed the request here, it is then never forwarded
+     *                       again so nodes with different views of the ring can not bounce it around
+     * @param idempotencyKey key the client sent with the submit, passed on to the owner
+     */
+    public ReceiptResponse allocateSeatToUser(ReceiptSubmitRequest request, boolean forwarded,
+            String idempotencyKey) throws CustomCloudBeesException {
+        String trainId = seatingManagementService.resolveTrainId(request.getTrainId());
+        String owner = remoteOwner(trainId, forwarded);
+        if (owner == null) {
+            try (AdmissionGate.Permit permit = admissionGate.admit(trainId, request)) {
+                return seatingManagementService.allocateSeatToUser(request);
+            }
+        }
+        log.info("Forwarding booking on train {} to node {}", trainId, owner);
+        return shardTransport.submitReceipt(owner, request, idempotencyKey);
+    }
+
+    /**
+     * Books the passengers of each train on its owner, the results are put back in the order of the request. A
+     * group seated together is booked by the owner of the train of its first passenger.
+     */
+    public BatchReceiptResponse allocateSeatsToUsers(BatchReceiptSubmitRequest batch, boolean forwarded)
+            throws CustomCloudBeesException {
+        List<ReceiptSubmitRequest> requests = batch.getReceipts();
+        if (batch.isAdjacent()) {
+            String owner = remoteOwner(trainIdOrNull(requests.get(0)), forwarded);
+            return owner == null ? seatingManagementService.allocateAdjacentSeatsToUsers(requests) :
+                    shardTransport.submitReceipts(owner, batch);
+        }
+        // Positions of the passengers by the node booking them, this node first so nothing is forwarded if it fails
+        Map<String, List<Integer>> positionsByNode = new LinkedHashMap<>();
+        positionsByNode.put(shardRouter.getLocalNodeId(), new ArrayList<>());
+        for (int i = 0; i < requests.size(); i++) {
+            String owner = remoteOwner(trainIdOrNull(requests.get(i)), forwarded);
+            positionsByNode.computeIfAbsent(owner == null ? shardRouter.getLocalNodeId() : owner,
+                    k -> new ArrayList<>()).add(i);
+        }
+        positionsByNode.values().removeIf(List::isEmpty);
+        if (positionsByNode.size() == 1 && positionsByNode.containsKey(shardRouter.getLocalNodeId())) {
+            return seatingManagementService.allocateSeatsToUsers(requests);
+        }
+
+        BatchReceiptItemResponse[] results = new BatchReceiptItemResponse[requests.size()];
+        for (Map.Entry<String, List<Integer>> node : positionsByNode.entrySet()) {
+            List<Integer> positions = node.getValue();
+            List<ReceiptSubmitRequest> part = positions.stream().map(requests::get).toList();
+            try {
+                BatchReceiptResponse response = node.getKey().equals(shardRouter.getLocalNodeId()) ?
+                        seatingManagementService.allocateSeatsToUsers(part) :
+                        shardTransport.submitReceipts(node.getKey(), new BatchReceiptSubmitRequest(part, false));
+                for (BatchReceiptItemResponse item : response.getResults()) {
+                    int position = positions.get(item.getIndex());
+                    results[position] = new BatchReceiptItemResponse(position, item.getStatus(), item.getReceipt(),
+                            item.getErrorMessage());
+                }
+            } catch (CustomCloudBeesException e) {
+                // The owner could not be reached or refused the whole part, its passengers are not booked
+                positions.forEach(position -> results[position] = new BatchReceiptItemResponse(position,
+                        e.getHttpStatus().value(), null, e.getErrorMessage()));
+            }
+        }
+        int succeeded = (int) Arrays.stream(results).filter(r -> r.getStatus() == HttpStatus.OK.value()).count();
+        return new BatchReceiptResponse(succeeded, requests.size() - succeeded, Arrays.asList(results));
+    }
+
+    public SeatHoldResponse holdSeat(ReceiptSubmitRequest request, boolean forwarded)
+            throws CustomCloudBeesException {
+        String owner = remoteOwner(seatingManagementService.resolveTrainId(request.getTrainId()), forwarded);
+        return owner == null ? seatingManagementService.holdSeat(request) : shardTransport.holdSeat(owner, request);
+    }
+
+    public ReceiptResponse confirmHold(String holdId, String trainId, boolean forwarded)
+            throws CustomCloudBeesException {
+        String resolvedTrainId = seatingManagementService.resolveTrainId(trainId);
+        String owner = remoteOwner(resolvedTrainId, forwarded);
+        return owner == null ? seatingManagementService.confirmHold(holdId) :
+                shardTransport.confirmHold(owner, resolvedTrainId, holdId);
+    }
+
+    public void releaseHold(String holdId, String trainId, boolean forwarded) throws CustomCloudBeesException {
+        String resolvedTrainId = seatingManagementService.resolveTrainId(trainId);
+        String owner = remoteOwner(resolvedTrainId, forwarded);
+        if (owner == null) {
+            seatingManagementService.releaseHold(holdId);
+        } else {
+            shardTransport.releaseHold(owner, resolvedTrainId, holdId);
+        }
+    }
+
+    public void removeUser(Long userId, String trainId, boolean forwarded) throws CustomCloudBeesException {
+        String userTrainId = userTrainId(trainId);
+        String owner = remoteOwner(userTrainId, forwarded);
+        if (owner == null) {
+            seatingManagementService.removeUser(userId, userTrainId);
+        } else {
+            log.info("Forwarding removal of user {} on train {} to node {}", userId, userTrainId, owner);
+            shardTransport.removeUser(owner, userTrainId, userId);
+        }
+    }
+
+    public SeatUpdateResponse updateUserSeat(SeatUpdateRequest request, String trainId, boolean forwarded)
+            throws CustomCloudBeesException {
+        String userTrainId = userTrainId(trainId);
+        String owner = remoteOwner(userTrainId, forwarded);
+        if (owner == null) {
+            return seatingManagementService.updateUserSeat(request, userTrainId);
+        }
+        log.info("Forwarding seat move of user {} on train {} to node {}", request.getUserId(), userTrainId, owner);
+        return shardTransport.updateUserSeat(owner, userTrainId, request);
+    }
+
+    /**
+     * Turns away a request on a train owned by another node, for requests whose later calls must reach the owner
+     * too, like the status of a waitlisted passenger, and for reads of state only the owner keeps up to date, like
+     * the section manifests, seat change streams and booking stats.
+     *
+     * @throws ShardRedirectException if another node owns the train
+     */
+    public void requireLocal(String trainId) throws CustomCloudBeesException {
+        String owner = remoteOwner(seatingManagementService.resolveTrainId(trainId), false);
+        if (owner != null) {
+            String ownerUrl = shardRouter.baseUrlOf(owner);
+            if (ownerUrl == null) {
+                throw new CustomCloudBeesException(HttpStatus.SERVICE_UNAVAILABLE, "Node owning the train is unknown");
+            }
+            throw new ShardRedirectException(ownerUrl);
+        }
+    }
+
+    /**
+     * @return true if this node owns the train, every train when sharding is disabled
+     */
+    public boolean isLocal(String trainId) {
+        return shardRouter.isLocal(trainId);
+    }
+
+    /**
+     * @return true if the forwarded header carries the shared secret of the nodes
+     */
+    public boolean isForwarded(String forwardedBy) {
+        return shardRouter.isForwardedBy(forwardedBy);
+    }
+
+    // Node to forward a request on the train to, null when it is served here. A forwarded request is never forwarded
+    // again, and is refused when this node does not own the train either, e.g. after the nodes list changed
+    private String remoteOwner(String trainId, boolean forwarded) throws CustomCloudBeesException {
+        if (trainId == null || shardRouter.isLocal(trainId)) {
+            return null;
+        }
+        if (forwarded) {
+            throw new CustomCloudBeesException(HttpStatus.CONFLICT, "The train is not owned by this node");
+        }
+        return shardRouter.ownerOf(trainId);
+    }
+
+    // Unknown trains are served here, the booking then fails on its own with 404
+    private String trainIdOrNull(ReceiptSubmitRequest request) {
+        try {
+            return seatingManagementService.resolveTrainId(request.getTrainId());
+        } catch (CustomCloudBeesException e) {
+            return null;
+        }
+    }
+
+    // Without sharding a user is found on any train unless the client names one
+    private String userTrainId(String trainId) throws CustomCloudBeesException {
+        return trainId == null && !shardRouter.isEnabled() ? null : seatingManagementService.resolveTrainId(trainId);
+    }
+}
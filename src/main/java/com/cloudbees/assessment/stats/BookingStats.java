@@ -0,0 +1,159 @@
+package com.cloudbees.assessment.stats;
+
+import com.cloudbees.assessment.api.response.SectionStatsResponse;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.inventory.TrainInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.layout.CoachLayout;
+import com.cloudbees.assessment.journal.BookingJournal;
+import com.cloudbees.assessment.journal.JournaledBooking;
+import com.cloudbees.assessment.repository.ReceiptRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running seats sold and revenue of every section of every train, updated by every booking, seat move and removal
+ * so stats are read without a query. Fares are added as long cents to striped counters, concurrent bookings of one
+ * section do not contend on a single value. Totals are seeded with one grouped query and the bookings still in the
+ * journal once every bean is created, before the web server is started, so no booking is counted twice or missed.
+ * Vacant seats are the running counts of the seat inventory.
+ * <p>
+ * Seats sold and revenue of a section are separate counters, a read racing a booking may see one updated before
+ * the other.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookingStats implements SmartInitializingSingleton {
+
+    private static final Section[] SECTIONS = Section.values();
+    private static final int CENTS_SCALE = 2;
+
+    private final ReceiptRepository receiptRepository;
+    private final TrainInventoryRegistry trainInventoryRegistry;
+    // Present when bookings are acknowledged from the journal, those not stored yet are not in the grouped query
+    private final Optional<BookingJournal> bookingJournal;
+
+    private final Map<String, SectionCounters[]> counters = new ConcurrentHashMap<>();
+
+    // The journal is only flushed by the scheduler, which starts after this, so a booking is either in the database
+    // or pending here
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<SectionTotals> totals = receiptRepository.findSectionTotals();
+        for (SectionTotals total : totals) {
+            SectionCounters sectionCounters = counters(total.trainId(), total.section());
+            if (sectionCounters != null) {
+                sectionCounters.seatsSold.add(total.seatsSold());
+                sectionCounters.revenueCents.add(toCents(total.revenue()));
+            }
+        }
+        List<JournaledBooking> pending = bookingJournal.map(BookingJournal::allPending).orElse(List.of());
+        pending.forEach(b -> recordBooking(b.trainId(), b.section(), b.price()));
+        log.info("Loaded booking stats of {} sections and {} journaled bookings", totals.size(), pending.size());
+    }
+
+    public void recordBooking(String trainId, Section section, BigDecimal price) {
+        SectionCounters sectionCounters = counters(trainId, section);
+        if (sectionCounters != null) {
+            sectionCounters.seatsSold.increment();
+            sectionCounters.revenueCents.add(toCents(price));
+        }
+    }
+
+    public void recordCancellation(String trainId, Section section, BigDecimal price) {
+        SectionCounters sectionCounters = counters(trainId, section);
+        if (sectionCounters != null) {
+            sectionCounters.seatsSold.decrement();
+            sectionCounters.revenueCents.add(-toCents(price));
+        }
+    }
+
+    // The fare moves with the passenger to the section of the new seat
+    public void recordMove(String trainId, Section fromSection, Section toSection, BigDecimal price) {
+        if (fromSection != toSection) {
+            recordCancellation(trainId, fromSection, price);
+            recordBooking(trainId, toSection, price);
+        }
+    }
+
+    /**
+     * @return stats of every section of the given train, or of every train when no id is given, ordered by train
+     * and section
+     */
+    public List<SectionStatsResponse> getStats(String trainId) throws CustomCloudBeesException {
+        Collection<TrainInventory> trains = trainInventoryRegistry.getAll();
+        if (trainId != null) {
+            TrainInventory train = trainInventoryRegistry.find(trainId);
+            if (train == null) {
+                throw new CustomCloudBeesException(HttpStatus.NOT_FOUND, "No train found with given id");
+            }
+            trains = List.of(train);
+        }
+        List<SectionStatsResponse> stats = new ArrayList<>();
+        trains.stream().sorted(Comparator.comparing(TrainInventory::getTrainId)).forEach(train -> {
+            Set<Section> sections = EnumSet.noneOf(Section.class);
+            for (CoachLayout coach : train.getLayout().getCoaches()) {
+                coach.getSections().forEach(range -> sections.add(range.getSection()));
+            }
+            SectionCounters[] trainCounters = counters.get(train.getTrainId());
+            sections.forEach(section -> {
+                SectionCounters sectionCounters = trainCounters == null ? null : trainCounters[section.ordinal()];
+                long seatsSold = sectionCounters == null ? 0 : sectionCounters.seatsSold.sum();
+                long revenueCents = sectionCounters == null ? 0 : sectionCounters.revenueCents.sum();
+                BigDecimal averageFare = seatsSold <= 0 ? null :
+                        BigDecimal.valueOf((revenueCents + seatsSold / 2) / seatsSold, CENTS_SCALE);
+                stats.add(new SectionStatsResponse(train.getTrainId(), section, seatsSold, train.vacantCount(section),
+                        BigDecimal.valueOf(revenueCents, CENTS_SCALE), averageFare));
+            });
+        });
+        return stats;
+    }
+
+    /**
+     * @return the fare in whole cents, half a cent rounds up
+     */
+    static long toCents(BigDecimal price) {
+        if (price == null) {
+            return 0;
+        }
+        return price.setScale(CENTS_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    // Counters of a train are created on its first booking, a booking without a section is not counted
+    private SectionCounters counters(String trainId, Section section) {
+        if (trainId == null || section == null) {
+            return null;
+        }
+        SectionCounters[] trainCounters = counters.computeIfAbsent(trainId, k -> {
+            SectionCounters[] created = new SectionCounters[SECTIONS.length];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = new SectionCounters();
+            }
+            return created;
+        });
+        return trainCounters[section.ordinal()];
+    }
+
+    private static final class SectionCounters {
+        private final LongAdder seatsSold = new LongAdder();
+        private final LongAdder revenueCents = new LongAdder();
+    }
+}
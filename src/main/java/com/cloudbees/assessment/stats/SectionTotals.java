@@ -0,0 +1,11 @@
+package com.cloudbees.assessment.stats;
+
+import com.cloudbees.assessment.enums.Section;
+
+import java.math.BigDecimal;
+
+/**
+ * Stored bookings and their summed fares of one section of a train, read to seed {@link BookingStats} on startup.
+ */
+public record SectionTotals(String trainId, Section section, Long seatsSold, BigDecimal revenue) {
+}
@@ -0,0 +1,209 @@
+package com.cloudbees.assessment.stream;
+
+import com.cloudbees.assessment.api.response.SeatDeltaResponse;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.enums.SeatState;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.event.SeatOccupancyChangedEvent;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.cloudbees.assessment.inventory.TrainInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pushes seat state changes of a train to server-sent event subscribers.
+ * <p>
+ * A change only adds a delta to the pending deltas of every subscriber and starts a send for the subscribers that
+ * have none running, so the thread storing a booking never waits for a client. Pending deltas are kept per seat:
+ * while a slow client is still receiving, further changes of a seat replace its pending new state, so a subscriber
+ * holds at most one delta per seat however far behind it is.
+ * <p>
+ * States are read from the seat inventory, subscribing and streaming never read the database.
+ */
+@Component
+@Slf4j
+public class SeatAvailabilityStream {
+
+    static final String SNAPSHOT_EVENT = "snapshot";
+    static final String DELTA_EVENT = "seats";
+
+    private final TrainInventoryRegistry trainInventoryRegistry;
+    private final SeatingProperties.Stream properties;
+    private final Executor sender;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public SeatAvailabilityStream(TrainInventoryRegistry trainInventoryRegistry,
+            SeatingProperties seatingProperties) {
+        // Sends block on the socket of the client, a virtual thread each keeps thousands of them cheap
+        this(trainInventoryRegistry, seatingProperties, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    SeatAvailabilityStream(TrainInventoryRegistry trainInventoryRegistry, SeatingProperties seatingProperties,
+            Executor sender) {
+        this.trainInventoryRegistry = trainInventoryRegistry;
+        this.properties = seatingProperties.getStream();
+        this.sender = sender;
+    }
+
+    /**
+     * Subscribes to the seat changes of a train, or of one section of it. The first event is a snapshot of every
+     * seat that is not vacant, followed by the deltas of later changes.
+     */
+    public SseEmitter subscribe(String trainId, Section section) throws CustomCloudBeesException {
+        TrainInventory train = trainInventoryRegistry.find(trainId);
+        if (train == null) {
+            throw new CustomCloudBeesException(HttpStatus.NOT_FOUND, "No train found with given id");
+        }
+        if (subscribers.size() >= properties.getMaxSubscribers()) {
+            throw new CustomCloudBeesException(HttpStatus.SERVICE_UNAVAILABLE, "Too many seat stream subscribers");
+        }
+        SseEmitter emitter = newEmitter(properties.getTimeoutMs());
+        Subscriber subscriber = new Subscriber(train.getTrainId(), section, emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        // Registered before the snapshot is read, so no change can fall between the two
+        subscribers.add(subscriber);
+        try {
+            emitter.send(SseEmitter.event().name(SNAPSHOT_EVENT).data(snapshot(train, section)));
+        } catch (IOException e) {
+            subscribers.remove(subscriber);
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    // Runs after commit, so subscribers only see stored changes
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSeatOccupancyChanged(SeatOccupancyChangedEvent event) {
+        TrainInventory train = trainInventoryRegistry.find(event.getTrainId());
+        if (train == null || subscribers.isEmpty()) {
+            return;
+        }
+        SeatInventory seats = train.getSeats();
+        long booked = seats.bookedSegments(event.getSeatNumber());
+        long bookedBefore = event.isBooked() ? booked & ~event.getLegMask() : booked | event.getLegMask();
+        SeatState oldState = stateOf(bookedBefore, seats);
+        SeatState newState = stateOf(booked, seats);
+        if (oldState == newState) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.trainId.equals(train.getTrainId())
+                    && (subscriber.section == null || subscriber.section == event.getSection())) {
+                subscriber.offer(event.getSeatNumber(), oldState, newState);
+            }
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        if (sender instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    SseEmitter newEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+
+    private List<SeatDeltaResponse> snapshot(TrainInventory train, Section section) {
+        SeatInventory seats = train.getSeats();
+        List<SeatDeltaResponse> states = new ArrayList<>();
+        for (int seatNumber = 1; seatNumber <= seats.capacity(); seatNumber++) {
+            SeatState state = stateOf(seats.bookedSegments(seatNumber), seats);
+            if (state != SeatState.VACANT && (section == null || train.getLayout().sectionOf(seatNumber) == section)) {
+                states.add(new SeatDeltaResponse(seatNumber, SeatState.VACANT, state));
+            }
+        }
+        return states;
+    }
+
+    private static SeatState stateOf(long bookedSegments, SeatInventory seats) {
+        if (bookedSegments == 0) {
+            return SeatState.VACANT;
+        }
+        return bookedSegments == seats.fullRouteMask() ? SeatState.BOOKED : SeatState.PARTLY_BOOKED;
+    }
+
+    private final class Subscriber {
+        private final String trainId;
+        private final Section section;
+        private final SseEmitter emitter;
+        // Deltas not sent yet by seat number, guarded by this
+        private final Map<Integer, SeatDeltaResponse> pending = new LinkedHashMap<>();
+        private boolean sending;
+
+        private Subscriber(String trainId, Section section, SseEmitter emitter) {
+            this.trainId = trainId;
+            this.section = section;
+            this.emitter = emitter;
+        }
+
+        private void offer(int seatNumber, SeatState oldState, SeatState newState) {
+            synchronized (this) {
+                SeatDeltaResponse delta = pending.get(seatNumber);
+                if (delta == null) {
+                    pending.put(seatNumber, new SeatDeltaResponse(seatNumber, oldState, newState));
+                } else if (delta.getOldState() == newState) {
+                    // Changed back before it was sent, the client has nothing to redraw
+                    pending.remove(seatNumber);
+                } else {
+                    delta.setNewState(newState);
+                }
+                if (sending || pending.isEmpty()) {
+                    return;
+                }
+                sending = true;
+            }
+            sender.execute(this::send);
+        }
+
+        // Only one send runs per subscriber, it keeps sending until nothing is pending
+        private void send() {
+            while (true) {
+                List<SeatDeltaResponse> deltas;
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        sending = false;
+                        return;
+                    }
+                    deltas = new ArrayList<>(pending.values());
+                    pending.clear();
+                }
+                try {
+                    emitter.send(SseEmitter.event().name(DELTA_EVENT).data(deltas));
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("Dropping seat stream subscriber of train {}: {}", trainId, e.getMessage());
+                    subscribers.remove(this);
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.cloudbees.assessment.tracing;
+
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.logging.Redaction;
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationView;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Turns observations into spans written to a local file as JSON lines, one per finished span. The HTTP request
+ * observation of Spring MVC is the root of a trace and the controller, service and repository calls of
+ * {@link TracingAspect} are its children.
+ * <p>
+ * Whether a trace is written is decided once at its root with {@code seating.tracing.sample-rate} and inherited by
+ * every span of it, an unsampled request costs a lookup of its parent per call. Finished spans are handed to a
+ * bounded queue drained by a writer thread, so a request never waits on the file, spans finished while the queue is
+ * full are dropped. The ids of the current span are put in the MDC for the log lines written inside it.
+ */
+@Component
+@ConditionalOnProperty(prefix = "seating.tracing", name = "enabled", havingValue = "true")
+@Slf4j
+public class SpanFileExporter implements ObservationHandler<Observation.Context> {
+
+    static final String TRACE_ID = "traceId";
+    static final String SPAN_ID = "spanId";
+
+    private static final Span NOT_SAMPLED = new Span(0, 0, 0, 0, 0);
+    private static final long POLL_MS = 200;
+    private static final int WRITE_BATCH = 256;
+
+    private final double sampleRate;
+    private final Writer out;
+    private final BlockingQueue<String> pending;
+    private final Thread writer;
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running = true;
+
+    @Autowired
+    public SpanFileExporter(SeatingProperties seatingProperties) throws IOException {
+        this(seatingProperties.getTracing(), open(Path.of(seatingProperties.getTracing().getPath())));
+    }
+
+    SpanFileExporter(SeatingProperties.Tracing tracing, Writer out) {
+        this.sampleRate = tracing.getSampleRate();
+        this.out = out;
+        this.pending = new ArrayBlockingQueue<>(tracing.getQueueSize());
+        this.writer = new Thread(this::writeSpans, "span-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return true;
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        Span parent = parentSpan(context);
+        Span span;
+        if (parent == null) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            span = random.nextDouble() < sampleRate ? newSpan(random.nextLong(), 0) : NOT_SAMPLED;
+        } else {
+            span = parent == NOT_SAMPLED ? NOT_SAMPLED : newSpan(parent.traceId(), parent.spanId());
+        }
+        context.put(Span.class, span);
+    }
+
+    @Override
+    public void onScopeOpened(Observation.Context context) {
+        putMdc(context.get(Span.class));
+    }
+
+    @Override
+    public void onScopeClosed(Observation.Context context) {
+        // Back to the span the scope was opened in, if any
+        Span parent = parentSpan(context);
+        if (parent == null || parent == NOT_SAMPLED) {
+            clearMdc();
+        } else {
+            putMdc(parent);
+        }
+    }
+
+    @Override
+    public void onScopeReset(Observation.Context context) {
+        clearMdc();
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        Span span = context.get(Span.class);
+        if (span == null || span == NOT_SAMPLED) {
+            return;
+        }
+        long durationMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - span.startNanos());
+        if (!pending.offer(toJson(context, span, durationMicros))) {
+            dropped.increment();
+        }
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        if (dropped.sum() > 0) {
+            log.warn("Dropped {} spans while the span queue was full", dropped.sum());
+        }
+    }
+
+    private static Span newSpan(long traceId, long parentSpanId) {
+        long epochMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        return new Span(traceId, ThreadLocalRandom.current().nextLong(), parentSpanId, epochMicros,
+                System.nanoTime());
+    }
+
+    private static Span parentSpan(Observation.Context context) {
+        ObservationView parent = context.getParentObservation();
+        return parent == null ? null : parent.getContextView().get(Span.class);
+    }
+
+    private static void putMdc(Span span) {
+        if (span != null && span != NOT_SAMPLED) {
+            MDC.put(TRACE_ID, hex(span.traceId()));
+            MDC.put(SPAN_ID, hex(span.spanId()));
+        }
+    }
+
+    private static void clearMdc() {
+        MDC.remove(TRACE_ID);
+        MDC.remove(SPAN_ID);
+    }
+
+    private static String toJson(Observation.Context context, Span span, long durationMicros) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"traceId\":\"").append(hex(span.traceId()))
+                .append("\",\"spanId\":\"").append(hex(span.spanId())).append('"');
+        if (span.parentSpanId() != 0) {
+            json.append(",\"parentId\":\"").append(hex(span.parentSpanId())).append('"');
+        }
+        json.append(",\"name\":\"");
+        Redaction.appendJson(json, context.getContextualName() != null ? context.getContextualName() :
+                context.getName());
+        json.append("\",\"startMicros\":").append(span.startEpochMicros())
+                .append(",\"durationMicros\":").append(durationMicros);
+        if (context.getError() != null) {
+            json.append(",\"error\":\"");
+            Redaction.appendJson(json, context.getError().getClass().getName());
+            json.append('"');
+        }
+        json.append(",\"tags\":{");
+        boolean first = true;
+        for (KeyValue keyValue : context.getLowCardinalityKeyValues()) {
+            json.append(first ? "\"" : ",\"");
+            Redaction.appendJson(json, keyValue.getKey());
+            json.append("\":\"");
+            Redaction.appendJson(json, keyValue.getValue());
+            json.append('"');
+            first = false;
+        }
+        return json.append("}}").toString();
+    }
+
+    private static String hex(long id) {
+        String hex = Long.toHexString(id);
+        return hex.length() == 16 ? hex : "0".repeat(16 - hex.length()) + hex;
+    }
+
+    // Writes in batches and flushes once the queue is drained, so a burst of spans costs few writes
+    private void writeSpans() {
+        List<String> batch = new ArrayList<>(WRITE_BATCH);
+        try (out) {
+            while (running || !pending.isEmpty()) {
+                String span;
+                try {
+                    span = pending.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    // Stopping, write what is left
+                    span = pending.poll();
+                }
+                if (span == null) {
+                    out.flush();
+                    continue;
+                }
+                batch.add(span);
+                pending.drainTo(batch, WRITE_BATCH - 1);
+                for (String line : batch) {
+                    out.write(line);
+                    out.write('\n');
+                }
+                batch.clear();
+            }
+        } catch (IOException e) {
+            log.error("Could not write spans, tracing stopped", e);
+            running = false;
+        }
+    }
+
+    private static Writer open(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return Files.newBufferedWriter(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private record Span(long traceId, long spanId, long parentSpanId, long startEpochMicros, long startNanos) {
+    }
+}
@@ -0,0 +1,63 @@
+package com.cloudbees.assessment.tracing;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Observes every call into the controllers, the services and the repositories, each becomes a span of the request
+ * in {@link SpanFileExporter} and a {@code seating.calls} timer tagged with its layer, class and method.
+ * <p>
+ * Only calls through the Spring proxy of a bean are observed, a call of a service to one of its own methods is part
+ * of the span of the caller.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(prefix = "seating.tracing", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class TracingAspect {
+
+    static final String CALLS = "seating.calls";
+
+    // Repository methods are mostly declared by Spring Data, the span is named after the repository interface
+    private static final ClassValue<String> REPOSITORY_NAMES = new ClassValue<>() {
+        @Override
+        protected String computeValue(Class<?> proxyClass) {
+            Class<?>[] interfaces = AopProxyUtils.proxiedUserInterfaces(proxyClass);
+            return interfaces.length == 0 ? proxyClass.getSimpleName() : interfaces[0].getSimpleName();
+        }
+    };
+
+    private final ObservationRegistry observationRegistry;
+
+    @Around("within(com.cloudbees.assessment.api.controller..*)")
+    public Object traceController(ProceedingJoinPoint call) throws Throwable {
+        return trace("controller", call.getSignature().getDeclaringType().getSimpleName(), call);
+    }
+
+    @Around("within(com.cloudbees.assessment.service..*)")
+    public Object traceService(ProceedingJoinPoint call) throws Throwable {
+        return trace("service", call.getSignature().getDeclaringType().getSimpleName(), call);
+    }
+
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object traceRepository(ProceedingJoinPoint call) throws Throwable {
+        return trace("repository", REPOSITORY_NAMES.get(call.getThis().getClass()), call);
+    }
+
+    private Object trace(String layer, String className, ProceedingJoinPoint call) throws Throwable {
+        String method = call.getSignature().getName();
+        return Observation.createNotStarted(CALLS, observationRegistry)
+                .contextualName(className + "." + method)
+                .lowCardinalityKeyValue("layer", layer)
+                .lowCardinalityKeyValue("class", className)
+                .lowCardinalityKeyValue("method", method)
+                .observeChecked((Observation.CheckedCallable<Object, Throwable>) call::proceed);
+    }
+}
@@ -0,0 +1,62 @@
+package com.cloudbees.assessment.waitlist;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Passenger waiting for a seat, ordered by the time they joined.
+ */
+@Getter
+class WaitlistEntry implements Comparable<WaitlistEntry> {
+
+    private static final int WAITING = 0;
+    private static final int PROMOTING = 1;
+    private static final int DONE = 2;
+
+    private final String waitlistId;
+    private final long sequence;
+    private final ReceiptSubmitRequest request;
+    private final WaitlistKey key;
+    // Completed with the receipt once promoted, or with the error that refused the booking
+    private final CompletableFuture<ReceiptResponse> result = new CompletableFuture<>();
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+    private volatile long completedAt;
+
+    WaitlistEntry(String waitlistId, long sequence, ReceiptSubmitRequest request, WaitlistKey key) {
+        this.waitlistId = waitlistId;
+        this.sequence = sequence;
+        this.request = request;
+        this.key = key;
+    }
+
+    // A promotion and leaving the waitlist both start from waiting, so a passenger that left is never booked
+    boolean startPromotion() {
+        return state.compareAndSet(WAITING, PROMOTING);
+    }
+
+    void backToWaiting() {
+        state.set(WAITING);
+    }
+
+    boolean cancel() {
+        return state.compareAndSet(WAITING, DONE);
+    }
+
+    boolean isPromoting() {
+        return state.get() == PROMOTING;
+    }
+
+    void markDone(long now) {
+        state.set(DONE);
+        completedAt = now;
+    }
+
+    @Override
+    public int compareTo(WaitlistEntry other) {
+        return Long.compare(sequence, other.sequence);
+    }
+}
@@ -0,0 +1,9 @@
+package com.cloudbees.assessment.waitlist;
+
+import com.cloudbees.assessment.enums.Section;
+
+/**
+ * Waitlist of a train and section, the section is null for passengers taking a seat in any section.
+ */
+record WaitlistKey(String trainId, Section section) {
+}
@@ -0,0 +1,261 @@
+package com.cloudbees.assessment.waitlist;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.api.response.WaitlistResponse;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.enums.SeatPosition;
+import com.cloudbees.assessment.enums.WaitlistStatus;
+import com.cloudbees.assessment.event.SeatOccupancyChangedEvent;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.service.SeatingManagementService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Waitlists of passengers who asked to wait when their train, or section of it, was full.
+ * <p>
+ * Every seat released on a train, by a removal, a seat move or a hold given back, starts a promotion of the
+ * waitlists of the section of the seat and of the passengers taking any section. A promotion books waiting
+ * passengers in the order they joined through {@link SeatingManagementService#allocateSeatToUser}, so the seat is
+ * claimed atomically like any other booking. Passengers whose journey still has no seat keep their place, and the
+ * passengers after them asking for the same journey are not tried again in that scan.
+ * <p>
+ * Promotions run off the request thread, one at a time per waitlist, and a release during a promotion makes it scan
+ * the waitlist again so no freed seat is missed.
+ */
+@Service
+@Slf4j
+public class WaitlistService {
+
+    private final SeatingManagementService seatingManagementService;
+    private final SeatingProperties.Waitlist properties;
+    private final Executor promoter;
+    private final Map<WaitlistKey, Waitlist> waitlists = new ConcurrentHashMap<>();
+    // Every entry by id, promoted and failed ones are kept for seating.waitlist.result-ttl-seconds
+    private final Map<String, WaitlistEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Autowired
+    public WaitlistService(SeatingManagementService seatingManagementService, SeatingProperties seatingProperties) {
+        this(seatingManagementService, seatingProperties, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    WaitlistService(SeatingManagementService seatingManagementService, SeatingProperties seatingProperties,
+            Executor promoter) {
+        this.seatingManagementService = seatingManagementService;
+        this.properties = seatingProperties.getWaitlist();
+        this.promoter = promoter;
+    }
+
+    /**
+     * Books a seat if one is vacant, otherwise puts the passenger on the waitlist of the train and section.
+     */
+    public WaitlistResponse join(ReceiptSubmitRequest request) throws CustomCloudBeesException {
+        try {
+            ReceiptResponse receipt = seatingManagementService.allocateSeatToUser(request);
+            return new WaitlistResponse(null, WaitlistStatus.BOOKED, null, receipt, null);
+        } catch (CustomCloudBeesException e) {
+            if (!isNoSeat(e)) {
+                throw e;
+            }
+        }
+        WaitlistKey key = new WaitlistKey(seatingManagementService.resolveTrainId(request.getTrainId()),
+                request.getSection());
+        Waitlist waitlist = waitlists.computeIfAbsent(key, k -> new Waitlist());
+        if (waitlist.size.incrementAndGet() > properties.getMaxEntriesPerQueue()) {
+            waitlist.size.decrementAndGet();
+            throw new CustomCloudBeesException(HttpStatus.SERVICE_UNAVAILABLE, "The waitlist of the train is full");
+        }
+        WaitlistEntry entry = new WaitlistEntry(UUID.randomUUID().toString(), sequence.incrementAndGet(), request,
+                key);
+        entries.put(entry.getWaitlistId(), entry);
+        waitlist.entries.add(entry);
+        log.info("Waitlisted {} on train {}, section {}", entry.getWaitlistId(), key.trainId(), key.section());
+        // A seat freed after the booking failed and before the passenger joined would otherwise wait for the next
+        // release
+        promote(waitlist);
+        return toResponse(entry);
+    }
+
+    /**
+     * Status of a waitlisted passenger, completed once they are promoted or after waiting the given time at most.
+     */
+    public CompletableFuture<WaitlistResponse> awaitStatus(String waitlistId, long waitMs)
+            throws CustomCloudBeesException {
+        WaitlistEntry entry = getEntry(waitlistId);
+        return entry.getResult()
+                .handle((receipt, error) -> toResponse(entry))
+                .completeOnTimeout(null, Math.min(waitMs, properties.getMaxWaitMs()), TimeUnit.MILLISECONDS)
+                .thenApply(response -> response == null ? toResponse(entry) : response);
+    }
+
+    public void leave(String waitlistId) throws CustomCloudBeesException {
+        WaitlistEntry entry = getEntry(waitlistId);
+        if (!entry.cancel()) {
+            throw new CustomCloudBeesException(HttpStatus.CONFLICT, entry.isPromoting() ?
+                    "The passenger is being booked from the waitlist" : "The passenger is no longer waitlisted");
+        }
+        finish(entry, null, new CancellationException("The passenger left the waitlist"));
+        log.info("Waitlisted {} left the waitlist", waitlistId);
+    }
+
+    // Runs after commit, so a promotion never sees a seat that is released only in a transaction still running
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSeatOccupancyChanged(SeatOccupancyChangedEvent event) {
+        if (event.isBooked()) {
+            return;
+        }
+        promote(waitlists.get(new WaitlistKey(event.getTrainId(), event.getSection())));
+        promote(waitlists.get(new WaitlistKey(event.getTrainId(), null)));
+    }
+
+    public int size() {
+        return waitlists.values().stream().mapToInt(waitlist -> waitlist.size.get()).sum();
+    }
+
+    @Scheduled(fixedDelayString = "${seating.waitlist.cleanup-interval-ms:60000}")
+    public void removeExpiredResults() {
+        long expiredBefore = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(properties.getResultTtlSeconds());
+        entries.values().removeIf(entry -> entry.getResult().isDone() && entry.getCompletedAt() < expiredBefore);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (promoter instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    private void promote(Waitlist waitlist) {
+        if (waitlist == null || waitlist.entries.isEmpty()) {
+            return;
+        }
+        waitlist.releases.incrementAndGet();
+        if (waitlist.promoting.compareAndSet(false, true)) {
+            promoter.execute(() -> runPromotion(waitlist));
+        }
+    }
+
+    private void runPromotion(Waitlist waitlist) {
+        do {
+            long releases = waitlist.releases.get();
+            // Journeys found without a seat in this scan, a later entry asking for the same one would fail too, a
+            // release while scanning starts another scan
+            Set<Journey> full = new HashSet<>();
+            for (WaitlistEntry entry : waitlist.entries) {
+                Journey journey = Journey.of(entry.getRequest());
+                if (!full.contains(journey) && entry.startPromotion() && !tryBook(entry)) {
+                    full.add(journey);
+                }
+            }
+            waitlist.promoting.set(false);
+            // Scan again for a release that came after this scan started, unless its own promotion took over
+            if (waitlist.releases.get() == releases) {
+                return;
+            }
+        } while (waitlist.promoting.compareAndSet(false, true));
+    }
+
+    /**
+     * @return false when the passenger is still waiting because no seat matches their journey
+     */
+    private boolean tryBook(WaitlistEntry entry) {
+        try {
+            ReceiptResponse receipt = seatingManagementService.allocateSeatToUser(entry.getRequest());
+            finish(entry, receipt, null);
+            log.info("Promoted {} from the waitlist of train {}", entry.getWaitlistId(), entry.getKey().trainId());
+        } catch (CustomCloudBeesException e) {
+            if (isNoSeat(e)) {
+                entry.backToWaiting();
+                return false;
+            }
+            finish(entry, null, e);
+        } catch (RuntimeException e) {
+            log.error("Failed to book waitlisted {}", entry.getWaitlistId(), e);
+            finish(entry, null, e);
+        }
+        return true;
+    }
+
+    private void finish(WaitlistEntry entry, ReceiptResponse receipt, Throwable error) {
+        Waitlist waitlist = waitlists.get(entry.getKey());
+        if (waitlist.entries.remove(entry)) {
+            waitlist.size.decrementAndGet();
+        }
+        entry.markDone(System.currentTimeMillis());
+        if (error == null) {
+            entry.getResult().complete(receipt);
+        } else {
+            entry.getResult().completeExceptionally(error);
+        }
+    }
+
+    private WaitlistResponse toResponse(WaitlistEntry entry) {
+        CompletableFuture<ReceiptResponse> result = entry.getResult();
+        if (!result.isDone()) {
+            int position = waitlists.get(entry.getKey()).entries.headSet(entry).size();
+            return new WaitlistResponse(entry.getWaitlistId(), WaitlistStatus.WAITING, position, null, null);
+        }
+        try {
+            return new WaitlistResponse(entry.getWaitlistId(), WaitlistStatus.BOOKED, null, result.join(), null);
+        } catch (CancellationException e) {
+            return new WaitlistResponse(entry.getWaitlistId(), WaitlistStatus.CANCELLED, null, null, e.getMessage());
+        } catch (CompletionException e) {
+            String message = e.getCause() instanceof CustomCloudBeesException cause ? cause.getErrorMessage() :
+                    e.getCause().getMessage();
+            return new WaitlistResponse(entry.getWaitlistId(), WaitlistStatus.FAILED, null, null, message);
+        }
+    }
+
+    private WaitlistEntry getEntry(String waitlistId) throws CustomCloudBeesException {
+        WaitlistEntry entry = entries.get(waitlistId);
+        if (entry == null) {
+            throw new CustomCloudBeesException(HttpStatus.NOT_FOUND, "No waitlisted passenger found with given id");
+        }
+        return entry;
+    }
+
+    private static boolean isNoSeat(CustomCloudBeesException e) {
+        return SeatingManagementService.NO_SEAT_MESSAGE.equals(e.getErrorMessage())
+                || SeatingManagementService.NO_MATCHING_SEAT_MESSAGE.equals(e.getErrorMessage());
+    }
+
+    // What decides whether a seat is vacant for a passenger of a waitlist, the train and section are those of the list
+    private record Journey(String from, String to, SeatPosition seatPosition) {
+        static Journey of(ReceiptSubmitRequest request) {
+            return new Journey(request.getFrom(), request.getTo(), request.getSeatPosition());
+        }
+    }
+
+    private static final class Waitlist {
+        private final NavigableSet<WaitlistEntry> entries = new ConcurrentSkipListSet<>();
+        private final AtomicInteger size = new AtomicInteger();
+        // Bumped by every release, a promotion that sees it change while scanning scans again
+        private final AtomicLong releases = new AtomicLong();
+        private final AtomicBoolean promoting = new AtomicBoolean();
+    }
+}
@@ -0,0 +1,164 @@
+package com.cloudbees.assessment.reactive.api.controller;
+
+import com.cloudbees.assessment.api.request.BatchReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.SeatUpdateRequest;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.cloudbees.assessment.inventory.TrainInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.reactive.ReactiveBookingApplication;
+import com.cloudbees.assessment.reactive.repository.ReactiveUserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = ReactiveBookingApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.main.web-application-type=reactive", "spring.config.name=reactive"})
+class ReactiveReceiptControllerTest {
+    @Autowired
+    private WebTestClient webTestClient;
+    @Autowired
+    private ReactiveUserRepository userRepository;
+    @Autowired
+    private TrainInventoryRegistry trainInventoryRegistry;
+
+    // Start every test with no bookings and an empty inventory for the default train
+    @BeforeEach
+    void reset() {
+        userRepository.deleteAll().block();
+        TrainInventory train = trainInventoryRegistry.find(null);
+        trainInventoryRegistry.register(train.getLayout());
+    }
+
+    @Test
+    void submitStoresReceiptAndLooksItUp() {
+        ReceiptResponse receipt = submit("john@gmail.com").expectStatus().isOk()
+                .expectBody(ReceiptResponse.class).returnResult().getResponseBody();
+        assertNotNull(receipt.getId());
+        assertEquals(1, receipt.getUser().getSeatNumber());
+        assertEquals(Section.SECTION_A, receipt.getUser().getSection());
+        assertEquals(0, new BigDecimal(20).compareTo(receipt.getPrice()));
+
+        webTestClient.get().uri("/api/receipt?email={email}", "john@gmail.com").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(receipt.getId().intValue())
+                .jsonPath("$.user.id").isEqualTo(receipt.getUser().getId().intValue());
+    }
+
+    // fail case if the same user books twice, the seat claimed for the second booking is given back
+    @Test
+    void duplicateEmailIsRejectedAndSeatReleased() {
+        submit("john@gmail.com").expectStatus().isOk();
+        submit("john@gmail.com").expectStatus().isEqualTo(422)
+                .expectBody(String.class).isEqualTo("This user is already inside the train");
+        assertEquals(9, trainInventoryRegistry.find(null).getSeats().vacantCount());
+    }
+
+    // fail case if every seat of the train is booked
+    @Test
+    void fullTrainIsRejected() {
+        for (int i = 0; i < 10; i++) {
+            submit("user" + i + "@gmail.com").expectStatus().isOk();
+        }
+        submit("late@gmail.com").expectStatus().isEqualTo(422)
+                .expectBody(String.class).isEqualTo("All seats have been filled");
+    }
+
+    // fail case if neither user id nor email is given
+    @Test
+    void lookupWithoutIdOrEmailIsRejected() {
+        webTestClient.get().uri("/api/receipt").exchange().expectStatus().isEqualTo(422);
+        webTestClient.get().uri("/api/receipt?userId=99").exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    void batchReportsEveryPassenger() {
+        submit("a@gmail.com").expectStatus().isOk();
+        BatchReceiptSubmitRequest batch = new BatchReceiptSubmitRequest(List.of(request("b@gmail.com"),
+                request("a@gmail.com"), request("c@gmail.com")), true);
+        webTestClient.post().uri("/api/receipt/submit/batch").bodyValue(batch).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.succeeded").isEqualTo(2)
+                .jsonPath("$.failed").isEqualTo(1)
+                .jsonPath("$.results[0].receipt.user.seatNumber").isEqualTo(2)
+                .jsonPath("$.results[1].status").isEqualTo(422)
+                .jsonPath("$.results[2].receipt.user.seatNumber").isEqualTo(4);
+        // The seat kept for the rejected passenger goes back to the inventory
+        assertTrue(trainInventoryRegistry.find(null).getSeats().isFree(3));
+    }
+
+    @Test
+    void sectionIsListedAndStreamedInSeatOrder() {
+        submit("a@gmail.com").expectStatus().isOk();
+        submit("b@gmail.com").expectStatus().isOk();
+
+        webTestClient.get().uri("/api/receipt/SECTION_A").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.length()").isEqualTo(2);
+        String streamed = webTestClient.get().uri("/api/receipt/SECTION_A/stream")
+                .accept(MediaType.APPLICATION_NDJSON).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        String[] lines = streamed.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"seatNumber\":1"));
+        assertTrue(lines[1].contains("\"seatNumber\":2"));
+        webTestClient.get().uri("/api/receipt/SECTION_A/page?size=1").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.users.length()").isEqualTo(1)
+                .jsonPath("$.nextCursor").exists();
+    }
+
+    @Test
+    void seatMoveAndRemovalReleaseSeats() {
+        ReceiptResponse receipt = submit("john@gmail.com").expectBody(ReceiptResponse.class).returnResult()
+                .getResponseBody();
+        Long userId = receipt.getUser().getId();
+        SeatInventory seats = trainInventoryRegistry.find(null).getSeats();
+
+        webTestClient.patch().uri("/api/receipt").bodyValue(new SeatUpdateRequest(userId, 7)).exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.newSeat").isEqualTo(7);
+        assertTrue(seats.isFree(1));
+        assertFalse(seats.isFree(7));
+
+        webTestClient.delete().uri("/api/receipt/{id}", userId).exchange().expectStatus().isOk();
+        assertTrue(seats.isFree(7));
+        webTestClient.get().uri("/api/receipt?userId={id}", userId).exchange().expectStatus().isNotFound();
+    }
+
+    // fail case if the new seat is taken or does not exist
+    @Test
+    void seatMoveToTakenSeatIsRejected() {
+        submit("a@gmail.com").expectStatus().isOk();
+        ReceiptResponse receipt = submit("b@gmail.com").expectBody(ReceiptResponse.class).returnResult()
+                .getResponseBody();
+        Long userId = receipt.getUser().getId();
+
+        webTestClient.patch().uri("/api/receipt").bodyValue(new SeatUpdateRequest(userId, 1)).exchange()
+                .expectStatus().isEqualTo(409);
+        webTestClient.patch().uri("/api/receipt").bodyValue(new SeatUpdateRequest(userId, 11)).exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    private WebTestClient.ResponseSpec submit(String email) {
+        return webTestClient.post().uri("/api/receipt/submit").bodyValue(request(email)).exchange();
+    }
+
+    private static ReceiptSubmitRequest request(String email) {
+        return new ReceiptSubmitRequest("london", "france", "John", "Doe", email, null, null);
+    }
+}
@@ -0,0 +1,44 @@
+package com.cloudbees.assessment.reactive;
+
+import com.cloudbees.assessment.api.controller.ExceptionController;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.service.SeatAllocator;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Booking API on WebFlux with the bookings stored over R2DBC, so waiting on the database holds no thread. Runs as
+ * its own application next to {@link com.cloudbees.assessment.AssessmentApplication}, as Spring MVC and WebFlux can
+ * not serve from one context. Only the classes of this package are scanned, the JDBC and JPA setup of the servlet
+ * application is left out, seats are claimed by the same {@link SeatAllocator} as there. Reads reactive.properties,
+ * which imports application.properties for the seat layout.
+ */
+@SpringBootApplication(exclude = {DataSourceAutoConfiguration.class,
+        DataSourceTransactionManagerAutoConfiguration.class, HibernateJpaAutoConfiguration.class})
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableConfigurationProperties(SeatingProperties.class)
+@Import({ExceptionController.class, SeatAllocator.class})
+public class ReactiveBookingApplication {
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(ReactiveBookingApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .properties("spring.config.name=reactive")
+                .run(args);
+    }
+
+    // Seat inventory is the same lock-free in-memory structure the servlet application books from
+    @Bean
+    public TrainInventoryRegistry trainInventoryRegistry(SeatingProperties seatingProperties) {
+        return new TrainInventoryRegistry(seatingProperties);
+    }
+}
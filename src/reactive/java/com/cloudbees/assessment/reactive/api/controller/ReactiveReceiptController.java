@@ -0,0 +1,101 @@
+package com.cloudbees.assessment.reactive.api.controller;
+
+import com.cloudbees.assessment.api.request.BatchReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.SeatUpdateRequest;
+import com.cloudbees.assessment.api.response.BatchReceiptResponse;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.api.response.SeatUpdateResponse;
+import com.cloudbees.assessment.api.response.UserSeatPageResponse;
+import com.cloudbees.assessment.api.response.UserSeatResponse;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.reactive.service.ReactiveSeatingService;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Operations of {@link com.cloudbees.assessment.api.controller.ReceiptController} on the same paths, served by
+ * WebFlux so a request waiting on the database holds no thread.
+ */
+@RestController
+@RequestMapping("/api/receipt")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Slf4j
+@RequiredArgsConstructor
+public class ReactiveReceiptController {
+
+    private final ReactiveSeatingService reactiveSeatingService;
+
+    @PostMapping("/submit")
+    public Mono<ResponseEntity<ReceiptResponse>> submitReceipt(
+            @RequestBody @Valid ReceiptSubmitRequest receiptSubmitRequest) {
+        log.info("Received request to submit receipt. email: {}, trainId: {}, section: {}",
+                receiptSubmitRequest.getEmail(), receiptSubmitRequest.getTrainId(), receiptSubmitRequest.getSection());
+        return reactiveSeatingService.allocateSeatToUser(receiptSubmitRequest).map(ResponseEntity::ok);
+    }
+
+    @PostMapping("/submit/batch")
+    public Mono<ResponseEntity<BatchReceiptResponse>> submitReceipts(
+            @RequestBody @Valid BatchReceiptSubmitRequest batchReceiptSubmitRequest) {
+        log.info("Received request to submit {} receipts", batchReceiptSubmitRequest.getReceipts().size());
+        return reactiveSeatingService.allocateSeatsToUsers(batchReceiptSubmitRequest.getReceipts(),
+                batchReceiptSubmitRequest.isAdjacent()).map(ResponseEntity::ok);
+    }
+
+    @GetMapping()
+    public Mono<ResponseEntity<ReceiptResponse>> getUserReceiptDetails(@RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String email) {
+        log.info("Received request to get user receipt details for userId: {}, email: {}", userId, email);
+        return reactiveSeatingService.getUserReceiptDetails(userId, email).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{section}")
+    public Mono<ResponseEntity<List<UserSeatResponse>>> getUserSeatDetailsBySection(@PathVariable Section section,
+            @RequestParam(required = false) String trainId) {
+        log.info("Received request to get user seat details by section: {}, trainId: {}", section, trainId);
+        return reactiveSeatingService.getUserSeatDetailsBySection(trainId, section).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{section}/page")
+    public Mono<ResponseEntity<UserSeatPageResponse>> getUserSeatDetailsPageBySection(@PathVariable Section section,
+            @RequestParam(required = false) String trainId, @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(1000) int size) {
+        log.info("Received request to get user seat details page by section: {}, trainId: {}, cursor: {}", section,
+                trainId, cursor);
+        return reactiveSeatingService.getUserSeatDetailsBySection(trainId, section, cursor, size)
+                .map(ResponseEntity::ok);
+    }
+
+    // One JSON object per line, written as rows come from the database and only as fast as the client reads
+    @GetMapping(value = "/{section}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UserSeatResponse> streamUserSeatDetailsBySection(@PathVariable Section section,
+            @RequestParam(required = false) String trainId) {
+        log.info("Received request to stream user seat details by section: {}, trainId: {}", section, trainId);
+        return reactiveSeatingService.streamUserSeatDetailsBySection(trainId, section);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<String>> removeUser(@PathVariable Long id) {
+        log.info("Received request to delete user for id: {}", id);
+        return reactiveSeatingService.removeUser(id)
+                .then(Mono.fromSupplier(() -> ResponseEntity.ok().body("Successfully removed user")));
+    }
+
+    @PatchMapping()
+    public Mono<ResponseEntity<SeatUpdateResponse>> updateUserSeat(
+            @RequestBody @Valid SeatUpdateRequest seatUpdateRequest) {
+        log.info("Received request to update user seat. Request: {}", seatUpdateRequest);
+        return reactiveSeatingService.updateUserSeat(seatUpdateRequest).map(ResponseEntity::ok);
+    }
+}
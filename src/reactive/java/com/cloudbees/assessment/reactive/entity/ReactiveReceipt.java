@@ -0,0 +1,28 @@
+package com.cloudbees.assessment.reactive.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.math.BigDecimal;
+
+/**
+ * Receipt row of the reactive stack. R2DBC maps no relations, the passenger is referenced by id and the receipt is
+ * deleted with its passenger by the foreign key.
+ */
+@Table("receipt")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReactiveReceipt {
+    @Id
+    private Long id;
+    private String fromStation;
+    private String toStation;
+    private Long userId;
+    private BigDecimal price;
+}
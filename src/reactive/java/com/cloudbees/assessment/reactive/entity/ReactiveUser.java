@@ -0,0 +1,34 @@
+package com.cloudbees.assessment.reactive.entity;
+
+import com.cloudbees.assessment.enums.Section;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * Passenger row of the reactive stack, the same columns as {@link com.cloudbees.assessment.entity.User}. Stored in
+ * the passenger table as user is a reserved word.
+ */
+@Table("passenger")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReactiveUser {
+    @Id
+    private Long id;
+    private String firstName;
+    private String lastName;
+    private String email;
+    private String trainId;
+    private Integer seatNumber;
+    private Section section;
+
+    // Optimistic lock, null until the row is inserted
+    @Version
+    private Long version;
+}
@@ -0,0 +1,10 @@
+package com.cloudbees.assessment.reactive.repository;
+
+import com.cloudbees.assessment.reactive.entity.ReactiveReceipt;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveReceiptRepository extends ReactiveCrudRepository<ReactiveReceipt, Long> {
+
+    Mono<ReactiveReceipt> findByUserId(Long userId);
+}
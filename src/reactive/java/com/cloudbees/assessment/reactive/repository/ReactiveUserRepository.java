@@ -0,0 +1,27 @@
+package com.cloudbees.assessment.reactive.repository;
+
+import com.cloudbees.assessment.reactive.entity.ReactiveUser;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveUserRepository extends ReactiveCrudRepository<ReactiveUser, Long> {
+
+    @Query("select * from passenger where id = :userId or email = :email limit 1")
+    Mono<ReactiveUser> findByIdOrEmail(@Param("userId") Long userId, @Param("email") String email);
+
+    // Manifest of a section ordered by seat, users sharing a seat on different legs are ordered by id. Only the
+    // columns of UserSeatResponse are read
+    @Query("select id, email, seat_number, section from passenger where train_id = :trainId and " +
+            "section = :section order by seat_number, id")
+    Flux<ReactiveUser> findSeats(@Param("trainId") String trainId, @Param("section") String section);
+
+    // Keyset page of a section ordered by seat, see UserRepository.findSeatPage
+    @Query("select id, email, seat_number, section from passenger where train_id = :trainId and " +
+            "section = :section and (seat_number > :afterSeat or (seat_number = :afterSeat and id > :afterId)) " +
+            "order by seat_number, id limit :size")
+    Flux<ReactiveUser> findSeatPage(@Param("trainId") String trainId, @Param("section") String section,
+            @Param("afterSeat") int afterSeat, @Param("afterId") long afterId, @Param("size") int size);
+}
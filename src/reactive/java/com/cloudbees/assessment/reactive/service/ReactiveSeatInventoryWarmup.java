@@ -0,0 +1,60 @@
+package com.cloudbees.assessment.reactive.service;
+
+import com.cloudbees.assessment.inventory.OccupiedSeat;
+import com.cloudbees.assessment.inventory.TrainInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.layout.TrainLayout;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads the stored bookings into the seat inventory on startup, as
+ * {@link com.cloudbees.assessment.inventory.SeatInventoryWarmup} does for the servlet application. Rows are claimed
+ * as they arrive, the runner only waits for the last one.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveSeatInventoryWarmup implements ApplicationRunner {
+
+    // Seat and journey of every booked user
+    private static final String OCCUPIED_SEATS = "select p.train_id, p.seat_number, r.from_station, r.to_station " +
+            "from passenger p left join receipt r on r.user_id = p.id where p.seat_number is not null";
+
+    private final DatabaseClient databaseClient;
+    private final TrainInventoryRegistry trainInventoryRegistry;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        Long loaded = databaseClient.sql(OCCUPIED_SEATS)
+                .map(row -> new OccupiedSeat(row.get("train_id", String.class), row.get("seat_number", Integer.class),
+                        row.get("from_station", String.class), row.get("to_station", String.class)))
+                .all()
+                .filter(this::claim)
+                .count()
+                .block();
+        log.info("Loaded {} occupied seats into the inventory in {} ms", loaded,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private boolean claim(OccupiedSeat seat) {
+        TrainInventory train = trainInventoryRegistry.find(seat.trainId());
+        if (train == null || !train.getSeats().contains(seat.seatNumber())) {
+            log.warn("Stored booking of seat {} on train {} is not in the seat layout", seat.seatNumber(),
+                    seat.trainId());
+            return false;
+        }
+        long leg = train.getLayout().legMask(seat.fromStation(), seat.toStation());
+        if (leg == TrainLayout.INVALID_LEG) {
+            leg = train.getSeats().fullRouteMask();
+        }
+        return train.getSeats().claim(seat.seatNumber(), leg);
+    }
+}
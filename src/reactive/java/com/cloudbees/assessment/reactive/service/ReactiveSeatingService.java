@@ -0,0 +1,302 @@
+package com.cloudbees.assessment.reactive.service;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.SeatUpdateRequest;
+import com.cloudbees.assessment.api.response.BatchReceiptItemResponse;
+import com.cloudbees.assessment.api.response.BatchReceiptResponse;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.api.response.SeatUpdateResponse;
+import com.cloudbees.assessment.api.response.UserSeatPageResponse;
+import com.cloudbees.assessment.api.response.UserSeatResponse;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.entity.User;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.cloudbees.assessment.inventory.TrainInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.reactive.entity.ReactiveReceipt;
+import com.cloudbees.assessment.reactive.entity.ReactiveUser;
+import com.cloudbees.assessment.reactive.repository.ReactiveReceiptRepository;
+import com.cloudbees.assessment.reactive.repository.ReactiveUserRepository;
+import com.cloudbees.assessment.service.SeatAllocator;
+import com.cloudbees.assessment.service.SeatAllocator.GroupSeats;
+import com.cloudbees.assessment.service.SeatAllocator.SeatCursor;
+import com.cloudbees.assessment.service.SeatingManagementService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntFunction;
+
+/**
+ * Booking operations of {@link SeatingManagementService} without blocking a thread. Seats are claimed in the same
+ * lock-free in-memory inventory, which never waits, and only the database round trips are asynchronous. A seat is
+ * given back to the inventory when its booking fails or the request is cancelled before it is stored.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Slf4j
+@RequiredArgsConstructor
+public class ReactiveSeatingService {
+
+    private static final BigDecimal PRICE_PAID_20 = new BigDecimal(20);
+    // Passengers of a batch stored at the same time, each in its own transaction
+    private static final int BATCH_CONCURRENCY = 16;
+
+    private final ReactiveUserRepository userRepository;
+
+    private final ReactiveReceiptRepository receiptRepository;
+
+    private final TrainInventoryRegistry trainInventoryRegistry;
+
+    private final SeatAllocator seatAllocator;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final SeatingProperties seatingProperties;
+
+    public Mono<ReceiptResponse> allocateSeatToUser(ReceiptSubmitRequest request) {
+        return defer(() -> {
+            TrainInventory train = seatAllocator.getTrain(request.getTrainId());
+            long leg = seatAllocator.getLeg(train, request.getFrom(), request.getTo());
+            return bookClaimedSeat(request, train, seatAllocator.claimSeat(train, leg, request), leg);
+        });
+    }
+
+    /**
+     * Books a group of passengers, a passenger that can not be booked does not fail the others and its error is
+     * reported at its position in the result. With adjacent set the group is first given consecutive seats of one
+     * coach, as by {@link SeatingManagementService#allocateAdjacentSeatsToUsers(List)}.
+     */
+    public Mono<BatchReceiptResponse> allocateSeatsToUsers(List<ReceiptSubmitRequest> requests, boolean adjacent) {
+        if (adjacent) {
+            return defer(() -> allocateGroupSeats(requests, seatAllocator.claimAdjacentSeats(requests)));
+        }
+        return bookEach(requests, i -> allocateSeatToUser(requests.get(i)));
+    }
+
+    // Passenger i of a group takes the seat kept for it. Once its booking has started that booking gives the seat
+    // back if it fails, the seats of passengers not started yet are given back here if the batch fails or is
+    // cancelled
+    private Mono<BatchReceiptResponse> allocateGroupSeats(List<ReceiptSubmitRequest> requests, GroupSeats group) {
+        AtomicIntegerArray started = new AtomicIntegerArray(requests.size());
+        Runnable releaseNotStarted = () -> {
+            for (int i = 0; i < requests.size(); i++) {
+                if (started.compareAndSet(i, 0, 1)) {
+                    group.release(i);
+                }
+            }
+        };
+        return bookEach(requests, i -> Mono.defer(() -> started.compareAndSet(i, 0, 1) ?
+                        bookClaimedSeat(requests.get(i), group.train(), group.seatOf(i), group.leg()) : Mono.empty()))
+                .doOnError(e -> releaseNotStarted.run())
+                .doOnCancel(releaseNotStarted);
+    }
+
+    // A passenger that can not be booked does not fail the others, its error is reported at its position
+    private Mono<BatchReceiptResponse> bookEach(List<ReceiptSubmitRequest> requests,
+            IntFunction<Mono<ReceiptResponse>> booking) {
+        return Flux.range(0, requests.size())
+                .flatMapSequential(i -> booking.apply(i)
+                        .map(receipt -> new BatchReceiptItemResponse(i, HttpStatus.OK.value(), receipt, null))
+                        .onErrorResume(CustomCloudBeesException.class, e -> Mono.just(
+                                new BatchReceiptItemResponse(i, e.getHttpStatus().value(), null,
+                                        e.getErrorMessage()))), BATCH_CONCURRENCY)
+                .collectList()
+                .map(results -> {
+                    int succeeded = (int) results.stream().filter(r -> r.getReceipt() != null).count();
+                    log.info("Booked {} of {} passengers of batch", succeeded, requests.size());
+                    return new BatchReceiptResponse(succeeded, requests.size() - succeeded, results);
+                });
+    }
+
+    public Mono<ReceiptResponse> getUserReceiptDetails(Long userId, String email) {
+        if (userId == null && !StringUtils.hasText(email)) {
+            return Mono.error(new CustomCloudBeesException(HttpStatus.UNPROCESSABLE_ENTITY, "One of user id or " +
+                    "email is mandatory"));
+        }
+        return userRepository.findByIdOrEmail(userId, email)
+                .flatMap(user -> receiptRepository.findByUserId(user.getId())
+                        .map(receipt -> toReceiptResponse(receipt, user)))
+                .switchIfEmpty(Mono.error(new CustomCloudBeesException(HttpStatus.NOT_FOUND, "No user found with " +
+                        "given details")));
+    }
+
+    public Mono<List<UserSeatResponse>> getUserSeatDetailsBySection(String trainId, Section section) {
+        return streamUserSeatDetailsBySection(trainId, section).collectList();
+    }
+
+    /**
+     * Page of a section manifest ordered by seat, starting after the given cursor, as by
+     * {@link SeatingManagementService#getUserSeatDetailsBySection(String, Section, String, int)}.
+     */
+    public Mono<UserSeatPageResponse> getUserSeatDetailsBySection(String trainId, Section section, String cursor,
+            int pageSize) {
+        return defer(() -> {
+            TrainInventory train = seatAllocator.getTrain(trainId);
+            SeatCursor after = SeatAllocator.parseCursor(cursor);
+            return userRepository.findSeatPage(train.getTrainId(), section.name(), after.afterSeat(),
+                            after.afterId(), pageSize)
+                    .map(ReactiveSeatingService::toUserSeatResponse)
+                    .collectList()
+                    .map(users -> new UserSeatPageResponse(users, SeatAllocator.nextCursor(users, pageSize)));
+        });
+    }
+
+    /**
+     * Section manifest ordered by seat, emitted as rows are read so it is written out with backpressure.
+     */
+    public Flux<UserSeatResponse> streamUserSeatDetailsBySection(String trainId, Section section) {
+        return defer(() -> Mono.just(seatAllocator.getTrain(trainId).getTrainId()))
+                .flatMapMany(resolvedTrainId -> userRepository.findSeats(resolvedTrainId, section.name())
+                        .map(ReactiveSeatingService::toUserSeatResponse));
+    }
+
+    // The receipt row goes with the user row by the foreign key
+    public Mono<Void> removeUser(Long id) {
+        return userRepository.findById(id)
+                .switchIfEmpty(Mono.error(new CustomCloudBeesException(HttpStatus.NOT_FOUND, "User not found with " +
+                        "given id")))
+                .zipWhen(user -> findReceipt(user.getId()))
+                .flatMap(userAndReceipt -> {
+                    ReactiveUser user = userAndReceipt.getT1();
+                    return userRepository.delete(user).then(Mono.fromRunnable(() -> {
+                        // Release the journey of removed user on its seat back to the inventory of its train
+                        TrainInventory train = trainInventoryRegistry.find(user.getTrainId());
+                        if (train != null && user.getSeatNumber() != null) {
+                            train.getSeats().release(user.getSeatNumber(),
+                                    getBookedLeg(train, userAndReceipt.getT2().orElse(null)));
+                        }
+                        log.info("Successfully removed user for id: {}", id);
+                    }));
+                });
+    }
+
+    /**
+     * Moves a user to a new seat, as by {@link SeatingManagementService#updateUserSeat(SeatUpdateRequest)}. A move
+     * that lost a race with another change of the same user is retried on fresh data a bounded number of times.
+     */
+    public Mono<SeatUpdateResponse> updateUserSeat(SeatUpdateRequest seatUpdateRequest) {
+        int maxAttempts = seatingProperties.getSeatMoveMaxAttempts();
+        return Mono.defer(() -> moveUserSeat(seatUpdateRequest))
+                .retryWhen(Retry.max(maxAttempts - 1)
+                        .filter(OptimisticLockingFailureException.class::isInstance)
+                        .doBeforeRetry(signal -> log.info("Retrying seat move of user with id: {} after concurrent " +
+                                "update", seatUpdateRequest.getUserId()))
+                        .onRetryExhaustedThrow((spec, signal) -> {
+                            log.warn("Giving up seat move of user with id: {} after {} attempts",
+                                    seatUpdateRequest.getUserId(), maxAttempts);
+                            return new CustomCloudBeesException(HttpStatus.CONFLICT, "The user was updated " +
+                                    "concurrently, please retry");
+                        }));
+    }
+
+    private Mono<SeatUpdateResponse> moveUserSeat(SeatUpdateRequest seatUpdateRequest) {
+        return userRepository.findById(seatUpdateRequest.getUserId())
+                .switchIfEmpty(Mono.error(new CustomCloudBeesException(HttpStatus.NOT_FOUND, "User not found with " +
+                        "given id")))
+                .zipWhen(user -> findReceipt(user.getId()))
+                .flatMap(userAndReceipt -> defer(() -> moveUserSeat(userAndReceipt.getT1(),
+                        userAndReceipt.getT2().orElse(null), seatUpdateRequest.getNewSeat())));
+    }
+
+    // Claims the new seat before the user row is saved and releases the old one only after, as the servlet move does
+    private Mono<SeatUpdateResponse> moveUserSeat(ReactiveUser user, ReactiveReceipt receipt, int newSeat)
+            throws CustomCloudBeesException {
+        TrainInventory train = seatAllocator.getTrain(user.getTrainId());
+        SeatInventory seatInventory = train.getSeats();
+        long leg = getBookedLeg(train, receipt);
+        if (!seatInventory.contains(newSeat)) {
+            throw new CustomCloudBeesException(HttpStatus.BAD_REQUEST, "The given seat does not exist");
+        }
+        if (!seatInventory.claim(newSeat, leg)) {
+            throw new CustomCloudBeesException(HttpStatus.CONFLICT, "The given seat is already occupied");
+        }
+        Integer existingSeat = user.getSeatNumber();
+        user.setSeatNumber(newSeat);
+        user.setSection(train.getLayout().sectionOf(newSeat));
+        return userRepository.save(user)
+                .doOnError(e -> seatInventory.release(newSeat, leg))
+                .doOnCancel(() -> seatInventory.release(newSeat, leg))
+                .map(saved -> {
+                    if (existingSeat != null) {
+                        seatInventory.release(existingSeat, leg);
+                    }
+                    log.info("Successfully updated user with id: {}", saved.getId());
+                    return new SeatUpdateResponse(saved.getId(), saved.getSeatNumber());
+                });
+    }
+
+    // Stores the passenger and its receipt in one transaction, the seat is given back if that does not complete
+    private Mono<ReceiptResponse> bookClaimedSeat(ReceiptSubmitRequest request, TrainInventory train, int seatNumber,
+            long leg) {
+        ReactiveUser user = new ReactiveUser(null, request.getFirstName(), request.getLastName(), request.getEmail(),
+                train.getTrainId(), seatNumber, train.getLayout().sectionOf(seatNumber), null);
+        BigDecimal price = request.getPrice() == null ? PRICE_PAID_20 : request.getPrice();
+        return userRepository.save(user)
+                .flatMap(saved -> receiptRepository.save(new ReactiveReceipt(null, request.getFrom(), request.getTo(),
+                        saved.getId(), price)).map(receipt -> toReceiptResponse(receipt, saved)))
+                .as(transactionalOperator::transactional)
+                .onErrorMap(DataIntegrityViolationException.class, e -> new CustomCloudBeesException(
+                        HttpStatus.UNPROCESSABLE_ENTITY, SeatAllocator.ALREADY_BOOKED_MESSAGE))
+                .doOnError(e -> train.getSeats().release(seatNumber, leg))
+                .doOnCancel(() -> train.getSeats().release(seatNumber, leg));
+    }
+
+    private long getBookedLeg(TrainInventory train, ReactiveReceipt receipt) {
+        return receipt == null ? train.getSeats().fullRouteMask() :
+                seatAllocator.getBookedLeg(train, receipt.getFromStation(), receipt.getToStation());
+    }
+
+    private Mono<Optional<ReactiveReceipt>> findReceipt(Long userId) {
+        return receiptRepository.findByUserId(userId).map(Optional::of).defaultIfEmpty(Optional.empty());
+    }
+
+    // Same body as the servlet API, the user is returned in the shape of the JPA entity
+    private static ReceiptResponse toReceiptResponse(ReactiveReceipt receipt, ReactiveUser reactiveUser) {
+        User user = new User();
+        user.setId(reactiveUser.getId());
+        user.setFirstName(reactiveUser.getFirstName());
+        user.setLastName(reactiveUser.getLastName());
+        user.setEmail(reactiveUser.getEmail());
+        user.setTrainId(reactiveUser.getTrainId());
+        user.setSeatNumber(reactiveUser.getSeatNumber());
+        user.setSection(reactiveUser.getSection());
+        return new ReceiptResponse(receipt.getId(), receipt.getFromStation(), receipt.getToStation(), user,
+                receipt.getPrice());
+    }
+
+    private static UserSeatResponse toUserSeatResponse(ReactiveUser user) {
+        return new UserSeatResponse(user.getId(), user.getEmail(), user.getSeatNumber(), user.getSection());
+    }
+
+    // Runs the in-memory steps, which fail with a checked exception, when the pipeline is subscribed
+    private static <T> Mono<T> defer(Step<T> step) {
+        return Mono.defer(() -> {
+            try {
+                return step.run();
+            } catch (CustomCloudBeesException e) {
+                return Mono.error(e);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface Step<T> {
+        Mono<T> run() throws CustomCloudBeesException;
+    }
+}
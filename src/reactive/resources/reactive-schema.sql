@@ -0,0 +1,23 @@
+-- Tables of the reactive stack, the same columns the servlet application gets from its JPA entities
+CREATE TABLE IF NOT EXISTS passenger (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    first_name VARCHAR(255),
+    last_name VARCHAR(255),
+    email VARCHAR(255) NOT NULL,
+    train_id VARCHAR(255),
+    seat_number INT,
+    section VARCHAR(32),
+    version BIGINT,
+    CONSTRAINT uk_passenger_email UNIQUE (email)
+);
+CREATE INDEX IF NOT EXISTS idx_passenger_train_section_seat ON passenger (train_id, section, seat_number);
+
+CREATE TABLE IF NOT EXISTS receipt (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    from_station VARCHAR(255),
+    to_station VARCHAR(255),
+    user_id BIGINT NOT NULL,
+    price DECIMAL(19, 2),
+    CONSTRAINT uk_receipt_user UNIQUE (user_id),
+    CONSTRAINT fk_receipt_user FOREIGN KEY (user_id) REFERENCES passenger (id) ON DELETE CASCADE
+);
@@ -0,0 +1,157 @@
+package com.cloudbees.assessment.admission;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.exception.TooManyRequestsException;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.service.SeatingManagementService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.cloudbees.assessment.enums.Section.SECTION_A;
+import static com.cloudbees.assessment.enums.Section.SECTION_B;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionGateTest {
+
+    private SeatingProperties properties;
+    private TrainInventoryRegistry registry;
+    private long now;
+    private AdmissionGate admissionGate;
+
+    // Two trains with two seats in each of two sections, two submits a second with a burst of two
+    @BeforeEach
+    void setUp() {
+        properties = new SeatingProperties();
+        properties.getTrains().add(train("T1"));
+        properties.getTrains().add(train("T2"));
+        properties.getAdmission().setRatePerSecond(2);
+        properties.getAdmission().setBurst(2);
+        properties.getAdmission().setMaxInFlightPerTrain(2);
+        properties.getAdmission().setRetryAfterSeconds(3);
+        registry = new TrainInventoryRegistry(properties);
+        now = TimeUnit.SECONDS.toNanos(100);
+        admissionGate = new AdmissionGate(properties, registry, () -> now);
+    }
+
+    // fail case if the burst of the section is used up, until the bucket refills
+    @Test
+    void submitsOverTheRateAreRejectedUntilRefilled() throws CustomCloudBeesException {
+        admissionGate.admit("T1", request(SECTION_A)).close();
+        admissionGate.admit("T1", request(SECTION_A)).close();
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class,
+                () -> admissionGate.admit("T1", request(SECTION_A)));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getHttpStatus());
+        assertEquals(1, e.getRetryAfterSeconds());
+        assertEquals(1, admissionGate.getRateLimited());
+
+        // Other sections and trains have their own buckets
+        admissionGate.admit("T1", request(SECTION_B)).close();
+        admissionGate.admit("T2", request(SECTION_A)).close();
+
+        now += TimeUnit.MILLISECONDS.toNanos(500);
+        admissionGate.admit("T1", request(SECTION_A)).close();
+        assertThrows(TooManyRequestsException.class, () -> admissionGate.admit("T1", request(SECTION_A)));
+    }
+
+    // fail case if the train already has as many submits being booked as its cap
+    @Test
+    void submitsOverTheInFlightCapAreRejectedUntilOneIsDone() throws CustomCloudBeesException {
+        AdmissionGate.Permit first = admissionGate.admit("T1", request(SECTION_A));
+        AdmissionGate.Permit second = admissionGate.admit("T1", request(SECTION_B));
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class,
+                () -> admissionGate.admit("T1", request(null)));
+        assertEquals(3, e.getRetryAfterSeconds());
+        assertEquals(1, admissionGate.getOverCapacity());
+
+        // A hot train does not take the slots of another
+        admissionGate.admit("T2", request(null)).close();
+
+        first.close();
+        admissionGate.admit("T1", request(null)).close();
+        second.close();
+    }
+
+    // a submit turned away by the cap keeps the rate untouched and one turned away by the rate frees its slot
+    @Test
+    void rejectedSubmitsUseNeitherTheRateNorASlot() throws CustomCloudBeesException {
+        AdmissionGate.Permit first = admissionGate.admit("T1", request(SECTION_A));
+        AdmissionGate.Permit second = admissionGate.admit("T1", request(SECTION_B));
+        for (int i = 0; i < 3; i++) {
+            assertThrows(TooManyRequestsException.class, () -> admissionGate.admit("T1", request(null)));
+        }
+        assertEquals(3, admissionGate.getOverCapacity());
+        first.close();
+
+        // The burst of submits without a section is still whole
+        admissionGate.admit("T1", request(null)).close();
+        admissionGate.admit("T1", request(null)).close();
+        assertThrows(TooManyRequestsException.class, () -> admissionGate.admit("T1", request(null)));
+        assertEquals(1, admissionGate.getRateLimited());
+        admissionGate.admit("T1", request(SECTION_A)).close();
+        second.close();
+    }
+
+    // fail case if no vacant seat matches the request, with the message of the booking
+    @Test
+    void soldOutSubmitsAreRejectedWithoutUsingTheRate() throws CustomCloudBeesException {
+        SeatInventory seats = registry.find("T1").getSeats();
+        assertTrue(seats.claim(1));
+        assertTrue(seats.claim(2));
+
+        CustomCloudBeesException e = assertThrowsExactly(CustomCloudBeesException.class,
+                () -> admissionGate.admit("T1", request(SECTION_A)));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getHttpStatus());
+        assertEquals(SeatingManagementService.NO_MATCHING_SEAT_MESSAGE, e.getErrorMessage());
+        assertThrowsExactly(CustomCloudBeesException.class, () -> admissionGate.admit("T1", request(SECTION_A)));
+        assertEquals(2, admissionGate.getSoldOut());
+        assertEquals(0, admissionGate.getRateLimited());
+
+        assertTrue(seats.claim(3));
+        assertTrue(seats.claim(4));
+        e = assertThrowsExactly(CustomCloudBeesException.class, () -> admissionGate.admit("T1", request(null)));
+        assertEquals(SeatingManagementService.NO_SEAT_MESSAGE, e.getErrorMessage());
+    }
+
+    @Test
+    void disabledGateAndUnknownTrainsAdmitEverySubmit() throws CustomCloudBeesException {
+        for (int i = 0; i < 10; i++) {
+            admissionGate.admit("T9", request(SECTION_A));
+        }
+        properties.getAdmission().setEnabled(false);
+        admissionGate = new AdmissionGate(properties, registry, () -> now);
+        for (int i = 0; i < 10; i++) {
+            admissionGate.admit("T1", request(SECTION_A));
+        }
+        assertEquals(0, admissionGate.getRateLimited() + admissionGate.getOverCapacity());
+    }
+
+    private static ReceiptSubmitRequest request(Section section) {
+        return new ReceiptSubmitRequest("pune", "delhi", "first", "last", "abc@gmail.com", null, null, section,
+                null);
+    }
+
+    private static SeatingProperties.Train train(String id) {
+        SeatingProperties.Coach coach = new SeatingProperties.Coach();
+        coach.setId("C1");
+        coach.getSections().add(sectionSeats(SECTION_A));
+        coach.getSections().add(sectionSeats(SECTION_B));
+        SeatingProperties.Train train = new SeatingProperties.Train();
+        train.setId(id);
+        train.getCoaches().add(coach);
+        return train;
+    }
+
+    private static SeatingProperties.SectionSeats sectionSeats(Section section) {
+        SeatingProperties.SectionSeats seats = new SeatingProperties.SectionSeats();
+        seats.setSection(section);
+        seats.setSeats(2);
+        return seats;
+    }
+}
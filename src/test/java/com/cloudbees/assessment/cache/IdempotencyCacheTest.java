@@ -0,0 +1,209 @@
+package com.cloudbees.assessment.cache;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyCacheTest {
+
+    private static final ReceiptSubmitRequest REQUEST = new ReceiptSubmitRequest("pune", "delhi", "first", "last",
+            "abc1@gmail.com", null, null);
+
+    @Test
+    void retryGetsStoredReceipt() throws CustomCloudBeesException {
+        IdempotencyCache cache = newCache(86_400, 10);
+        AtomicInteger submits = new AtomicInteger();
+        ReceiptResponse first = cache.submit("key-1", REQUEST, () -> submit(submits));
+        ReceiptResponse retry = cache.submit("key-1", REQUEST, () -> submit(submits));
+
+        assertSame(first, retry);
+        assertEquals(1, submits.get());
+        assertEquals(1, cache.getReplays());
+    }
+
+    // a retry arriving while the first submit is running waits for it instead of booking again
+    @Test
+    void concurrentRetryWaitsForFirstSubmit() throws Exception {
+        IdempotencyCache cache = newCache(86_400, 10);
+        AtomicInteger submits = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<ReceiptResponse> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache.submit("key-1", REQUEST, () -> {
+                    started.countDown();
+                    await(finish);
+                    return submit(submits);
+                });
+            } catch (CustomCloudBeesException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<ReceiptResponse> retry = CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache.submit("key-1", REQUEST, () -> submit(submits));
+            } catch (CustomCloudBeesException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertFalse(retry.isDone());
+        finish.countDown();
+
+        assertSame(first.get(10, TimeUnit.SECONDS), retry.get(10, TimeUnit.SECONDS));
+        assertEquals(1, submits.get());
+    }
+
+    @Test
+    void failedSubmitRunsAgainOnRetry() throws CustomCloudBeesException {
+        IdempotencyCache cache = newCache(86_400, 10);
+        AtomicInteger submits = new AtomicInteger();
+        assertThrowsExactly(CustomCloudBeesException.class, () -> cache.submit("key-1", REQUEST, () -> {
+            throw new CustomCloudBeesException(HttpStatus.UNPROCESSABLE_ENTITY, "All seats have been filled");
+        }));
+        cache.submit("key-1", REQUEST, () -> submit(submits));
+        assertEquals(1, submits.get());
+    }
+
+    // fail case if the key of one submit is sent with another request
+    @Test
+    void keyReusedForDifferentRequestIsRejected() throws CustomCloudBeesException {
+        IdempotencyCache cache = newCache(86_400, 10);
+        AtomicInteger submits = new AtomicInteger();
+        cache.submit("key-1", REQUEST, () -> submit(submits));
+        ReceiptSubmitRequest other = new ReceiptSubmitRequest("pune", "delhi", "first", "last", "abc2@gmail.com",
+                null, null);
+        CustomCloudBeesException e = assertThrowsExactly(CustomCloudBeesException.class,
+                () -> cache.submit("key-1", other, () -> submit(submits)));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getHttpStatus());
+        assertEquals(1, submits.get());
+    }
+
+    @Test
+    void expiredKeyRunsAgain() throws CustomCloudBeesException {
+        IdempotencyCache cache = newCache(0, 10);
+        AtomicInteger submits = new AtomicInteger();
+        cache.submit("key-1", REQUEST, () -> submit(submits));
+        cache.submit("key-1", REQUEST, () -> submit(submits));
+        assertEquals(2, submits.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void oldestKeyIsEvictedWhenFull() throws CustomCloudBeesException {
+        IdempotencyCache cache = newCache(86_400, 2);
+        AtomicInteger submits = new AtomicInteger();
+        cache.submit("key-1", REQUEST, () -> submit(submits));
+        cache.submit("key-2", REQUEST, () -> submit(submits));
+        cache.submit("key-3", REQUEST, () -> submit(submits));
+        assertEquals(2, cache.size());
+
+        cache.submit("key-3", REQUEST, () -> submit(submits));
+        assertEquals(3, submits.get());
+        cache.submit("key-1", REQUEST, () -> submit(submits));
+        assertEquals(4, submits.get());
+    }
+
+    // a submit still running is not evicted when later keys fill the cache, its retry still waits for it
+    @Test
+    void runningSubmitIsNotEvictedWhenFull() throws Exception {
+        IdempotencyCache cache = newCache(86_400, 2);
+        AtomicInteger submits = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<ReceiptResponse> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache.submit("key-1", REQUEST, () -> {
+                    started.countDown();
+                    await(finish);
+                    return submit(submits);
+                });
+            } catch (CustomCloudBeesException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        cache.submit("key-2", REQUEST, () -> submit(submits));
+        cache.submit("key-3", REQUEST, () -> submit(submits));
+        cache.submit("key-4", REQUEST, () -> submit(submits));
+        assertEquals(4, cache.size());
+
+        CompletableFuture<ReceiptResponse> retry = CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache.submit("key-1", REQUEST, () -> submit(submits));
+            } catch (CustomCloudBeesException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        finish.countDown();
+        assertSame(first.get(10, TimeUnit.SECONDS), retry.get(10, TimeUnit.SECONDS));
+        assertEquals(4, submits.get());
+
+        // once it completed the bound applies again
+        cache.submit("key-5", REQUEST, () -> submit(submits));
+        assertEquals(2, cache.size());
+    }
+
+    // fail case a retry waiting longer than the replay wait for the first submit is answered 409
+    @Test
+    void retryWaitingTooLongIsRejected() throws Exception {
+        IdempotencyCache cache = newCache(86_400, 10, 50);
+        AtomicInteger submits = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<ReceiptResponse> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache.submit("key-1", REQUEST, () -> {
+                    started.countDown();
+                    await(finish);
+                    return submit(submits);
+                });
+            } catch (CustomCloudBeesException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        CustomCloudBeesException e = assertThrowsExactly(CustomCloudBeesException.class,
+                () -> cache.submit("key-1", REQUEST, () -> submit(submits)));
+        assertEquals(HttpStatus.CONFLICT, e.getHttpStatus());
+        finish.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        assertEquals(1, submits.get());
+    }
+
+    private static ReceiptResponse submit(AtomicInteger submits) {
+        submits.incrementAndGet();
+        return new ReceiptResponse("pune", "delhi", null, new BigDecimal(20));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static IdempotencyCache newCache(long ttlSeconds, int maxEntries) {
+        return newCache(ttlSeconds, maxEntries, new SeatingProperties.Idempotency().getReplayWaitMs());
+    }
+
+    private static IdempotencyCache newCache(long ttlSeconds, int maxEntries, long replayWaitMs) {
+        SeatingProperties properties = new SeatingProperties();
+        properties.getIdempotency().setTtlSeconds(ttlSeconds);
+        properties.getIdempotency().setMaxEntries(maxEntries);
+        properties.getIdempotency().setReplayWaitMs(replayWaitMs);
+        return new IdempotencyCache(properties);
+    }
+}
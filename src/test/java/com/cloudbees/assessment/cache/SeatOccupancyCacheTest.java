@@ -0,0 +1,85 @@
+package com.cloudbees.assessment.cache;
+
+import com.cloudbees.assessment.api.response.UserSeatResponse;
+import com.cloudbees.assessment.config.SeatingProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.cloudbees.assessment.enums.Section.SECTION_A;
+import static com.cloudbees.assessment.enums.Section.SECTION_B;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatOccupancyCacheTest {
+
+    private static final List<UserSeatResponse> USERS = List.of(
+            new UserSeatResponse(1L, "abc1@gmail.com", 1, SECTION_A));
+
+    @Test
+    void secondReadIsServedFromCache() {
+        SeatOccupancyCache cache = newCache(10);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("T1", SECTION_A, () -> load(loads));
+        List<UserSeatResponse> actual = cache.get("T1", SECTION_A, () -> load(loads));
+
+        assertEquals(1, loads.get());
+        assertEquals(USERS.get(0).getEmail(), actual.get(0).getEmail());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void invalidateOnlyDropsChangedSection() {
+        SeatOccupancyCache cache = newCache(10);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("T1", SECTION_A, () -> load(loads));
+        cache.get("T1", SECTION_B, () -> load(loads));
+        cache.invalidate("T1", SECTION_A);
+        cache.get("T1", SECTION_A, () -> load(loads));
+        cache.get("T1", SECTION_B, () -> load(loads));
+
+        assertEquals(3, loads.get());
+    }
+
+    // a load that raced with a change must not be cached
+    @Test
+    void loadOverlappingChangeIsNotCached() {
+        SeatOccupancyCache cache = newCache(10);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("T1", SECTION_A, () -> {
+            cache.invalidate("T1", SECTION_A);
+            return load(loads);
+        });
+        cache.get("T1", SECTION_A, () -> load(loads));
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    void leastRecentlyReadSectionIsEvicted() {
+        SeatOccupancyCache cache = newCache(2);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("T1", SECTION_A, () -> load(loads));
+        cache.get("T2", SECTION_A, () -> load(loads));
+        cache.get("T1", SECTION_A, () -> load(loads));
+        cache.get("T3", SECTION_A, () -> load(loads));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        cache.get("T1", SECTION_A, () -> load(loads));
+        assertEquals(3, loads.get());
+    }
+
+    private static List<UserSeatResponse> load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return USERS;
+    }
+
+    private static SeatOccupancyCache newCache(int maxEntries) {
+        SeatingProperties seatingProperties = new SeatingProperties();
+        seatingProperties.getCache().setMaxEntries(maxEntries);
+        return new SeatOccupancyCache(seatingProperties);
+    }
+}
@@ -0,0 +1,99 @@
+package com.cloudbees.assessment.export;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.cloudbees.assessment.enums.Section.SECTION_A;
+import static com.cloudbees.assessment.enums.Section.SECTION_B;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiptExportWriterTest {
+
+    @Test
+    void exportIsReadBackAcrossChunks() throws IOException {
+        List<ExportedReceipt> receipts = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            receipts.add(new ExportedReceipt(id * 50, 1000 - id, "first" + id, "last" + id, "abc" + id + "@gmail.com",
+                    id % 2 == 0 ? "T1" : "T2", (int) id, id % 2 == 0 ? SECTION_A : SECTION_B, "london", "bristol",
+                    new BigDecimal("20.5")));
+        }
+        // a receipt without seat, section or price and with names outside ascii
+        receipts.add(new ExportedReceipt(7L, 3L, "Zoë", null, "zoe@gmail.com", null, null, null, "pune", null,
+                null));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReceiptExportWriter writer = new ReceiptExportWriter(out, 4, 2);
+        for (ExportedReceipt receipt : receipts) {
+            writer.write(receipt);
+        }
+        writer.finish();
+        assertEquals(receipts.size(), writer.getRows());
+
+        ReceiptExportReader reader = new ReceiptExportReader(new ByteArrayInputStream(out.toByteArray()));
+        for (ExportedReceipt expected : receipts) {
+            ExportedReceipt actual = reader.read();
+            assertEquals(expected.receiptId(), actual.receiptId());
+            assertEquals(expected.userId(), actual.userId());
+            assertEquals(expected.firstName(), actual.firstName());
+            assertEquals(expected.lastName(), actual.lastName());
+            assertEquals(expected.email(), actual.email());
+            assertEquals(expected.trainId(), actual.trainId());
+            assertEquals(expected.seatNumber(), actual.seatNumber());
+            assertEquals(expected.section(), actual.section());
+            assertEquals(expected.fromStation(), actual.fromStation());
+            assertEquals(expected.toStation(), actual.toStation());
+            assertEquals(expected.price() == null ? null : expected.price().setScale(2), actual.price());
+        }
+        assertNull(reader.read());
+    }
+
+    // station names are written once, later rows only carry their dictionary id
+    @Test
+    void repeatedStationsAreWrittenOnce() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReceiptExportWriter writer = new ReceiptExportWriter(out, 1000, 2);
+        for (long id = 1; id <= 1000; id++) {
+            writer.write(new ExportedReceipt(id, id, "f", "l", "e", "T1", 1, SECTION_A, "london-paddington",
+                    "bristol-temple-meads", new BigDecimal(20)));
+        }
+        writer.finish();
+        String export = new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+        assertEquals(export.indexOf("london-paddington"), export.lastIndexOf("london-paddington"));
+        assertTrue(out.size() < 1000 * 20);
+    }
+
+    // fail case if the export was cut off before its end
+    @Test
+    void truncatedExportIsDetected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReceiptExportWriter writer = new ReceiptExportWriter(out, 2, 2);
+        for (long id = 1; id <= 3; id++) {
+            writer.write(new ExportedReceipt(id, id, "f", "l", "e", "T1", 1, SECTION_A, "a", "b", BigDecimal.ONE));
+        }
+        byte[] unfinished = out.toByteArray();
+
+        ReceiptExportReader reader = new ReceiptExportReader(new ByteArrayInputStream(unfinished));
+        reader.read();
+        reader.read();
+        assertThrows(EOFException.class, reader::read);
+        assertThrows(IOException.class, () -> new ReceiptExportReader(new ByteArrayInputStream(
+                Arrays.copyOf(unfinished, 3))));
+    }
+
+    // fail case if a price has more decimals than the export keeps
+    @Test
+    void priceIsNeverRounded() throws IOException {
+        ReceiptExportWriter writer = new ReceiptExportWriter(new ByteArrayOutputStream(), 1, 2);
+        assertThrows(ArithmeticException.class, () -> writer.write(new ExportedReceipt(1L, 1L, "f", "l", "e", "T1",
+                1, SECTION_A, "a", "b", new BigDecimal("20.125"))));
+    }
+}
@@ -0,0 +1,55 @@
+package com.cloudbees.assessment.hold;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalTimingWheelTest {
+
+    @Test
+    void timeoutExpiresOnceItsTickHasPassed() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 4, 1000);
+        wheel.schedule("a", 1025);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(1024, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(1030, expired::add);
+        assertEquals(List.of("a"), expired);
+        wheel.advance(2000, expired::add);
+        assertEquals(1, expired.size());
+    }
+
+    // timeouts beyond the span of the first wheel are cascaded down from the higher wheels
+    @Test
+    void distantTimeoutsCascadeThroughHigherWheels() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(10, 4, 0);
+        long[] expiries = {5, 45, 170, 640, 2555};
+        for (long expiresAt : expiries) {
+            wheel.schedule(expiresAt, expiresAt);
+        }
+        List<Long> expired = new ArrayList<>();
+        for (long now = 0; now <= 3000; now += 10) {
+            long time = now;
+            wheel.advance(now, expiresAt -> {
+                assertTrue(time >= expiresAt && time <= expiresAt + 10);
+                expired.add(expiresAt);
+            });
+        }
+        assertEquals(List.of(5L, 45L, 170L, 640L, 2555L), expired);
+    }
+
+    @Test
+    void cancelledTimeoutNeverExpires() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 4, 0);
+        wheel.schedule("kept", 500);
+        wheel.schedule("cancelled", 500).cancel();
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(1000, expired::add);
+        assertEquals(List.of("kept"), expired);
+    }
+}
@@ -0,0 +1,194 @@
+package com.cloudbees.assessment.inventory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatInventoryTest {
+
+    @Test
+    void claimFirstFreeHandsOutSeatsInOrder() {
+        SeatInventory inventory = new SeatInventory(3);
+        assertEquals(1, inventory.claimFirstFree());
+        assertEquals(2, inventory.claimFirstFree());
+        assertEquals(3, inventory.claimFirstFree());
+        assertEquals(SeatInventory.NO_SEAT, inventory.claimFirstFree());
+        assertEquals(0, inventory.vacantCount());
+    }
+
+    @Test
+    void claimAndReleaseSingleSeat() {
+        SeatInventory inventory = new SeatInventory(130);
+        assertTrue(inventory.isFree(65));
+        assertTrue(inventory.claim(65));
+        assertFalse(inventory.claim(65));
+        assertFalse(inventory.isFree(65));
+        assertEquals(129, inventory.vacantCount());
+
+        assertTrue(inventory.release(65));
+        assertFalse(inventory.release(65));
+        assertTrue(inventory.isFree(65));
+        assertEquals(130, inventory.vacantCount());
+    }
+
+    // seats outside the train are never free and can not be claimed
+    @Test
+    void seatsOutsideCapacityAreRejected() {
+        SeatInventory inventory = new SeatInventory(10);
+        assertFalse(inventory.claim(0));
+        assertFalse(inventory.claim(11));
+        assertFalse(inventory.isFree(64));
+        assertFalse(inventory.release(11));
+    }
+
+    @Test
+    void releasedSeatIsReusedBeforeHigherSeats() {
+        SeatInventory inventory = new SeatInventory(200);
+        for (int i = 0; i < 150; i++) {
+            inventory.claimFirstFree();
+        }
+        inventory.release(3);
+        assertEquals(3, inventory.claimFirstFree());
+        assertEquals(151, inventory.claimFirstFree());
+    }
+
+    // a seat is sold again to a passenger whose journey does not overlap
+    @Test
+    void seatIsReusedForNonOverlappingLegs() {
+        SeatInventory inventory = new SeatInventory(1, 4);
+        long firstHalf = 0b0011;
+        long secondHalf = 0b1100;
+        long middle = 0b0110;
+
+        assertEquals(1, inventory.claimFirstFree(firstHalf));
+        assertEquals(0, inventory.vacantCount());
+        assertEquals(SeatInventory.NO_SEAT, inventory.claimFirstFree(middle));
+        assertEquals(1, inventory.claimFirstFree(secondHalf));
+        assertEquals(SeatInventory.NO_SEAT, inventory.claimFirstFree(secondHalf));
+        assertEquals(inventory.fullRouteMask(), inventory.bookedSegments(1));
+
+        assertTrue(inventory.release(1, firstHalf));
+        assertTrue(inventory.isFree(1, firstHalf));
+        assertFalse(inventory.isFree(1));
+        assertTrue(inventory.release(1, secondHalf));
+        assertTrue(inventory.isFree(1));
+        assertEquals(1, inventory.vacantCount());
+    }
+
+    @Test
+    void legSearchSkipsSeatsBookedOnItsSegments() {
+        SeatInventory inventory = new SeatInventory(100, 3);
+        for (int seat = 1; seat <= 70; seat++) {
+            assertTrue(inventory.claim(seat, 0b010));
+        }
+        assertEquals(1, inventory.claimFirstFree(0b001));
+        assertEquals(71, inventory.claimFirstFree(0b011));
+        assertEquals(72, inventory.claimFirstFree());
+    }
+
+    @Test
+    void vacantCountOfSeatRangeSpansWords() {
+        SeatInventory inventory = new SeatInventory(200, 2);
+        inventory.claim(10, 0b01);
+        inventory.claim(64, 0b10);
+        inventory.claim(65);
+        inventory.claim(150);
+        assertEquals(117, inventory.vacantCount(1, 120));
+        assertEquals(2, inventory.vacantCount(63, 66));
+        assertEquals(50, inventory.vacantCount(151, 250));
+        assertEquals(inventory.vacantCount(), inventory.vacantCount(1, 200));
+    }
+
+    // a seat only leaves the vacant count of its group once booked on some segment and comes back once fully free
+    @Test
+    void vacantCountOfGroupFollowsClaimsAndReleases() {
+        SeatInventory inventory = new SeatInventory(100, 2, 2, seatNumber -> seatNumber <= 60 ? 0 : 1);
+        inventory.claim(10, 0b01);
+        inventory.claim(10, 0b10);
+        inventory.claim(61);
+        assertEquals(59, inventory.vacantCountOfGroup(0));
+        assertEquals(39, inventory.vacantCountOfGroup(1));
+        assertEquals(0, inventory.vacantCountOfGroup(2));
+
+        inventory.release(10, 0b01);
+        assertEquals(59, inventory.vacantCountOfGroup(0));
+        inventory.release(10, 0b10);
+        inventory.release(61);
+        assertEquals(60, inventory.vacantCountOfGroup(0));
+        assertEquals(inventory.vacantCount(61, 100), inventory.vacantCountOfGroup(1));
+    }
+
+    @Test
+    void claimRunFindsConsecutiveSeatsAcrossWords() {
+        SeatInventory inventory = new SeatInventory(200);
+        for (int seat = 1; seat <= 62; seat++) {
+            inventory.claim(seat);
+        }
+        inventory.claim(70);
+        assertEquals(63, inventory.claimRun(inventory.fullRouteMask(), 4, 1, 200));
+        assertEquals(71, inventory.claimRun(inventory.fullRouteMask(), 5, 1, 200));
+        assertEquals(67, inventory.claimRun(inventory.fullRouteMask(), 3, 60, 69));
+        assertEquals(SeatInventory.NO_SEAT, inventory.claimRun(inventory.fullRouteMask(), 2, 60, 69));
+        assertEquals(76, inventory.claimRun(inventory.fullRouteMask(), 64, 1, 200));
+        assertEquals(SeatInventory.NO_SEAT, inventory.claimRun(inventory.fullRouteMask(), 64, 1, 200));
+        assertEquals(61, inventory.vacantCount());
+    }
+
+    @Test
+    void claimFirstFreePicksOnlyAllowedSeats() {
+        SeatInventory inventory = new SeatInventory(130);
+        long[] allowed = new long[3];
+        allowed[1] = 1L << 5;
+        allowed[2] = 1L;
+        assertEquals(70, inventory.claimFirstFree(inventory.fullRouteMask(), allowed));
+        assertEquals(129, inventory.claimFirstFree(inventory.fullRouteMask(), allowed));
+        assertEquals(SeatInventory.NO_SEAT, inventory.claimFirstFree(inventory.fullRouteMask(), allowed));
+    }
+
+    // fail case if a leg has no segment or segments past the end of the route
+    @Test
+    void invalidLegIsRejected() {
+        SeatInventory inventory = new SeatInventory(10, 3);
+        assertThrows(IllegalArgumentException.class, () -> inventory.claim(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> inventory.claimFirstFree(0b1000));
+    }
+
+    // every seat must be handed out exactly once when many threads book at the same time
+    @Test
+    void concurrentClaimsNeverDoubleAllocate() throws InterruptedException {
+        int capacity = 10_000;
+        int threads = 8;
+        SeatInventory inventory = new SeatInventory(capacity);
+        Set<Integer> claimed = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                int seat;
+                while ((seat = inventory.claimFirstFree()) != SeatInventory.NO_SEAT) {
+                    if (!claimed.add(seat)) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(0, duplicates.get());
+        assertEquals(capacity, claimed.size());
+        assertEquals(0, inventory.vacantCount());
+    }
+}
@@ -0,0 +1,76 @@
+package com.cloudbees.assessment.inventory;
+
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SeatInventoryWarmupTest {
+
+    @Test
+    void storedBookingsAreClaimedInParallelShards() throws Exception {
+        SeatingProperties properties = properties();
+        properties.getWarmup().setMinRowsPerShard(2);
+        TrainInventoryRegistry registry = new TrainInventoryRegistry(properties);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findFirstId()).thenReturn(1L);
+        when(userRepository.findLastId()).thenReturn(4L);
+        when(userRepository.count()).thenReturn(4L);
+        when(userRepository.findOccupiedSeats(1L, 2L)).thenReturn(List.of(
+                new OccupiedSeat("T1", 1, "london", "reading"), new OccupiedSeat("T1", 2, null, null)));
+        when(userRepository.findOccupiedSeats(3L, 4L)).thenReturn(List.of(
+                new OccupiedSeat("T1", 1, "reading", "bristol"), new OccupiedSeat("T1", 3, "london", "bristol")));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        new SeatInventoryWarmup(userRepository, registry, properties, meterRegistry).afterSingletonsInstantiated();
+
+        SeatInventory seats = registry.find("T1").getSeats();
+        assertEquals(seats.fullRouteMask(), seats.bookedSegments(1));
+        assertEquals(seats.fullRouteMask(), seats.bookedSegments(2));
+        assertEquals(seats.fullRouteMask(), seats.bookedSegments(3));
+        assertTrue(seats.isFree(4));
+        assertEquals(1, meterRegistry.get("seating.inventory.warmup").timer().count());
+    }
+
+    // fail case a stored booking overlapping another one on its seat is skipped, not loaded twice
+    @Test
+    void overlappingBookingIsSkipped() throws Exception {
+        SeatingProperties properties = properties();
+        TrainInventoryRegistry registry = new TrainInventoryRegistry(properties);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findFirstId()).thenReturn(1L);
+        when(userRepository.findLastId()).thenReturn(2L);
+        when(userRepository.findOccupiedSeats(1L, 2L)).thenReturn(List.of(
+                new OccupiedSeat("T1", 1, "london", "bristol"), new OccupiedSeat("T1", 1, "reading", "bristol")));
+
+        new SeatInventoryWarmup(userRepository, registry, properties, new SimpleMeterRegistry())
+                .afterSingletonsInstantiated();
+
+        SeatInventory seats = registry.find("T1").getSeats();
+        assertEquals(seats.fullRouteMask(), seats.bookedSegments(1));
+        assertEquals(9, seats.vacantCount());
+    }
+
+    private static SeatingProperties properties() {
+        SeatingProperties.SectionSeats seats = new SeatingProperties.SectionSeats();
+        seats.setSection(Section.SECTION_A);
+        seats.setSeats(10);
+        SeatingProperties.Coach coach = new SeatingProperties.Coach();
+        coach.setId("C1");
+        coach.setSections(List.of(seats));
+        SeatingProperties.Train train = new SeatingProperties.Train();
+        train.setId("T1");
+        train.setStations(List.of("london", "reading", "bristol"));
+        train.setCoaches(List.of(coach));
+        SeatingProperties properties = new SeatingProperties();
+        properties.setTrains(List.of(train));
+        return properties;
+    }
+}
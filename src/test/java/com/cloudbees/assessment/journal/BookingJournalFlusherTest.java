@@ -0,0 +1,74 @@
+package com.cloudbees.assessment.journal;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.SeatUpdateRequest;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.entity.User;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.repository.UserRepository;
+import com.cloudbees.assessment.service.SeatingManagementService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"seating.journal.enabled=true", "seating.journal.size-mb=1",
+        "seating.journal.flush-interval-ms=3600000", "spring.datasource.url=jdbc:h2:mem:journal"})
+class BookingJournalFlusherTest {
+
+    @TempDir
+    static Path dir;
+
+    @Autowired
+    private SeatingManagementService seatingManagementService;
+    @Autowired
+    private BookingJournalFlusher bookingJournalFlusher;
+    @Autowired
+    private UserRepository userRepository;
+
+    @DynamicPropertySource
+    static void journalPath(DynamicPropertyRegistry registry) {
+        registry.add("seating.journal.path", () -> dir.resolve("booking.journal").toString());
+    }
+
+    // an acknowledged booking is stored with the ids it was acknowledged with
+    @Test
+    void bookingIsStoredWithItsAcknowledgedIds() throws CustomCloudBeesException {
+        ReceiptResponse receipt = seatingManagementService.allocateSeatToUser(request("stored@gmail.com"));
+        Long userId = receipt.getUser().getId();
+        assertNotNull(receipt.getId());
+        assertNotNull(userId);
+        assertEquals("stored@gmail.com", seatingManagementService.getUserReceiptDetails(userId, null).getUser()
+                .getEmail());
+
+        bookingJournalFlusher.flush();
+
+        User user = userRepository.findById(userId).orElseThrow();
+        assertEquals("stored@gmail.com", user.getEmail());
+        assertEquals(receipt.getId(), seatingManagementService.getUserReceiptDetails(userId, null).getId());
+    }
+
+    // a booking still in the journal can be moved and removed
+    @Test
+    void journaledBookingCanBeMovedAndRemoved() throws CustomCloudBeesException {
+        ReceiptResponse receipt = seatingManagementService.allocateSeatToUser(request("moved@gmail.com"));
+        Long userId = receipt.getUser().getId();
+
+        int newSeat = receipt.getUser().getSeatNumber() + 1;
+        assertEquals(newSeat, seatingManagementService.updateUserSeat(new SeatUpdateRequest(userId, newSeat))
+                .getNewSeat());
+        seatingManagementService.removeUser(userId);
+
+        assertTrue(userRepository.findById(userId).isEmpty());
+    }
+
+    private static ReceiptSubmitRequest request(String email) {
+        return new ReceiptSubmitRequest("pune", "delhi", "abc", "xyz", email, null, null);
+    }
+}
@@ -0,0 +1,202 @@
+package com.cloudbees.assessment.journal;
+
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.entity.Receipt;
+import com.cloudbees.assessment.entity.User;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.event.SeatOccupancyChangedEvent;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.repository.ReceiptRepository;
+import com.cloudbees.assessment.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookingJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<Object> events = new ArrayList<>();
+
+    // bookings not stored before a restart are claimed again and stay pending
+    @Test
+    void unstoredBookingsAreReplayedOnStartup() throws Exception {
+        SeatingProperties properties = properties();
+        BookingJournal journal = new BookingJournal(properties, new TrainInventoryRegistry(properties),
+                userRepository(), receiptRepository(), events::add);
+        journal.append(receipt("abc1@gmail.com", 1), 1);
+        journal.append(receipt("abc2@gmail.com", 2), 1);
+        journal.stored(journal.pending(1));
+        journal.close();
+
+        TrainInventoryRegistry registry = new TrainInventoryRegistry(properties);
+        BookingJournal reopened = new BookingJournal(properties, registry, userRepository("abc1@gmail.com"),
+                receiptRepository(), events::add);
+        List<JournaledBooking> pending = reopened.pending(10);
+        reopened.close();
+
+        assertEquals(1, pending.size());
+        assertEquals("abc2@gmail.com", pending.get(0).email());
+        assertEquals(Section.SECTION_A, pending.get(0).section());
+        SeatInventory seats = registry.find("T1").getSeats();
+        assertFalse(seats.isFree(2));
+        assertTrue(seats.isFree(1));
+    }
+
+    // fail case if the user is already booked, in the database or in the journal
+    @Test
+    void duplicateEmailIsRejected() throws Exception {
+        SeatingProperties properties = properties();
+        BookingJournal journal = new BookingJournal(properties, new TrainInventoryRegistry(properties),
+                userRepository("abc1@gmail.com"), receiptRepository(), events::add);
+        journal.append(receipt("abc2@gmail.com", 1), 1);
+
+        CustomCloudBeesException stored = assertThrows(CustomCloudBeesException.class,
+                () -> journal.append(receipt("abc1@gmail.com", 2), 1));
+        CustomCloudBeesException journaled = assertThrows(CustomCloudBeesException.class,
+                () -> journal.append(receipt("abc2@gmail.com", 2), 1));
+        journal.close();
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, stored.getHttpStatus());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, journaled.getHttpStatus());
+    }
+
+    // a booking refused by the database gives its seat and email back
+    @Test
+    void discardedBookingReleasesSeat() throws Exception {
+        SeatingProperties properties = properties();
+        TrainInventoryRegistry registry = new TrainInventoryRegistry(properties);
+        BookingJournal journal = new BookingJournal(properties, registry, userRepository(), receiptRepository(),
+                events::add);
+        registry.find("T1").getSeats().claim(1);
+        journal.append(receipt("abc1@gmail.com", 1), 1);
+
+        journal.discard(journal.pending(1).get(0));
+        journal.append(receipt("abc1@gmail.com", 2), 1);
+        List<JournaledBooking> pending = journal.pending(10);
+        journal.close();
+
+        assertTrue(registry.find("T1").getSeats().isFree(1));
+        assertEquals(1, pending.size());
+        assertEquals(2, pending.get(0).seatNumber());
+        SeatOccupancyChangedEvent released = assertInstanceOf(SeatOccupancyChangedEvent.class, events.get(0));
+        assertEquals(1, released.getSeatNumber());
+        assertFalse(released.isBooked());
+    }
+
+    // a booking has its ids once acknowledged and is found by them until it is stored
+    @Test
+    void acknowledgedBookingHasIdsAndIsFoundUntilStored() throws Exception {
+        SeatingProperties properties = properties();
+        BookingJournal journal = new BookingJournal(properties, new TrainInventoryRegistry(properties),
+                userRepository(), receiptRepository(), events::add);
+        Receipt first = receipt("abc1@gmail.com", 1);
+        Receipt second = receipt("abc2@gmail.com", 2);
+        journal.append(first, 1);
+        journal.append(second, 1);
+
+        assertEquals(1L, first.getId());
+        assertEquals(2L, second.getId());
+        assertEquals(2L, second.getUser().getId());
+        assertEquals("abc2@gmail.com", journal.findPending(2L, null).email());
+        assertEquals(2L, journal.findPending(null, "abc2@gmail.com").toReceipt().getUser().getId());
+
+        journal.stored(journal.pending(1));
+        assertNull(journal.findPending(1L, "abc1@gmail.com"));
+        assertNotNull(journal.findPending(2L, null));
+        journal.close();
+    }
+
+    // replay stops at a torn record and the rest of the file is cleared, later appends are replayed after it
+    @Test
+    void tornRecordEndsReplay() throws Exception {
+        SeatingProperties properties = properties();
+        BookingJournal journal = new BookingJournal(properties, new TrainInventoryRegistry(properties),
+                userRepository(), receiptRepository(), events::add);
+        journal.append(receipt("abc1@gmail.com", 1), 1);
+        journal.append(receipt("abc2@gmail.com", 2), 1);
+        journal.append(receipt("abc3@gmail.com", 3), 1);
+        int secondRecord = journal.pending(10).get(0).endOffset();
+        journal.close();
+        try (FileChannel channel = FileChannel.open(Path.of(properties.getJournal().getPath()),
+                StandardOpenOption.WRITE)) {
+            // Flip a byte of the payload of the second record
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), secondRecord + 12);
+        }
+
+        BookingJournal reopened = new BookingJournal(properties, new TrainInventoryRegistry(properties),
+                userRepository(), receiptRepository(), events::add);
+        List<JournaledBooking> replayed = reopened.pending(10);
+        reopened.append(receipt("abc4@gmail.com", 4), 1);
+        reopened.close();
+        BookingJournal again = new BookingJournal(properties, new TrainInventoryRegistry(properties),
+                userRepository(), receiptRepository(), events::add);
+        List<JournaledBooking> replayedAgain = again.pending(10);
+        again.close();
+
+        assertEquals(List.of("abc1@gmail.com"), replayed.stream().map(JournaledBooking::email).toList());
+        assertEquals(List.of("abc1@gmail.com", "abc4@gmail.com"),
+                replayedAgain.stream().map(JournaledBooking::email).toList());
+    }
+
+    private SeatingProperties properties() {
+        SeatingProperties.SectionSeats seats = new SeatingProperties.SectionSeats();
+        seats.setSection(Section.SECTION_A);
+        seats.setSeats(10);
+        SeatingProperties.Coach coach = new SeatingProperties.Coach();
+        coach.setId("C1");
+        coach.setSections(List.of(seats));
+        SeatingProperties.Train train = new SeatingProperties.Train();
+        train.setId("T1");
+        train.setCoaches(List.of(coach));
+        SeatingProperties properties = new SeatingProperties();
+        properties.setTrains(List.of(train));
+        properties.getJournal().setPath(dir.resolve("booking.journal").toString());
+        properties.getJournal().setSizeMb(1);
+        return properties;
+    }
+
+    private static UserRepository userRepository(String... storedEmails) {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.existsByEmail(anyString()))
+                .thenAnswer(invocation -> List.of(storedEmails).contains(invocation.getArgument(0, String.class)));
+        AtomicLong sequence = new AtomicLong(-49);
+        when(userRepository.nextIdBlock()).thenAnswer(invocation -> sequence.addAndGet(50));
+        return userRepository;
+    }
+
+    private static ReceiptRepository receiptRepository() {
+        ReceiptRepository receiptRepository = mock(ReceiptRepository.class);
+        AtomicLong sequence = new AtomicLong(-49);
+        when(receiptRepository.nextIdBlock()).thenAnswer(invocation -> sequence.addAndGet(50));
+        return receiptRepository;
+    }
+
+    private static Receipt receipt(String email, int seatNumber) {
+        User user = new User();
+        user.setFirstName("abc");
+        user.setLastName("xyz");
+        user.setEmail(email);
+        user.setTrainId("T1");
+        user.setSeatNumber(seatNumber);
+        user.setSection(Section.SECTION_A);
+        return new Receipt("london", "france", user, new BigDecimal(20));
+    }
+}
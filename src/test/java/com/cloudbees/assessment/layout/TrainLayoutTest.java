@@ -0,0 +1,90 @@
+package com.cloudbees.assessment.layout;
+
+import com.cloudbees.assessment.enums.SeatPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.cloudbees.assessment.enums.Section.SECTION_A;
+import static com.cloudbees.assessment.enums.Section.SECTION_B;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrainLayoutTest {
+
+    @Test
+    void seatsAreNumberedAcrossCoachesAndSections() {
+        TrainLayout layout = TrainLayout.builder("T100")
+                .coach("C1").section(SECTION_A, 4).section(SECTION_B, 2)
+                .coach("C2").section(SECTION_B, 3)
+                .build();
+
+        assertEquals(9, layout.getSeatCount());
+        assertEquals(2, layout.getCoaches().size());
+        assertEquals(7, layout.getCoaches().get(1).getFirstSeat());
+        assertEquals(9, layout.getCoaches().get(1).getLastSeat());
+        assertEquals(SECTION_A, layout.sectionOf(1));
+        assertEquals(SECTION_A, layout.sectionOf(4));
+        assertEquals(SECTION_B, layout.sectionOf(5));
+        assertEquals(SECTION_B, layout.sectionOf(9));
+        assertTrue(layout.hasSeat(9));
+        assertFalse(layout.hasSeat(10));
+    }
+
+    @Test
+    void legMaskCoversSegmentsBetweenStations() {
+        TrainLayout layout = TrainLayout.builder("T100")
+                .stations(List.of("london", "reading", "swindon", "bristol"))
+                .coach("C1").section(SECTION_A, 4)
+                .build();
+
+        assertEquals(3, layout.getSegmentCount());
+        assertEquals(0b111, layout.legMask(null, null));
+        assertEquals(0b001, layout.legMask("london", "reading"));
+        assertEquals(0b110, layout.legMask("Reading", "bristol"));
+        assertEquals(0b011, layout.legMask(null, "swindon"));
+        assertEquals(TrainLayout.INVALID_LEG, layout.legMask("bristol", "london"));
+        assertEquals(TrainLayout.INVALID_LEG, layout.legMask("london", "paris"));
+    }
+
+    // a train without a route books every journey for the whole trip
+    @Test
+    void trainWithoutRouteHasSingleSegment() {
+        TrainLayout layout = TrainLayout.builder("T100").coach("C1").section(SECTION_A, 4).build();
+        assertEquals(1, layout.getSegmentCount());
+        assertEquals(1, layout.legMask("pune", "delhi"));
+    }
+
+    // fail case if a section is added before its coach
+    // window seats are the first and last seat of every row, the aisle runs down the middle
+    @Test
+    void allowedSeatsBySectionAndPosition() {
+        TrainLayout layout = TrainLayout.builder("T100")
+                .coach("C1").section(SECTION_A, 6).section(SECTION_B, 6)
+                .coach("C2", 3).section(SECTION_A, 6)
+                .build();
+
+        assertNull(layout.allowedSeats(null, null));
+        assertEquals(seats(1, 4, 5, 8, 9, 12, 13, 15, 16, 18), layout.allowedSeats(null, SeatPosition.WINDOW)[0]);
+        assertEquals(seats(7, 10, 11), layout.allowedSeats(SECTION_B, SeatPosition.AISLE)[0]);
+        assertEquals(seats(1, 2, 3, 4, 5, 6, 13, 14, 15, 16, 17, 18), layout.allowedSeats(SECTION_A, null)[0]);
+    }
+
+    @Test
+    void sectionWithoutCoachIsRejected() {
+        assertThrows(IllegalStateException.class, () -> TrainLayout.builder("T100").section(SECTION_A, 4));
+    }
+
+    // fail case if the train has no seats
+    @Test
+    void emptyTrainIsRejected() {
+        assertThrows(IllegalStateException.class, () -> TrainLayout.builder("T100").coach("C1").build());
+    }
+
+    private static long seats(int... seatNumbers) {
+        long seats = 0;
+        for (int seatNumber : seatNumbers) {
+            seats |= 1L << (seatNumber - 1);
+        }
+        return seats;
+    }
+}
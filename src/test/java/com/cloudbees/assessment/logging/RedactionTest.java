@@ -0,0 +1,34 @@
+package com.cloudbees.assessment.logging;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedactionTest {
+
+    @Test
+    void emailsAreMasked() {
+        assertEquals("Received request for email: p***@mail.com, trainId: T1",
+                Redaction.json("Received request for email: passenger.one+rail@mail.com, trainId: T1"));
+        assertEquals("a***@b.io and c***@d.io", Redaction.json("a@b.io and cd@d.io"));
+    }
+
+    @Test
+    void textIsEscapedForJson() {
+        assertEquals("say \\\"hi\\\"\\n\\tat \\\\x\\u0001", Redaction.json("say \"hi\"\n\tat \\x\u0001"));
+    }
+
+    // a message without email or character to escape is returned as is
+    @Test
+    void plainTextIsNotCopied() {
+        String message = "Received request to delete user for id: 42";
+        assertSame(message, Redaction.json(message));
+        assertEquals("", Redaction.json(null));
+    }
+
+    // fail case if an @ is not part of an email, it is kept
+    @Test
+    void atSignWithoutEmailIsKept() {
+        assertEquals("@ start, end @, a @ b, x@.com", Redaction.json("@ start, end @, a @ b, x@.com"));
+    }
+}
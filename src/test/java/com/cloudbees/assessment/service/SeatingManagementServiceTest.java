@@ -2,19 +2,31 @@ package com.cloudbees.assessment.service;
 
 import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
 import com.cloudbees.assessment.api.request.SeatUpdateRequest;
+import com.cloudbees.assessment.api.response.BatchReceiptResponse;
 import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.api.response.SeatHoldResponse;
 import com.cloudbees.assessment.api.response.SeatUpdateResponse;
+import com.cloudbees.assessment.api.response.UserSeatPageResponse;
 import com.cloudbees.assessment.api.response.UserSeatResponse;
+import com.cloudbees.assessment.cache.SeatOccupancyCache;
 import com.cloudbees.assessment.entity.Receipt;
 import com.cloudbees.assessment.entity.User;
+import com.cloudbees.assessment.enums.SeatPosition;
 import com.cloudbees.assessment.enums.Section;
 import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.cloudbees.assessment.inventory.TrainInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
 import com.cloudbees.assessment.repository.ReceiptRepository;
 import com.cloudbees.assessment.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -33,6 +45,18 @@ class SeatingManagementServiceTest {
     private ReceiptRepository receiptRepository;
     @MockBean
     private UserRepository userRepository;
+    @Autowired
+    private TrainInventoryRegistry trainInventoryRegistry;
+    @Autowired
+    private SeatOccupancyCache seatOccupancyCache;
+
+    // Start every test with an empty inventory for the default train
+    @BeforeEach
+    void resetSeats() {
+        TrainInventory train = trainInventoryRegistry.find(null);
+        trainInventoryRegistry.register(train.getLayout());
+        seatOccupancyCache.clear();
+    }
 
 
     @Test
@@ -40,7 +64,7 @@ class SeatingManagementServiceTest {
         User user = getMockUser();
         Receipt receipt = getMockReceipt(user);
         ReceiptSubmitRequest receiptSubmitRequest = new ReceiptSubmitRequest(receipt.getFromStation(),
-                receipt.getToStation(), user.getFirstName(), user.getLastName(), user.getEmail(), null);
+                receipt.getToStation(), user.getFirstName(), user.getLastName(), user.getEmail(), null, null);
 
         when(receiptRepository.save(receipt)).thenReturn(receipt);
         ReceiptResponse actual = seatingManagementService.allocateSeatToUser(receiptSubmitRequest);
@@ -54,13 +78,15 @@ class SeatingManagementServiceTest {
         User user = getMockUser();
         Receipt receipt = getMockReceipt(user);
         ReceiptSubmitRequest receiptSubmitRequest = new ReceiptSubmitRequest(receipt.getFromStation(),
-                receipt.getToStation(), user.getFirstName(), user.getLastName(), user.getEmail(), null);
+                receipt.getToStation(), user.getFirstName(), user.getLastName(), user.getEmail(), null, null);
 
-        when(userRepository.findByEmail("abc1@gmail.com")).thenReturn(user);
+        int vacantSeats = getDefaultTrainSeats().vacantCount();
+        when(receiptRepository.save(any())).thenThrow(new DataIntegrityViolationException("uk_user_email"));
         assertThrowsExactly(CustomCloudBeesException.class,
                 () -> seatingManagementService.allocateSeatToUser(receiptSubmitRequest), "This user is already inside" +
                         " the " +
                         "train");
+        assertEquals(vacantSeats, getDefaultTrainSeats().vacantCount());
     }
 
     // fail case if there are no vacant seats
@@ -69,19 +95,123 @@ class SeatingManagementServiceTest {
         User user = getMockUser();
         Receipt receipt = getMockReceipt(user);
         ReceiptSubmitRequest receiptSubmitRequest = new ReceiptSubmitRequest(receipt.getFromStation(),
-                receipt.getToStation(), user.getFirstName(), user.getLastName(), user.getEmail(), null);
-        List<Integer> vacantSeats = SeatingManagementService.vacantSeats;
-        vacantSeats.clear();
+                receipt.getToStation(), user.getFirstName(), user.getLastName(), user.getEmail(), null, null);
+        SeatInventory seatInventory = getDefaultTrainSeats();
+        while (seatInventory.claimFirstFree() != SeatInventory.NO_SEAT) {
+            // fill every seat
+        }
         assertThrowsExactly(CustomCloudBeesException.class,
                 () -> seatingManagementService.allocateSeatToUser(receiptSubmitRequest), "All seats have been filled");
     }
 
+    @Test
+    void holdSeatAndConfirm() throws CustomCloudBeesException {
+        User user = getMockUser();
+        Receipt receipt = getMockReceipt(user);
+        ReceiptSubmitRequest receiptSubmitRequest = new ReceiptSubmitRequest(receipt.getFromStation(),
+                receipt.getToStation(), user.getFirstName(), user.getLastName(), user.getEmail(), null, null);
+
+        SeatHoldResponse hold = seatingManagementService.holdSeat(receiptSubmitRequest);
+        assertFalse(getDefaultTrainSeats().isFree(hold.getSeatNumber()));
+        ReceiptResponse actual = seatingManagementService.confirmHold(hold.getHoldId());
+        assertEquals(hold.getSeatNumber(), actual.getUser().getSeatNumber());
+        assertFalse(getDefaultTrainSeats().isFree(hold.getSeatNumber()));
+        verify(receiptRepository).save(any());
+    }
+
+    // fail case a released hold gives its seat back and can not be confirmed any more
+    @Test
+    void releaseHoldFreesSeat() throws CustomCloudBeesException {
+        User user = getMockUser();
+        ReceiptSubmitRequest receiptSubmitRequest = new ReceiptSubmitRequest(null, null, user.getFirstName(),
+                user.getLastName(), user.getEmail(), null, null);
+
+        SeatHoldResponse hold = seatingManagementService.holdSeat(receiptSubmitRequest);
+        seatingManagementService.releaseHold(hold.getHoldId());
+        assertTrue(getDefaultTrainSeats().isFree(hold.getSeatNumber()));
+        CustomCloudBeesException exception = assertThrows(CustomCloudBeesException.class,
+                () -> seatingManagementService.confirmHold(hold.getHoldId()));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getHttpStatus());
+    }
+
+    // a duplicate email fails only its own entry of the batch
+    @Test
+    void allocateSeatsToUsers() {
+        User user = getMockUser();
+        ReceiptSubmitRequest existing = new ReceiptSubmitRequest("pune", "delhi", user.getFirstName(),
+                user.getLastName(), user.getEmail(), null, null);
+        ReceiptSubmitRequest newUser = new ReceiptSubmitRequest("pune", "delhi", "john", "doe", "john@gmail.com",
+                null, null);
+        ReceiptSubmitRequest repeated = new ReceiptSubmitRequest("pune", "delhi", "john", "doe", "john@gmail.com",
+                null, null);
+
+        when(userRepository.findExistingEmails(anyCollection())).thenReturn(List.of(user.getEmail()));
+        BatchReceiptResponse actual = seatingManagementService.allocateSeatsToUsers(List.of(existing, newUser,
+                repeated));
+        assertEquals(1, actual.getSucceeded());
+        assertEquals(2, actual.getFailed());
+        assertEquals(422, actual.getResults().get(0).getStatus());
+        assertEquals(200, actual.getResults().get(1).getStatus());
+        assertEquals("john@gmail.com", actual.getResults().get(1).getReceipt().getUser().getEmail());
+        assertEquals(2, actual.getResults().get(1).getReceipt().getUser().getSeatNumber());
+        assertEquals(422, actual.getResults().get(2).getStatus());
+        verify(receiptRepository, times(1)).saveAllAndFlush(anyList());
+    }
+
+    // the group gets consecutive seats even though seat 2 is free
+    @Test
+    void allocateAdjacentSeatsToUsers() throws CustomCloudBeesException {
+        getMockUser();
+        getDefaultTrainSeats().claim(3);
+        List<ReceiptSubmitRequest> group = List.of(
+                new ReceiptSubmitRequest(null, null, "john", "doe", "john@gmail.com", null, null),
+                new ReceiptSubmitRequest(null, null, "jane", "doe", "jane@gmail.com", null, null),
+                new ReceiptSubmitRequest(null, null, "jim", "doe", "jim@gmail.com", null, null));
+
+        BatchReceiptResponse actual = seatingManagementService.allocateAdjacentSeatsToUsers(group);
+        assertEquals(3, actual.getSucceeded());
+        assertEquals(4, actual.getResults().get(0).getReceipt().getUser().getSeatNumber());
+        assertEquals(5, actual.getResults().get(1).getReceipt().getUser().getSeatNumber());
+        assertEquals(6, actual.getResults().get(2).getReceipt().getUser().getSeatNumber());
+        assertTrue(getDefaultTrainSeats().isFree(2));
+    }
+
+    // fail case if the requested section has no run of free seats long enough for the group
+    @Test
+    void allocateAdjacentSeatsToUsersFailForNoRunInSection() {
+        getMockUser();
+        getDefaultTrainSeats().claim(3);
+        List<ReceiptSubmitRequest> group = List.of(
+                new ReceiptSubmitRequest(null, null, "john", "doe", "john@gmail.com", null, null,
+                        Section.SECTION_A, null),
+                new ReceiptSubmitRequest(null, null, "jane", "doe", "jane@gmail.com", null, null,
+                        Section.SECTION_A, null),
+                new ReceiptSubmitRequest(null, null, "jim", "doe", "jim@gmail.com", null, null,
+                        Section.SECTION_A, null));
+
+        int vacantSeats = getDefaultTrainSeats().vacantCount();
+        CustomCloudBeesException exception = assertThrows(CustomCloudBeesException.class,
+                () -> seatingManagementService.allocateAdjacentSeatsToUsers(group));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, exception.getHttpStatus());
+        assertEquals(vacantSeats, getDefaultTrainSeats().vacantCount());
+    }
+
+    @Test
+    void allocateSeatToUserWithSeatPreference() throws CustomCloudBeesException {
+        ReceiptSubmitRequest receiptSubmitRequest = new ReceiptSubmitRequest(null, null, "john", "doe",
+                "john@gmail.com", null, null, Section.SECTION_B, SeatPosition.WINDOW);
+
+        ReceiptResponse actual = seatingManagementService.allocateSeatToUser(receiptSubmitRequest);
+        assertEquals(8, actual.getUser().getSeatNumber());
+        assertEquals(Section.SECTION_B, actual.getUser().getSection());
+    }
+
     @Test
     void getUserReceiptDetails() throws CustomCloudBeesException {
         User user = getMockUser();
         Receipt receipt = getMockReceipt(user);
         user.setReceipt(receipt);
-        when(userRepository.findByEmailOrId(anyString(), anyLong())).thenReturn(user);
+        when(receiptRepository.findWithUserByEmailOrUserId(anyString(), anyLong())).thenReturn(receipt);
         ReceiptResponse actual = seatingManagementService.getUserReceiptDetails(anyLong(), anyString());
         assertEquals(receipt.getFromStation(), actual.getFrom());
         assertEquals(user.getEmail(), actual.getUser().getEmail());
@@ -94,22 +224,55 @@ class SeatingManagementServiceTest {
         User user = getMockUser();
         Receipt receipt = getMockReceipt(user);
         user.setReceipt(receipt);
-        when(userRepository.findByEmailOrId(anyString(), anyLong())).thenReturn(null);
+        when(receiptRepository.findWithUserByEmailOrUserId(anyString(), anyLong())).thenReturn(null);
         assertThrowsExactly(CustomCloudBeesException.class,
                 () -> seatingManagementService.getUserReceiptDetails(anyLong(), anyString()));
     }
 
     //
     @Test
-    void getUserSeatDetailsBySection() {
+    void getUserSeatDetailsBySection() throws CustomCloudBeesException {
         User user = getMockUser();
         List<User> usersBySection = List.of(user);
-        when(userRepository.findBySection(any())).thenReturn(usersBySection);
-        List<UserSeatResponse> actual = seatingManagementService.getUserSeatDetailsBySection(any());
+        when(userRepository.findByTrainIdAndSection(any(), any())).thenReturn(usersBySection);
+        List<UserSeatResponse> actual = seatingManagementService.getUserSeatDetailsBySection(null, Section.SECTION_A);
         assertEquals(usersBySection.size(), actual.size());
         assertEquals(usersBySection.get(0).getEmail(), actual.get(0).getEmail());
     }
 
+    // section listing is served from the cache until a seat of the section changes
+    @Test
+    void getUserSeatDetailsBySectionIsCachedUntilSeatChanges() throws CustomCloudBeesException {
+        User user = getMockUser();
+        when(userRepository.findByTrainIdAndSection(any(), any())).thenReturn(List.of(user));
+        seatingManagementService.getUserSeatDetailsBySection(null, Section.SECTION_A);
+        seatingManagementService.getUserSeatDetailsBySection(null, Section.SECTION_A);
+        verify(userRepository, times(1)).findByTrainIdAndSection(any(), any());
+
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(user));
+        seatingManagementService.removeUser(user.getId());
+        seatingManagementService.getUserSeatDetailsBySection(null, Section.SECTION_A);
+        verify(userRepository, times(2)).findByTrainIdAndSection(any(), any());
+    }
+
+    @Test
+    void getUserSeatDetailsPageBySection() throws CustomCloudBeesException {
+        UserSeatResponse first = new UserSeatResponse(7L, "a@gmail.com", 3, Section.SECTION_A);
+        UserSeatResponse second = new UserSeatResponse(4L, "b@gmail.com", 5, Section.SECTION_A);
+        when(userRepository.findSeatPage(any(), any(), eq(2), eq(9L), any())).thenReturn(List.of(first, second));
+        UserSeatPageResponse actual = seatingManagementService.getUserSeatDetailsBySection(null, Section.SECTION_A,
+                "2:9", 2);
+        assertEquals(2, actual.getUsers().size());
+        assertEquals("5:4", actual.getNextCursor());
+    }
+
+    // fail case if the cursor was not issued by a previous page
+    @Test
+    void getUserSeatDetailsPageBySectionFailForInvalidCursor() {
+        assertThrowsExactly(CustomCloudBeesException.class,
+                () -> seatingManagementService.getUserSeatDetailsBySection(null, Section.SECTION_A, "abc", 2));
+    }
+
     //
     @Test
     void removeUser() throws CustomCloudBeesException {
@@ -137,6 +300,31 @@ class SeatingManagementServiceTest {
         assertEquals(user.getSeatNumber(), actual.getNewSeat());
     }
 
+    // a move that lost a race with another update of the user is retried on a fresh read
+    @Test
+    void updateUserSeatRetriesOnConcurrentUpdate() throws CustomCloudBeesException {
+        User user = getMockUser();
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(user));
+        when(userRepository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(User.class, 1L))
+                .thenReturn(user);
+        SeatUpdateResponse actual = seatingManagementService.updateUserSeat(new SeatUpdateRequest(user.getId(), 2));
+        assertEquals(2, actual.getNewSeat());
+        verify(userRepository, times(2)).findById(anyLong());
+        assertTrue(getDefaultTrainSeats().isFree(1));
+    }
+
+    // fail case if every attempt of the move conflicts, the claimed seat must be given back
+    @Test
+    void updateUserSeatFailAfterRetries() {
+        User user = getMockUser();
+        when(userRepository.findById(anyLong())).thenReturn(Optional.of(user));
+        when(userRepository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(User.class, 1L));
+        CustomCloudBeesException actual = assertThrowsExactly(CustomCloudBeesException.class,
+                () -> seatingManagementService.updateUserSeat(new SeatUpdateRequest(user.getId(), 2)));
+        assertEquals(HttpStatus.CONFLICT, actual.getHttpStatus());
+        assertTrue(getDefaultTrainSeats().isFree(2));
+    }
+
     // fail cases if new seat is unavailable while updating user
     @Test
     void updateUserSeatFailCase() {
@@ -152,16 +340,20 @@ class SeatingManagementServiceTest {
         return receipt;
     }
 
-    private static User getMockUser() {
+    private SeatInventory getDefaultTrainSeats() {
+        return trainInventoryRegistry.find(null).getSeats();
+    }
+
+    private User getMockUser() {
         User user = new User();
         user.setId(1l);
         user.setFirstName("vaibhav");
         user.setLastName("tomar");
         user.setEmail("abc1@gmail.com");
+        user.setTrainId(trainInventoryRegistry.getDefaultTrainId());
         user.setSeatNumber(1);
         user.setSection(Section.SECTION_A);
-        List<Integer> vacantSeats = SeatingManagementService.vacantSeats;
-        vacantSeats.remove(user.getSeatNumber());
+        getDefaultTrainSeats().claim(user.getSeatNumber());
         return user;
     }
 }
\ No newline at end of file
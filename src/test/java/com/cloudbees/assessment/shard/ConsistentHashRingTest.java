@@ -0,0 +1,47 @@
+package com.cloudbees.assessment.shard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 10_000;
+
+    @Test
+    void keysSpreadEvenlyAcrossNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("node-1", "node-2", "node-3"), 128);
+        Map<String, Integer> keysByNode = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            keysByNode.merge(ring.nodeFor("T" + i), 1, Integer::sum);
+        }
+        assertEquals(3, keysByNode.size());
+        keysByNode.values().forEach(keys -> assertTrue(keys > KEYS / 3 * 0.8 && keys < KEYS / 3 * 1.2));
+    }
+
+    // a new node only takes keys over, no key moves between the nodes that were already there
+    @Test
+    void addingNodeOnlyMovesKeysToIt() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("node-1", "node-2", "node-3"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("node-1", "node-2", "node-3", "node-4"), 128);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String owner = after.nodeFor("T" + i);
+            if (!owner.equals(before.nodeFor("T" + i))) {
+                assertEquals("node-4", owner);
+                moved++;
+            }
+        }
+        assertTrue(moved > KEYS / 4 * 0.8 && moved < KEYS / 4 * 1.2);
+    }
+
+    // fail case if there is no node to own the keys
+    @Test
+    void emptyRingIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of(), 128));
+    }
+}
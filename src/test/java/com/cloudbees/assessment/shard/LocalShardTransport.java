@@ -0,0 +1,73 @@
+package com.cloudbees.assessment.shard;
+
+import com.cloudbees.assessment.api.request.BatchReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.SeatUpdateRequest;
+import com.cloudbees.assessment.api.response.BatchReceiptResponse;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.api.response.SeatHoldResponse;
+import com.cloudbees.assessment.api.response.SeatUpdateResponse;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import org.springframework.http.HttpStatus;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Connects nodes running in the same JVM, calling the owner as {@link HttpShardTransport} would over http.
+ */
+class LocalShardTransport implements ShardTransport {
+
+    private final Map<String, ShardedSeatingService> nodes = new HashMap<>();
+
+    void register(String nodeId, ShardedSeatingService node) {
+        nodes.put(nodeId, node);
+    }
+
+    @Override
+    public ReceiptResponse submitReceipt(String nodeId, ReceiptSubmitRequest request, String idempotencyKey)
+            throws CustomCloudBeesException {
+        return node(nodeId).allocateSeatToUser(request, true, idempotencyKey);
+    }
+
+    @Override
+    public BatchReceiptResponse submitReceipts(String nodeId, BatchReceiptSubmitRequest request)
+            throws CustomCloudBeesException {
+        return node(nodeId).allocateSeatsToUsers(request, true);
+    }
+
+    @Override
+    public SeatHoldResponse holdSeat(String nodeId, ReceiptSubmitRequest request) throws CustomCloudBeesException {
+        return node(nodeId).holdSeat(request, true);
+    }
+
+    @Override
+    public ReceiptResponse confirmHold(String nodeId, String trainId, String holdId)
+            throws CustomCloudBeesException {
+        return node(nodeId).confirmHold(holdId, trainId, true);
+    }
+
+    @Override
+    public void releaseHold(String nodeId, String trainId, String holdId) throws CustomCloudBeesException {
+        node(nodeId).releaseHold(holdId, trainId, true);
+    }
+
+    @Override
+    public void removeUser(String nodeId, String trainId, Long userId) throws CustomCloudBeesException {
+        node(nodeId).removeUser(userId, trainId, true);
+    }
+
+    @Override
+    public SeatUpdateResponse updateUserSeat(String nodeId, String trainId, SeatUpdateRequest request)
+            throws CustomCloudBeesException {
+        return node(nodeId).updateUserSeat(request, trainId, true);
+    }
+
+    private ShardedSeatingService node(String nodeId) throws CustomCloudBeesException {
+        ShardedSeatingService node = nodes.get(nodeId);
+        if (node == null) {
+            throw new CustomCloudBeesException(HttpStatus.SERVICE_UNAVAILABLE, "Node owning the train is unknown");
+        }
+        return node;
+    }
+}
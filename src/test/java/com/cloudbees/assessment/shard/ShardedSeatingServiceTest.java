@@ -0,0 +1,255 @@
+package com.cloudbees.assessment.shard;
+
+import com.cloudbees.assessment.admission.AdmissionGate;
+import com.cloudbees.assessment.api.controller.ReceiptController;
+import com.cloudbees.assessment.api.controller.SeatStreamController;
+import com.cloudbees.assessment.api.controller.StatsController;
+import com.cloudbees.assessment.api.request.BatchReceiptSubmitRequest;
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.response.BatchReceiptResponse;
+import com.cloudbees.assessment.api.response.ReceiptResponse;
+import com.cloudbees.assessment.api.response.SeatHoldResponse;
+import com.cloudbees.assessment.api.response.SectionStatsResponse;
+import com.cloudbees.assessment.cache.SeatOccupancyCache;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.exception.ShardRedirectException;
+import com.cloudbees.assessment.hold.SeatHoldRegistry;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.repository.ReceiptRepository;
+import com.cloudbees.assessment.repository.UserRepository;
+import com.cloudbees.assessment.service.SeatAllocator;
+import com.cloudbees.assessment.service.SeatingManagementService;
+import com.cloudbees.assessment.stats.BookingStats;
+import com.cloudbees.assessment.stream.SeatAvailabilityStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs three nodes in the same JVM, each with its own seat inventory, connected by a {@link LocalShardTransport}.
+ */
+class ShardedSeatingServiceTest {
+
+    private static final List<String> NODE_IDS = List.of("node-1", "node-2", "node-3");
+    private static final List<String> TRAIN_IDS = List.of("T1", "T2", "T3", "T4", "T5", "T6", "T7", "T8");
+    private static final int SEATS = 2;
+    private static final String SECRET = "shard-secret";
+
+    private final Map<String, ShardedSeatingService> nodes = new LinkedHashMap<>();
+    private final Map<String, TrainInventoryRegistry> inventories = new LinkedHashMap<>();
+    private final Map<String, ShardRouter> routers = new LinkedHashMap<>();
+    private final Map<String, SeatingManagementService> services = new LinkedHashMap<>();
+    private final Map<String, BookingStats> stats = new LinkedHashMap<>();
+    private final Map<String, SeatAvailabilityStream> streams = new LinkedHashMap<>();
+
+    @BeforeEach
+    void startNodes() {
+        LocalShardTransport transport = new LocalShardTransport();
+        for (String nodeId : NODE_IDS) {
+            SeatingProperties properties = properties(nodeId);
+            TrainInventoryRegistry registry = new TrainInventoryRegistry(properties);
+            ApplicationEventPublisher events = event -> {
+            };
+            BookingStats bookingStats = new BookingStats(mock(ReceiptRepository.class), registry, Optional.empty());
+            SeatingManagementService service = new SeatingManagementService(mock(UserRepository.class),
+                    mock(ReceiptRepository.class), registry, new SeatAllocator(registry),
+                    new SeatOccupancyCache(properties), events, properties, Optional.empty(), Optional.empty(),
+                    new SeatHoldRegistry(properties, events), bookingStats);
+            ShardRouter router = new ShardRouter(properties);
+            ShardedSeatingService node = new ShardedSeatingService(service, router, transport,
+                    new AdmissionGate(properties, registry));
+            transport.register(nodeId, node);
+            nodes.put(nodeId, node);
+            inventories.put(nodeId, registry);
+            routers.put(nodeId, router);
+            services.put(nodeId, service);
+            stats.put(nodeId, bookingStats);
+            streams.put(nodeId, new SeatAvailabilityStream(registry, properties));
+        }
+    }
+
+    // a booking sent to any node takes a seat from the inventory of the owner only
+    @Test
+    void bookingIsAllocatedByOwningNode() throws CustomCloudBeesException {
+        for (int i = 0; i < TRAIN_IDS.size(); i++) {
+            nodes.get(NODE_IDS.get(i % NODE_IDS.size())).allocateSeatToUser(request(TRAIN_IDS.get(i), i), false,
+                    null);
+        }
+        for (String trainId : TRAIN_IDS) {
+            String owner = routers.get("node-1").ownerOf(trainId);
+            for (String nodeId : NODE_IDS) {
+                int vacant = inventories.get(nodeId).find(trainId).getSeats().vacantCount();
+                assertEquals(nodeId.equals(owner) ? SEATS - 1 : SEATS, vacant);
+            }
+        }
+    }
+
+    // every node sees the same owner, so two nodes never hand out the same seat
+    @Test
+    void nodesNeverDoubleAllocateSeat() throws CustomCloudBeesException {
+        Set<Integer> seats = new HashSet<>();
+        ReceiptResponse first = nodes.get("node-1").allocateSeatToUser(request("T1", 1), false, null);
+        ReceiptResponse second = nodes.get("node-2").allocateSeatToUser(request("T1", 2), false, null);
+        seats.add(first.getUser().getSeatNumber());
+        seats.add(second.getUser().getSeatNumber());
+        assertEquals(SEATS, seats.size());
+        for (ShardRouter router : routers.values()) {
+            assertEquals(routers.get("node-1").ownerOf("T1"), router.ownerOf("T1"));
+        }
+    }
+
+    // fail case if the train is full on the owner, the error is passed back through the forwarding node
+    @Test
+    void ownerErrorIsReturnedByForwardingNode() throws CustomCloudBeesException {
+        String owner = routers.get("node-1").ownerOf("T1");
+        ShardedSeatingService forwarder = nodes.get(NODE_IDS.stream().filter(id -> !id.equals(owner)).findFirst()
+                .orElseThrow());
+        for (int passenger = 0; passenger < SEATS; passenger++) {
+            forwarder.allocateSeatToUser(request("T1", passenger), false, null);
+        }
+        CustomCloudBeesException e = assertThrowsExactly(CustomCloudBeesException.class,
+                () -> forwarder.allocateSeatToUser(request("T1", SEATS), false, null));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getHttpStatus());
+        assertEquals("All seats have been filled", e.getErrorMessage());
+    }
+
+    // a batch spanning trains of several owners books every passenger on the owner of its train, in request order
+    @Test
+    void batchIsSplitByOwner() throws CustomCloudBeesException {
+        List<ReceiptSubmitRequest> requests = List.of(request("T1", 1), request("T2", 2), request("T3", 3),
+                request("T4", 4));
+        BatchReceiptResponse response = nodes.get("node-1").allocateSeatsToUsers(
+                new BatchReceiptSubmitRequest(requests, false), false);
+
+        assertEquals(4, response.getSucceeded());
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(i, response.getResults().get(i).getIndex());
+            assertEquals(requests.get(i).getEmail(), response.getResults().get(i).getReceipt().getUser().getEmail());
+        }
+        for (String trainId : List.of("T1", "T2", "T3", "T4")) {
+            String owner = routers.get("node-1").ownerOf(trainId);
+            for (String nodeId : NODE_IDS) {
+                int vacant = inventories.get(nodeId).find(trainId).getSeats().vacantCount();
+                assertEquals(nodeId.equals(owner) ? SEATS - 1 : SEATS, vacant);
+            }
+        }
+    }
+
+    // a hold taken and released through another node only touches the inventory of the owner
+    @Test
+    void holdIsTakenAndReleasedOnOwner() throws CustomCloudBeesException {
+        String owner = routers.get("node-1").ownerOf("T1");
+        String other = NODE_IDS.stream().filter(id -> !id.equals(owner)).findFirst().orElseThrow();
+        SeatHoldResponse hold = nodes.get(other).holdSeat(request("T1", 1), false);
+
+        assertEquals(SEATS - 1, inventories.get(owner).find("T1").getSeats().vacantCount());
+        assertEquals(SEATS, inventories.get(other).find("T1").getSeats().vacantCount());
+        nodes.get(other).releaseHold(hold.getHoldId(), "T1", false);
+        assertEquals(SEATS, inventories.get(owner).find("T1").getSeats().vacantCount());
+    }
+
+    // fail case a waitlist join on a train owned by another node is redirected to the owner
+    @Test
+    void requestOnOtherNodesTrainIsRedirected() throws CustomCloudBeesException {
+        String owner = routers.get("node-1").ownerOf("T1");
+        String other = NODE_IDS.stream().filter(id -> !id.equals(owner)).findFirst().orElseThrow();
+
+        nodes.get(owner).requireLocal("T1");
+        ShardRedirectException e = assertThrows(ShardRedirectException.class,
+                () -> nodes.get(other).requireLocal("T1"));
+        assertEquals(HttpStatus.TEMPORARY_REDIRECT, e.getHttpStatus());
+        assertEquals("http://" + owner + ":8080", e.getOwnerUrl());
+    }
+
+    // fail case manifests, seat streams and stats of a train are only read on its owner, the other node redirects
+    // them there instead of answering from its own stale state
+    @Test
+    void readsOnNonOwnerAreRedirected() throws CustomCloudBeesException {
+        String owner = routers.get("node-1").ownerOf("T1");
+        String other = NODE_IDS.stream().filter(id -> !id.equals(owner)).findFirst().orElseThrow();
+        nodes.get(other).allocateSeatToUser(request("T1", 1), false, null);
+
+        ReceiptController receipts = new ReceiptController(services.get(other), nodes.get(other), null, null, null);
+        SeatStreamController seatStream = new SeatStreamController(streams.get(other), nodes.get(other));
+        StatsController otherStats = new StatsController(stats.get(other), nodes.get(other));
+        List<ShardRedirectException> redirects = List.of(
+                assertThrows(ShardRedirectException.class,
+                        () -> receipts.getUserSeatDetailsBySection(Section.SECTION_A, "T1")),
+                assertThrows(ShardRedirectException.class,
+                        () -> receipts.getUserSeatDetailsPageBySection(Section.SECTION_A, "T1", null, 10)),
+                assertThrows(ShardRedirectException.class,
+                        () -> receipts.streamUserSeatDetailsBySection(Section.SECTION_A, "T1")),
+                assertThrows(ShardRedirectException.class,
+                        () -> seatStream.streamSeatChanges("T1", null)),
+                assertThrows(ShardRedirectException.class, () -> otherStats.getStats("T1")));
+        redirects.forEach(e -> assertEquals("http://" + owner + ":8080", e.getOwnerUrl()));
+        assertTrue(otherStats.getStats(null).getBody().stream().noneMatch(s -> s.getTrainId().equals("T1")));
+
+        List<SectionStatsResponse> ownerStats = new StatsController(stats.get(owner), nodes.get(owner))
+                .getStats("T1").getBody();
+        assertEquals(1, ownerStats.get(0).getSeatsSold());
+    }
+
+    // fail case a forwarded booking reaching a node that does not own the train is refused, not served locally
+    @Test
+    void forwardedRequestOnNonOwnerIsRefused() {
+        String owner = routers.get("node-1").ownerOf("T1");
+        String other = NODE_IDS.stream().filter(id -> !id.equals(owner)).findFirst().orElseThrow();
+
+        CustomCloudBeesException e = assertThrowsExactly(CustomCloudBeesException.class,
+                () -> nodes.get(other).allocateSeatToUser(request("T1", 1), true, null));
+        assertEquals(HttpStatus.CONFLICT, e.getHttpStatus());
+        for (String nodeId : NODE_IDS) {
+            assertEquals(SEATS, inventories.get(nodeId).find("T1").getSeats().vacantCount());
+        }
+    }
+
+    // fail case only the shared secret marks a request as forwarded by another node
+    @Test
+    void forwardedHeaderNeedsSecret() {
+        ShardedSeatingService node = nodes.get("node-1");
+
+        assertTrue(node.isForwarded(SECRET));
+        assertFalse(node.isForwarded("true"));
+        assertFalse(node.isForwarded(null));
+    }
+
+    private static SeatingProperties properties(String nodeId) {
+        SeatingProperties properties = new SeatingProperties();
+        for (String trainId : TRAIN_IDS) {
+            SeatingProperties.SectionSeats section = new SeatingProperties.SectionSeats();
+            section.setSection(Section.SECTION_A);
+            section.setSeats(SEATS);
+            SeatingProperties.Coach coach = new SeatingProperties.Coach();
+            coach.setId("C1");
+            coach.getSections().add(section);
+            SeatingProperties.Train train = new SeatingProperties.Train();
+            train.setId(trainId);
+            train.getCoaches().add(coach);
+            properties.getTrains().add(train);
+        }
+        properties.getShard().setEnabled(true);
+        properties.getShard().setNodeId(nodeId);
+        properties.getShard().setSecret(SECRET);
+        NODE_IDS.forEach(id -> properties.getShard().getNodes().put(id, "http://" + id + ":8080"));
+        return properties;
+    }
+
+    private static ReceiptSubmitRequest request(String trainId, int passenger) {
+        return new ReceiptSubmitRequest("pune", "delhi", "first", "last", "passenger" + passenger + "@mail.com",
+                null, trainId);
+    }
+}
@@ -0,0 +1,135 @@
+package com.cloudbees.assessment.stats;
+
+import com.cloudbees.assessment.api.response.SectionStatsResponse;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.journal.BookingJournal;
+import com.cloudbees.assessment.journal.JournaledBooking;
+import com.cloudbees.assessment.repository.ReceiptRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.cloudbees.assessment.enums.Section.SECTION_A;
+import static com.cloudbees.assessment.enums.Section.SECTION_B;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookingStatsTest {
+
+    private TrainInventoryRegistry registry;
+    private ReceiptRepository receiptRepository;
+    private BookingJournal bookingJournal;
+    private BookingStats bookingStats;
+
+    // One train with five seats in each of two sections
+    @BeforeEach
+    void setUp() {
+        SeatingProperties properties = new SeatingProperties();
+        SeatingProperties.Coach coach = new SeatingProperties.Coach();
+        coach.setId("C1");
+        coach.getSections().add(sectionSeats(SECTION_A));
+        coach.getSections().add(sectionSeats(SECTION_B));
+        SeatingProperties.Train train = new SeatingProperties.Train();
+        train.setId("T1");
+        train.getCoaches().add(coach);
+        properties.getTrains().add(train);
+        registry = new TrainInventoryRegistry(properties);
+        receiptRepository = mock(ReceiptRepository.class);
+        bookingJournal = mock(BookingJournal.class);
+        bookingStats = new BookingStats(receiptRepository, registry, Optional.of(bookingJournal));
+    }
+
+    @Test
+    void bookingsMovesAndCancellationsAreAggregatedPerSection() throws CustomCloudBeesException {
+        registry.find("T1").getSeats().claim(1);
+        registry.find("T1").getSeats().claim(2);
+        bookingStats.recordBooking("T1", SECTION_A, new BigDecimal("20"));
+        bookingStats.recordBooking("T1", SECTION_A, new BigDecimal("12.345"));
+        bookingStats.recordBooking("T1", SECTION_A, new BigDecimal("7.50"));
+        bookingStats.recordMove("T1", SECTION_A, SECTION_B, new BigDecimal("7.50"));
+        bookingStats.recordMove("T1", SECTION_A, SECTION_A, new BigDecimal("20"));
+
+        List<SectionStatsResponse> stats = bookingStats.getStats("T1");
+        assertEquals(2, stats.size());
+        SectionStatsResponse sectionA = stats.get(0);
+        assertEquals(SECTION_A, sectionA.getSection());
+        assertEquals(2, sectionA.getSeatsSold());
+        assertEquals(3, sectionA.getVacantSeats());
+        assertEquals(new BigDecimal("32.35"), sectionA.getRevenue());
+        assertEquals(new BigDecimal("16.18"), sectionA.getAverageFare());
+        assertEquals(1, stats.get(1).getSeatsSold());
+        assertEquals(new BigDecimal("7.50"), stats.get(1).getRevenue());
+
+        bookingStats.recordCancellation("T1", SECTION_B, new BigDecimal("7.50"));
+        SectionStatsResponse sectionB = bookingStats.getStats(null).get(1);
+        assertEquals(0, sectionB.getSeatsSold());
+        assertEquals(new BigDecimal("0.00"), sectionB.getRevenue());
+        assertNull(sectionB.getAverageFare());
+        assertEquals(5, sectionB.getVacantSeats());
+    }
+
+    // bookings still in the journal are not in the database yet and are added to the stored totals
+    @Test
+    void totalsAreSeededFromStoredAndJournaledBookings() throws CustomCloudBeesException {
+        when(receiptRepository.findSectionTotals()).thenReturn(List.of(
+                new SectionTotals("T1", SECTION_B, 3L, new BigDecimal("60.00")),
+                new SectionTotals("T9", SECTION_A, 1L, new BigDecimal("20.00"))));
+        when(bookingJournal.allPending()).thenReturn(List.of(new JournaledBooking(1, 1, "T1", 6, SECTION_B, 1,
+                "pune", "delhi", "first", "last", "abc@gmail.com", new BigDecimal("20.00"), 0)));
+        bookingStats.afterSingletonsInstantiated();
+        bookingStats.recordBooking("T1", SECTION_B, null);
+
+        SectionStatsResponse sectionB = bookingStats.getStats("T1").get(1);
+        assertEquals(5, sectionB.getSeatsSold());
+        assertEquals(new BigDecimal("80.00"), sectionB.getRevenue());
+        assertEquals(new BigDecimal("16.00"), sectionB.getAverageFare());
+    }
+
+    // concurrent bookings of one section must all be counted
+    @Test
+    void concurrentBookingsAreAllCounted() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 10_000; i++) {
+            executor.submit(() -> bookingStats.recordBooking("T1", SECTION_A, new BigDecimal("0.01")));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        SectionStatsResponse sectionA = bookingStats.getStats("T1").get(0);
+        assertEquals(10_000, sectionA.getSeatsSold());
+        assertEquals(new BigDecimal("100.00"), sectionA.getRevenue());
+    }
+
+    // fail case if the train is not configured
+    @Test
+    void unknownTrainIsRejected() {
+        CustomCloudBeesException e = assertThrows(CustomCloudBeesException.class,
+                () -> bookingStats.getStats("T9"));
+        assertEquals(HttpStatus.NOT_FOUND, e.getHttpStatus());
+    }
+
+    @Test
+    void faresAreRoundedToCents() {
+        assertEquals(1235, BookingStats.toCents(new BigDecimal("12.345")));
+        assertEquals(2000, BookingStats.toCents(new BigDecimal("20")));
+        assertEquals(0, BookingStats.toCents(null));
+    }
+
+    private static SeatingProperties.SectionSeats sectionSeats(Section section) {
+        SeatingProperties.SectionSeats seats = new SeatingProperties.SectionSeats();
+        seats.setSection(section);
+        seats.setSeats(5);
+        return seats;
+    }
+}
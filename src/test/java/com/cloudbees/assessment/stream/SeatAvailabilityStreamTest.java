@@ -0,0 +1,179 @@
+package com.cloudbees.assessment.stream;
+
+import com.cloudbees.assessment.api.response.SeatDeltaResponse;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.enums.SeatState;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.event.SeatOccupancyChangedEvent;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.cloudbees.assessment.enums.Section.SECTION_A;
+import static com.cloudbees.assessment.enums.Section.SECTION_B;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatAvailabilityStreamTest {
+
+    private static final long FULL_ROUTE = 0b11;
+
+    private final List<Runnable> sends = new ArrayList<>();
+    private final List<RecordingEmitter> emitters = new ArrayList<>();
+    private SeatingProperties properties;
+    private TrainInventoryRegistry registry;
+    private SeatInventory seats;
+    private SeatAvailabilityStream stream;
+
+    @BeforeEach
+    void setUp() {
+        properties = new SeatingProperties();
+        SeatingProperties.Train train = new SeatingProperties.Train();
+        train.setId("T1");
+        train.getStations().addAll(List.of("london", "reading", "bristol"));
+        SeatingProperties.Coach coach = new SeatingProperties.Coach();
+        coach.setId("C1");
+        coach.getSections().add(sectionSeats(SECTION_A, 5));
+        coach.getSections().add(sectionSeats(SECTION_B, 5));
+        train.getCoaches().add(coach);
+        properties.getTrains().add(train);
+        registry = new TrainInventoryRegistry(properties);
+        seats = registry.find("T1").getSeats();
+        // Sends only run when the test runs them, like a client that is still busy receiving
+        stream = new SeatAvailabilityStream(registry, properties, sends::add) {
+            @Override
+            SseEmitter newEmitter(long timeoutMs) {
+                RecordingEmitter emitter = new RecordingEmitter();
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+    }
+
+    @Test
+    void subscribeSendsSnapshotOfSeatsNotVacant() throws CustomCloudBeesException {
+        seats.claim(3, FULL_ROUTE);
+        seats.claim(7, 0b01);
+        stream.subscribe("T1", null);
+
+        List<SeatDeltaResponse> snapshot = emitters.get(0).events.get(0);
+        assertEquals(2, snapshot.size());
+        assertDelta(snapshot.get(0), 3, SeatState.VACANT, SeatState.BOOKED);
+        assertDelta(snapshot.get(1), 7, SeatState.VACANT, SeatState.PARTLY_BOOKED);
+    }
+
+    // changes made while a subscriber is still receiving are merged into one delta per seat
+    @Test
+    void changesForSlowSubscriberAreCoalesced() throws CustomCloudBeesException {
+        stream.subscribe("T1", null);
+        book(1, FULL_ROUTE);
+        book(2, 0b01);
+        release(1, FULL_ROUTE);
+        book(2, 0b10);
+        book(3, 0b10);
+        assertEquals(1, sends.size());
+
+        sends.remove(0).run();
+        List<List<SeatDeltaResponse>> events = emitters.get(0).events;
+        assertEquals(2, events.size());
+        List<SeatDeltaResponse> deltas = events.get(1);
+        assertEquals(2, deltas.size());
+        assertDelta(deltas.get(0), 2, SeatState.VACANT, SeatState.BOOKED);
+        assertDelta(deltas.get(1), 3, SeatState.VACANT, SeatState.PARTLY_BOOKED);
+
+        book(4, FULL_ROUTE);
+        assertEquals(1, sends.size());
+    }
+
+    @Test
+    void subscriberOfSectionOnlyGetsItsSeats() throws CustomCloudBeesException {
+        stream.subscribe("T1", SECTION_B);
+        book(1, FULL_ROUTE);
+        assertTrue(sends.isEmpty());
+        book(6, FULL_ROUTE);
+        sends.remove(0).run();
+        assertDelta(emitters.get(0).events.get(1).get(0), 6, SeatState.VACANT, SeatState.BOOKED);
+    }
+
+    // fail case if the client has gone away, it is no longer sent to
+    @Test
+    void failedSendDropsSubscriber() throws CustomCloudBeesException {
+        stream.subscribe("T1", null);
+        emitters.get(0).broken = true;
+        book(1, FULL_ROUTE);
+        sends.remove(0).run();
+        assertEquals(0, stream.subscriberCount());
+        book(2, FULL_ROUTE);
+        assertTrue(sends.isEmpty());
+    }
+
+    // fail case if the train does not exist or the subscriber limit is reached
+    @Test
+    void subscribeFailsForUnknownTrainOrTooManySubscribers() throws CustomCloudBeesException {
+        CustomCloudBeesException unknown = assertThrowsExactly(CustomCloudBeesException.class,
+                () -> stream.subscribe("T9", null));
+        assertEquals(HttpStatus.NOT_FOUND, unknown.getHttpStatus());
+
+        properties.getStream().setMaxSubscribers(1);
+        stream.subscribe("T1", null);
+        CustomCloudBeesException full = assertThrowsExactly(CustomCloudBeesException.class,
+                () -> stream.subscribe("T1", null));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, full.getHttpStatus());
+    }
+
+    private void book(int seatNumber, long leg) {
+        assertTrue(seats.claim(seatNumber, leg));
+        stream.onSeatOccupancyChanged(new SeatOccupancyChangedEvent("T1", sectionOf(seatNumber), seatNumber, true,
+                leg));
+    }
+
+    private void release(int seatNumber, long leg) {
+        assertTrue(seats.release(seatNumber, leg));
+        stream.onSeatOccupancyChanged(new SeatOccupancyChangedEvent("T1", sectionOf(seatNumber), seatNumber, false,
+                leg));
+    }
+
+    private Section sectionOf(int seatNumber) {
+        return registry.find("T1").getLayout().sectionOf(seatNumber);
+    }
+
+    private static void assertDelta(SeatDeltaResponse delta, int seatNumber, SeatState oldState, SeatState newState) {
+        assertEquals(seatNumber, delta.getSeatNumber());
+        assertEquals(oldState, delta.getOldState());
+        assertEquals(newState, delta.getNewState());
+    }
+
+    private static SeatingProperties.SectionSeats sectionSeats(Section section, int count) {
+        SeatingProperties.SectionSeats sectionSeats = new SeatingProperties.SectionSeats();
+        sectionSeats.setSection(section);
+        sectionSeats.setSeats(count);
+        return sectionSeats;
+    }
+
+    // Keeps the deltas of every event instead of writing them to a response
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<List<SeatDeltaResponse>> events = new ArrayList<>();
+        private boolean broken;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void send(SseEventBuilder builder) throws IOException {
+            if (broken) {
+                throw new IOException("Broken pipe");
+            }
+            for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) {
+                if (data.getData() instanceof List<?> deltas) {
+                    events.add(new ArrayList<>((List<SeatDeltaResponse>) deltas));
+                }
+            }
+        }
+    }
+}
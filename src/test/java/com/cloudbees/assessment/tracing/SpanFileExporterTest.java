@@ -0,0 +1,87 @@
+package com.cloudbees.assessment.tracing;
+
+import com.cloudbees.assessment.config.SeatingProperties;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpanFileExporterTest {
+
+    private final StringWriter out = new StringWriter();
+    private final ObservationRegistry registry = ObservationRegistry.create();
+
+    @Test
+    void childSpansShareTheTraceOfTheRequest() throws Exception {
+        SpanFileExporter exporter = exporter(1.0);
+        Observation request = Observation.start("http.server.requests", registry);
+        try (Observation.Scope scope = request.openScope()) {
+            String traceId = MDC.get(SpanFileExporter.TRACE_ID);
+            assertNotNull(traceId);
+            Observation.createNotStarted(TracingAspect.CALLS, registry)
+                    .contextualName("SeatingManagementService.allocateSeatToUser")
+                    .lowCardinalityKeyValue("layer", "service")
+                    .observe(() -> assertEquals(traceId, MDC.get(SpanFileExporter.TRACE_ID)));
+            assertThrows(IllegalStateException.class, () -> Observation.createNotStarted(TracingAspect.CALLS, registry)
+                    .contextualName("UserRepository.findByEmail")
+                    .observe(() -> {
+                        throw new IllegalStateException("no user abc@gmail.com");
+                    }));
+            assertEquals(traceId, MDC.get(SpanFileExporter.TRACE_ID));
+        }
+        request.stop();
+        assertNull(MDC.get(SpanFileExporter.TRACE_ID));
+        exporter.close();
+
+        List<String> spans = Arrays.asList(out.toString().split("\n"));
+        assertEquals(3, spans.size());
+        String traceId = field(spans.get(2), "traceId");
+        String requestSpanId = field(spans.get(2), "spanId");
+        assertNull(field(spans.get(2), "parentId"));
+        assertEquals("http.server.requests", field(spans.get(2), "name"));
+        for (String child : spans.subList(0, 2)) {
+            assertEquals(traceId, field(child, "traceId"));
+            assertEquals(requestSpanId, field(child, "parentId"));
+        }
+        assertEquals("SeatingManagementService.allocateSeatToUser", field(spans.get(0), "name"));
+        assertTrue(spans.get(0).contains("\"tags\":{\"layer\":\"service\"}"));
+        assertEquals("java.lang.IllegalStateException", field(spans.get(1), "error"));
+    }
+
+    // unsampled requests write no span, from the request down to the repository calls
+    @Test
+    void unsampledRequestsWriteNothing() throws Exception {
+        SpanFileExporter exporter = exporter(0.0);
+        Observation.createNotStarted("http.server.requests", registry).observe(() ->
+                Observation.createNotStarted(TracingAspect.CALLS, registry).observe(() ->
+                        assertNull(MDC.get(SpanFileExporter.TRACE_ID))));
+        exporter.close();
+        assertEquals("", out.toString());
+        assertEquals(0, exporter.getDropped());
+    }
+
+    private SpanFileExporter exporter(double sampleRate) {
+        SeatingProperties.Tracing tracing = new SeatingProperties.Tracing();
+        tracing.setSampleRate(sampleRate);
+        SpanFileExporter exporter = new SpanFileExporter(tracing, out);
+        registry.observationConfig().observationHandler(exporter);
+        return exporter;
+    }
+
+    // Value of a string field of a span line, null when it has none
+    private static String field(String span, String name) {
+        String key = "\"" + name + "\":\"";
+        int start = span.indexOf(key);
+        if (start < 0) {
+            return null;
+        }
+        start += key.length();
+        return span.substring(start, span.indexOf('"', start));
+    }
+}
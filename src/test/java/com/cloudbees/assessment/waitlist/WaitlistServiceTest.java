@@ -0,0 +1,178 @@
+package com.cloudbees.assessment.waitlist;
+
+import com.cloudbees.assessment.api.request.ReceiptSubmitRequest;
+import com.cloudbees.assessment.api.response.WaitlistResponse;
+import com.cloudbees.assessment.cache.SeatOccupancyCache;
+import com.cloudbees.assessment.config.SeatingProperties;
+import com.cloudbees.assessment.enums.Section;
+import com.cloudbees.assessment.enums.WaitlistStatus;
+import com.cloudbees.assessment.event.SeatOccupancyChangedEvent;
+import com.cloudbees.assessment.exception.CustomCloudBeesException;
+import com.cloudbees.assessment.hold.SeatHoldRegistry;
+import com.cloudbees.assessment.inventory.SeatInventory;
+import com.cloudbees.assessment.inventory.TrainInventoryRegistry;
+import com.cloudbees.assessment.repository.ReceiptRepository;
+import com.cloudbees.assessment.repository.UserRepository;
+import com.cloudbees.assessment.service.SeatAllocator;
+import com.cloudbees.assessment.service.SeatingManagementService;
+import com.cloudbees.assessment.stats.BookingStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static com.cloudbees.assessment.enums.Section.SECTION_A;
+import static com.cloudbees.assessment.enums.Section.SECTION_B;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class WaitlistServiceTest {
+
+    private SeatingProperties properties;
+    private SeatInventory seats;
+    private SeatingManagementService service;
+    private WaitlistService waitlistService;
+
+    // One train of two seats, one in each section, promotions run on the thread releasing the seat
+    @BeforeEach
+    void setUp() {
+        properties = new SeatingProperties();
+        SeatingProperties.Coach coach = new SeatingProperties.Coach();
+        coach.setId("C1");
+        coach.getSections().add(sectionSeats(SECTION_A));
+        coach.getSections().add(sectionSeats(SECTION_B));
+        SeatingProperties.Train train = new SeatingProperties.Train();
+        train.setId("T1");
+        train.getCoaches().add(coach);
+        properties.getTrains().add(train);
+        TrainInventoryRegistry registry = new TrainInventoryRegistry(properties);
+        seats = registry.find("T1").getSeats();
+        ApplicationEventPublisher events = event -> {
+        };
+        service = spy(new SeatingManagementService(mock(UserRepository.class), mock(ReceiptRepository.class),
+                registry, new SeatAllocator(registry), new SeatOccupancyCache(properties), events, properties,
+                Optional.empty(), Optional.empty(), new SeatHoldRegistry(properties, events),
+                new BookingStats(mock(ReceiptRepository.class), registry, Optional.empty())));
+        waitlistService = new WaitlistService(service, properties, Runnable::run);
+    }
+
+    @Test
+    void joinBooksWhenSeatIsVacant() throws CustomCloudBeesException {
+        WaitlistResponse response = waitlistService.join(request(1, null));
+        assertEquals(WaitlistStatus.BOOKED, response.getStatus());
+        assertNotNull(response.getReceipt());
+        assertEquals(0, waitlistService.size());
+    }
+
+    // a released seat books the passenger who has waited the longest
+    @Test
+    void releasedSeatPromotesFirstWaitingPassenger() throws Exception {
+        fillTrain();
+        WaitlistResponse first = waitlistService.join(request(1, null));
+        WaitlistResponse second = waitlistService.join(request(2, null));
+        assertEquals(WaitlistStatus.WAITING, first.getStatus());
+        assertEquals(0, first.getPosition());
+        assertEquals(1, second.getPosition());
+        CompletableFuture<WaitlistResponse> poll = waitlistService.awaitStatus(first.getWaitlistId(), 10_000);
+        assertFalse(poll.isDone());
+
+        release(2, SECTION_B);
+        WaitlistResponse promoted = poll.get();
+        assertEquals(WaitlistStatus.BOOKED, promoted.getStatus());
+        assertEquals(2, promoted.getReceipt().getUser().getSeatNumber());
+        WaitlistResponse stillWaiting = waitlistService.awaitStatus(second.getWaitlistId(), 0).get();
+        assertEquals(WaitlistStatus.WAITING, stillWaiting.getStatus());
+        assertEquals(0, stillWaiting.getPosition());
+        assertEquals(1, waitlistService.size());
+    }
+
+    @Test
+    void passengerWaitingForSectionIsOnlyPromotedBySeatOfThatSection() throws Exception {
+        fillTrain();
+        WaitlistResponse waiting = waitlistService.join(request(1, SECTION_B));
+        release(1, SECTION_A);
+        assertEquals(WaitlistStatus.WAITING, waitlistService.awaitStatus(waiting.getWaitlistId(), 0).get()
+                .getStatus());
+
+        release(2, SECTION_B);
+        assertEquals(WaitlistStatus.BOOKED, waitlistService.awaitStatus(waiting.getWaitlistId(), 0).get()
+                .getStatus());
+    }
+
+    @Test
+    void passengerWhoLeftIsNotPromoted() throws Exception {
+        fillTrain();
+        WaitlistResponse waiting = waitlistService.join(request(1, null));
+        waitlistService.leave(waiting.getWaitlistId());
+        release(1, SECTION_A);
+
+        assertEquals(WaitlistStatus.CANCELLED, waitlistService.awaitStatus(waiting.getWaitlistId(), 0).get()
+                .getStatus());
+        assertTrue(seats.isFree(1));
+        CustomCloudBeesException e = assertThrowsExactly(CustomCloudBeesException.class,
+                () -> waitlistService.leave(waiting.getWaitlistId()));
+        assertEquals(HttpStatus.CONFLICT, e.getHttpStatus());
+    }
+
+    // once a journey has no seat the passengers after it asking for the same one are not tried in that scan
+    @Test
+    void scanStopsTryingJourneyWithoutSeat() throws CustomCloudBeesException {
+        fillTrain();
+        for (int passenger = 1; passenger <= 3; passenger++) {
+            waitlistService.join(request(passenger, SECTION_B));
+        }
+        clearInvocations(service);
+
+        // A seat released and taken again before the promotion ran
+        waitlistService.onSeatOccupancyChanged(new SeatOccupancyChangedEvent("T1", SECTION_B, 2, false,
+                seats.fullRouteMask()));
+        verify(service, times(1)).allocateSeatToUser(any());
+        assertEquals(3, waitlistService.size());
+    }
+
+    // fail case if the waitlist is full or the id is unknown
+    @Test
+    void joinFailsWhenWaitlistIsFull() throws CustomCloudBeesException {
+        properties.getWaitlist().setMaxEntriesPerQueue(1);
+        fillTrain();
+        waitlistService.join(request(1, null));
+        CustomCloudBeesException full = assertThrowsExactly(CustomCloudBeesException.class,
+                () -> waitlistService.join(request(2, null)));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, full.getHttpStatus());
+        CustomCloudBeesException unknown = assertThrowsExactly(CustomCloudBeesException.class,
+                () -> waitlistService.awaitStatus("unknown", 0));
+        assertEquals(HttpStatus.NOT_FOUND, unknown.getHttpStatus());
+    }
+
+    private void fillTrain() {
+        while (seats.claimFirstFree() != SeatInventory.NO_SEAT) {
+            // fill every seat
+        }
+    }
+
+    private void release(int seatNumber, Section section) {
+        assertTrue(seats.release(seatNumber));
+        waitlistService.onSeatOccupancyChanged(new SeatOccupancyChangedEvent("T1", section, seatNumber, false,
+                seats.fullRouteMask()));
+    }
+
+    private static ReceiptSubmitRequest request(int passenger, Section section) {
+        return new ReceiptSubmitRequest("pune", "delhi", "first", "last", "abc" + passenger + "@gmail.com", null,
+                null, section, null);
+    }
+
+    private static SeatingProperties.SectionSeats sectionSeats(Section section) {
+        SeatingProperties.SectionSeats sectionSeats = new SeatingProperties.SectionSeats();
+        sectionSeats.setSection(section);
+        sectionSeats.setSeats(1);
+        return sectionSeats;
+    }
+}